@@ -31,7 +31,8 @@ public class AuthFilter extends OncePerRequestFilter {
         }
 
         var header = request.getHeader("Authorization");
-        if(header == null){
+        // Sem header ou HTTP Basic: segue para o httpBasic, que autentica pelo CredenciaisService
+        if(header == null || header.startsWith("Basic ")){
             filterChain.doFilter(request, response);
             return;
         }
@@ -39,17 +40,15 @@ public class AuthFilter extends OncePerRequestFilter {
         if(!header.startsWith("Bearer ")){
             response.setStatus(401);
             response.getWriter().write("""
-                {"message": "Authorization deve iniciar com Bearer"}        
+                {"message": "Authorization deve iniciar com Bearer ou Basic"}        
             """);
             return;
         }
 
 
-        var jwt = header.replace("Bearer ", "");
+        var jwt = header.substring("Bearer ".length());
         var user = tokenService.getUserFromToken(jwt);
 
-        System.out.println(user);
-
         var authentication = new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities());
         SecurityContextHolder.getContext().setAuthentication(authentication);
 
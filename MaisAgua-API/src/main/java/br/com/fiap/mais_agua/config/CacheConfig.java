@@ -0,0 +1,221 @@
+package br.com.fiap.mais_agua.config;
+
+import br.com.fiap.mais_agua.model.Usuario;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.interceptor.KeyGenerator;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpEntity;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Caches da API em Caffeine, com tamanho, peso, expiração e refresh configurados por nome em
+ * mais-agua.cache.*, decorados com {@link CacheUsuario}. Também define os geradores de chave por usuário:
+ * "chaveUsuario" para os @Cacheable (dono + demais parâmetros) e "donoUsuario" para os @CacheEvict
+ * (todas as entradas do dono). Os métodos precisam receber o {@link Usuario} autenticado.
+ * Todos os caches são de carga (LoadingCache) para permitir a recarga antecipada das entradas pelo
+ * {@link CarregadorCache} de cada cache, que roda em um pool pequeno e limitado (mais-agua.cache.threads-recarga / fila-recarga) para não disputar o pool de
+ * conexões com as requisições.
+ */
+@Configuration
+@Slf4j
+@EnableConfigurationProperties(CachePropriedades.class)
+public class CacheConfig {
+
+    // Limite aplicado quando nem o cache nem o padrão definem tamanho ou peso: nenhum cache fica ilimitado
+    private static final long MAXIMO_ENTRADAS_SEM_CONFIGURACAO = 1000;
+
+    // Não é exposto como bean: um Executor no contexto desligaria o applicationTaskExecutor do Spring Boot
+    @Bean
+    CacheManager cacheManager(CachePropriedades propriedades, MeterRegistry meterRegistry,
+                              TransporteInvalidacao transporteInvalidacao,
+                              ObjectProvider<CarregadorCache> carregadores,
+                              @Value("${mais-agua.cache.threads-recarga:2}") int threadsRecarga,
+                              @Value("${mais-agua.cache.fila-recarga:10000}") int filaRecarga) {
+        AtomicInteger sequencia = new AtomicInteger();
+        ExecutorService recarga = new ThreadPoolExecutor(threadsRecarga, threadsRecarga, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(filaRecarga), tarefa -> {
+                    Thread thread = new Thread(tarefa, "cache-recarga-" + sequencia.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        return new CacheManagerUsuario(propriedades, meterRegistry, recarga, transporteInvalidacao, carregadores);
+    }
+
+    @Bean
+    KeyGenerator chaveUsuario() {
+        return (Object target, Method method, Object... params) -> {
+            List<Object> parametros = new ArrayList<>(params.length);
+            Integer idUsuario = null;
+            for (Object param : params) {
+                if (param instanceof Usuario usuario) {
+                    idUsuario = usuario.getIdUsuario();
+                } else {
+                    parametros.add(param);
+                }
+            }
+            return new ChaveUsuario(exigirUsuario(idUsuario, method), List.copyOf(parametros));
+        };
+    }
+
+    @Bean
+    KeyGenerator donoUsuario() {
+        return (Object target, Method method, Object... params) -> new DonoCache(exigirUsuario(
+                Arrays.stream(params)
+                        .filter(Usuario.class::isInstance)
+                        .map(param -> ((Usuario) param).getIdUsuario())
+                        .findFirst()
+                        .orElse(null),
+                method));
+    }
+
+    private static Integer exigirUsuario(Integer idUsuario, Method method) {
+        if (idUsuario == null) {
+            throw new IllegalStateException("Método com cache por usuário sem o parâmetro Usuario: " + method);
+        }
+        return idUsuario;
+    }
+
+    // Peso de uma entrada: 1 + a quantidade de elementos guardados (lista, página ou corpo da resposta)
+    static int peso(Object valor) {
+        Object conteudo = valor instanceof HttpEntity<?> resposta ? resposta.getBody() : valor;
+        int elementos = 0;
+        if (conteudo instanceof Slice<?> pagina) {
+            elementos = pagina.getNumberOfElements();
+        } else if (conteudo instanceof Collection<?> colecao) {
+            elementos = colecao.size();
+        } else if (conteudo instanceof Map<?, ?> mapa) {
+            elementos = mapa.size();
+        }
+        return 1 + elementos;
+    }
+
+    /**
+     * Cria cada cache uma única vez por nome, a partir da especificação configurada para ele. As invalidações
+     * dos caches vão para o transporte com a origem desta réplica, e as recebidas de outras réplicas são
+     * aplicadas nos caches já criados aqui (um cache que ainda não existe não tem o que invalidar). Os
+     * carregadores são buscados na primeira recarga: eles dependem de serviços que dependem deste gerenciador.
+     */
+    static class CacheManagerUsuario implements CacheManager, DisposableBean {
+
+        private final CachePropriedades propriedades;
+        private final MeterRegistry meterRegistry;
+        private final ExecutorService recarga;
+        private final TransporteInvalidacao transporte;
+        private final String origem = UUID.randomUUID().toString();
+        private final Map<String, CacheUsuario> caches = new ConcurrentHashMap<>();
+        private final ObjectProvider<CarregadorCache> carregadores;
+        private volatile Map<String, CarregadorCache> carregadoresPorCache;
+
+        CacheManagerUsuario(CachePropriedades propriedades, MeterRegistry meterRegistry, ExecutorService recarga,
+                            TransporteInvalidacao transporte, ObjectProvider<CarregadorCache> carregadores) {
+            this.propriedades = propriedades;
+            this.meterRegistry = meterRegistry;
+            this.recarga = recarga;
+            this.transporte = transporte;
+            this.carregadores = carregadores;
+            transporte.receber(this::aplicar);
+        }
+
+        @Override
+        public Cache getCache(String name) {
+            return caches.computeIfAbsent(name, this::criar);
+        }
+
+        @Override
+        public Collection<String> getCacheNames() {
+            return Collections.unmodifiableSet(caches.keySet());
+        }
+
+        private void aplicar(InvalidacaoCache invalidacao) {
+            if (origem.equals(invalidacao.origem())) {
+                return;
+            }
+            CacheUsuario cache = caches.get(invalidacao.cache());
+            if (cache != null) {
+                cache.aplicar(invalidacao);
+            }
+        }
+
+        private CarregadorCache carregador(String nome) {
+            Map<String, CarregadorCache> porCache = carregadoresPorCache;
+            if (porCache == null) {
+                porCache = carregadores.orderedStream()
+                        .collect(Collectors.toUnmodifiableMap(CarregadorCache::cache, Function.identity()));
+                carregadoresPorCache = porCache;
+            }
+            return porCache.get(nome);
+        }
+
+        @Override
+        public void destroy() {
+            recarga.shutdownNow();
+        }
+
+        private CacheUsuario criar(String nome) {
+            CachePropriedades.Especificacao especificacao = propriedades.de(nome);
+            Recarregadores recarregadores = new Recarregadores(() -> carregador(nome), recarga);
+            CacheUsuario[] decorado = new CacheUsuario[1];
+
+            Caffeine<Object, Object> builder = Caffeine.newBuilder().recordStats();
+            if (especificacao.maximoPeso() != null) {
+                builder.maximumWeight(especificacao.maximoPeso()).weigher((Object chave, Object valor) -> peso(valor));
+            } else {
+                builder.maximumSize(especificacao.maximoEntradas() != null
+                        ? especificacao.maximoEntradas() : MAXIMO_ENTRADAS_SEM_CONFIGURACAO);
+            }
+            if (especificacao.expiraAposEscrita() != null) {
+                builder.expireAfterWrite(especificacao.expiraAposEscrita());
+            }
+            if (especificacao.expiraAposAcesso() != null) {
+                builder.expireAfterAccess(especificacao.expiraAposAcesso());
+            }
+            // Síncrono e só para tamanho/expiração: as remoções explícitas são tratadas no próprio CacheUsuario,
+            // e um listener assíncrono poderia desindexar uma entrada recarregada logo depois da remoção
+            builder.evictionListener((Object chave, Object valor, RemovalCause causa) -> {
+                if (decorado[0] != null) {
+                    decorado[0].aoDescartar(chave);
+                }
+            });
+
+            if (especificacao.atualizarAposEscrita() != null) {
+                builder.refreshAfterWrite(especificacao.atualizarAposEscrita());
+            }
+            com.github.benmanes.caffeine.cache.Cache<Object, Object> nativo = builder.build(recarregadores);
+
+            CaffeineCacheMetrics.monitor(meterRegistry, nativo, nome);
+            decorado[0] = new CacheUsuario(new CaffeineCache(nome, nativo, true), recarregadores, meterRegistry,
+                    (tipo, id) -> transporte.publicar(new InvalidacaoCache(origem, nome, tipo, id)));
+            log.info("Cache {} criado: {}", nome, especificacao);
+            return decorado[0];
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package br.com.fiap.mais_agua.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Limites dos caches (mais-agua.cache.*): a especificação "padrao" vale para todos os caches e cada
+ * entrada de "caches[nome]" sobrescreve só os campos informados.
+ *
+ * @param padrao especificação aplicada aos caches sem configuração própria
+ * @param caches especificações por nome de cache
+ */
+@ConfigurationProperties(prefix = "mais-agua.cache")
+public record CachePropriedades(Especificacao padrao, Map<String, Especificacao> caches) {
+
+    private static final Especificacao VAZIA = new Especificacao(null, null, null, null, null);
+
+    /**
+     * @param maximoEntradas       quantidade máxima de entradas (ignorado quando há maximoPeso)
+     * @param maximoPeso           peso máximo somado das entradas; o peso de uma entrada é 1 + o número de
+     *                             elementos da lista ou página guardada
+     * @param expiraAposEscrita    tempo de vida de cada entrada
+     * @param expiraAposAcesso     tempo máximo sem leituras antes de a entrada expirar
+     * @param atualizarAposEscrita idade a partir da qual a próxima leitura recarrega a entrada em segundo plano
+     */
+    public record Especificacao(Long maximoEntradas, Long maximoPeso, Duration expiraAposEscrita,
+                                Duration expiraAposAcesso, Duration atualizarAposEscrita) {
+
+        Especificacao comPadrao(Especificacao padrao) {
+            return new Especificacao(
+                    maximoEntradas != null ? maximoEntradas : padrao.maximoEntradas,
+                    maximoPeso != null ? maximoPeso : padrao.maximoPeso,
+                    expiraAposEscrita != null ? expiraAposEscrita : padrao.expiraAposEscrita,
+                    expiraAposAcesso != null ? expiraAposAcesso : padrao.expiraAposAcesso,
+                    atualizarAposEscrita != null ? atualizarAposEscrita : padrao.atualizarAposEscrita
+            );
+        }
+    }
+
+    public Especificacao de(String nome) {
+        Especificacao base = padrao != null ? padrao : VAZIA;
+        Especificacao propria = caches != null ? caches.get(nome) : null;
+        return propria != null ? propria.comPadrao(base) : base;
+    }
+}
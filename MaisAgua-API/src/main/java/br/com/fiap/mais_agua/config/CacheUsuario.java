@@ -0,0 +1,284 @@
+package br.com.fiap.mais_agua.config;
+
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.cache.Cache;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Decorador de cache que mantém um índice das chaves por usuário ({@link ChaveUsuario}). Remover a chave
+ * {@link DonoCache} remove só as entradas daquele usuário, no lugar do allEntries. Acertos, falhas, cargas
+ * e expulsões vêm das estatísticas do Caffeine (cache.gets, cache.puts, cache.evictions, cache.size); aqui
+ * são contadas as remoções explícitas (cache.invalidacoes), as recargas antecipadas (cache.recargas) e os
+ * usuários indexados (cache.usuarios). Remoções, recargas e limpezas feitas aqui são repassadas às outras
+ * réplicas pela difusão recebida do gerenciador; as que chegam das outras réplicas entram por
+ * {@link #aplicar} e são feitas só localmente.
+ */
+public class CacheUsuario implements Cache {
+
+    private final Cache delegate;
+    private final Recarregadores recarregadores;
+    private final BiConsumer<InvalidacaoCache.Tipo, Integer> difusao;
+    private final Map<Integer, Set<Object>> chavesPorUsuario = new ConcurrentHashMap<>();
+    private final LongAdder remocoes = new LongAdder();
+    private final LongAdder recargas = new LongAdder();
+
+    public CacheUsuario(Cache delegate, Recarregadores recarregadores, MeterRegistry meterRegistry,
+                        BiConsumer<InvalidacaoCache.Tipo, Integer> difusao) {
+        this.delegate = delegate;
+        this.recarregadores = recarregadores;
+        this.difusao = difusao;
+
+        String nome = delegate.getName();
+        FunctionCounter.builder("cache.invalidacoes", remocoes, LongAdder::sum).tags("cache", nome)
+                .description("Entradas removidas explicitamente (por chave ou por usuário)").register(meterRegistry);
+        FunctionCounter.builder("cache.recargas", recargas, LongAdder::sum).tags("cache", nome)
+                .description("Entradas recarregadas em segundo plano no lugar da remoção").register(meterRegistry);
+        Gauge.builder("cache.usuarios", chavesPorUsuario, Map::size).tags("cache", nome)
+                .description("Usuários com entradas no cache").register(meterRegistry);
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return delegate.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        return delegate.get(key);
+    }
+
+    @Override
+    public <T> T get(Object key, Class<T> type) {
+        return delegate.get(key, type);
+    }
+
+    @Override
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        // A chave entra no índice antes da carga: a remoção do usuário feita durante a carga alcança a chave e
+        // espera a carga terminar (o Caffeine segura a remoção da chave em cálculo), descartando o valor lido
+        // antes da alteração. Se a remoção vier antes de a carga começar, o valor carregado já é o novo, e a
+        // chave volta ao índice depois
+        registrar(key);
+        T valor = delegate.get(key, valueLoader);
+        registrar(key);
+        return valor;
+    }
+
+    @Override
+    public CompletableFuture<?> retrieve(Object key) {
+        return delegate.retrieve(key);
+    }
+
+    @Override
+    public <T> CompletableFuture<T> retrieve(Object key, Supplier<CompletableFuture<T>> valueLoader) {
+        registrar(key);
+        return delegate.retrieve(key, valueLoader);
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        delegate.put(key, value);
+        registrar(key);
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        ValueWrapper existente = delegate.putIfAbsent(key, value);
+        if (existente == null) {
+            registrar(key);
+        }
+        return existente;
+    }
+
+    @Override
+    public void evict(Object key) {
+        if (key instanceof DonoCache dono) {
+            evictarUsuario(dono.idUsuario());
+            return;
+        }
+        remover(key);
+        difundir(key, InvalidacaoCache.Tipo.REMOVER_USUARIO, InvalidacaoCache.Tipo.REMOVER_CHAVE);
+    }
+
+    @Override
+    public boolean evictIfPresent(Object key) {
+        if (key instanceof DonoCache dono) {
+            return evictarUsuario(dono.idUsuario()) > 0;
+        }
+        desregistrar(key);
+        boolean removida = delegate.evictIfPresent(key);
+        if (removida) {
+            remocoes.increment();
+        }
+        // A entrada pode existir nas outras réplicas mesmo ausente aqui
+        difundir(key, InvalidacaoCache.Tipo.REMOVER_USUARIO, InvalidacaoCache.Tipo.REMOVER_CHAVE);
+        return removida;
+    }
+
+    @Override
+    public void clear() {
+        limpar();
+        difusao.accept(InvalidacaoCache.Tipo.LIMPAR, null);
+    }
+
+    @Override
+    public boolean invalidate() {
+        chavesPorUsuario.clear();
+        boolean havia = delegate.invalidate();
+        difusao.accept(InvalidacaoCache.Tipo.LIMPAR, null);
+        return havia;
+    }
+
+    /**
+     * Chamado quando o cache nativo descarta uma entrada por tamanho ou expiração, para que o índice por
+     * usuário não guarde chaves que já saíram do cache. Nas remoções explícitas o índice sai antes da entrada.
+     */
+    void aoDescartar(Object key) {
+        desregistrar(key);
+    }
+
+    /**
+     * Aplica uma invalidação recebida de outra réplica, sem repassá-la de novo.
+     */
+    void aplicar(InvalidacaoCache invalidacao) {
+        switch (invalidacao.tipo()) {
+            case REMOVER_USUARIO -> removerUsuario(invalidacao.id());
+            case RECARREGAR_USUARIO -> recarregarChavesUsuario(invalidacao.id());
+            case REMOVER_CHAVE -> remover(invalidacao.id());
+            case RECARREGAR_CHAVE -> recarregarChave(invalidacao.id());
+            case LIMPAR -> limpar();
+        }
+    }
+
+    /**
+     * Remove todas as entradas do usuário, nesta e nas outras réplicas, e retorna quantas estavam
+     * indexadas aqui.
+     */
+    public int evictarUsuario(Integer idUsuario) {
+        int removidas = removerUsuario(idUsuario);
+        difusao.accept(InvalidacaoCache.Tipo.REMOVER_USUARIO, idUsuario);
+        return removidas;
+    }
+
+    /**
+     * Recarrega em segundo plano as entradas do usuário, no lugar de removê-las: as leituras continuam
+     * recebendo o valor atual até a recarga terminar, e a chave nunca fica vazia depois de um job. Entradas
+     * de caches sem {@link CarregadorCache} (ou com falha na recarga) são removidas. As outras réplicas recarregam
+     * as entradas que têm do usuário. Retorna quantas foram agendadas aqui.
+     */
+    public int recarregarUsuario(Integer idUsuario) {
+        int agendadas = recarregarChavesUsuario(idUsuario);
+        difusao.accept(InvalidacaoCache.Tipo.RECARREGAR_USUARIO, idUsuario);
+        return agendadas;
+    }
+
+    /**
+     * Recarrega uma entrada em segundo plano se o cache tiver {@link CarregadorCache}; senão remove a entrada.
+     * Retorna true se a recarga foi agendada aqui.
+     */
+    public boolean recarregar(Object key) {
+        boolean agendada = recarregarChave(key);
+        difundir(key, InvalidacaoCache.Tipo.RECARREGAR_USUARIO, InvalidacaoCache.Tipo.RECARREGAR_CHAVE);
+        return agendada;
+    }
+
+    private int removerUsuario(Integer idUsuario) {
+        Set<Object> chaves = chavesPorUsuario.remove(idUsuario);
+        if (chaves == null) {
+            return 0;
+        }
+        chaves.forEach(delegate::evict);
+        remocoes.add(chaves.size());
+        return chaves.size();
+    }
+
+    private int recarregarChavesUsuario(Integer idUsuario) {
+        Set<Object> chaves = chavesPorUsuario.get(idUsuario);
+        if (chaves == null) {
+            return 0;
+        }
+        int agendadas = 0;
+        for (Object chave : List.copyOf(chaves)) {
+            if (recarregarChave(chave)) {
+                agendadas++;
+            }
+        }
+        return agendadas;
+    }
+
+    private boolean recarregarChave(Object key) {
+        if (!recarregadores.possuiCarregador() || !(delegate.getNativeCache() instanceof LoadingCache<?, ?>)) {
+            remover(key);
+            return false;
+        }
+        @SuppressWarnings("unchecked")
+        LoadingCache<Object, Object> nativo = (LoadingCache<Object, Object>) delegate.getNativeCache();
+        if (!nativo.asMap().containsKey(key)) {
+            // Sem entrada aqui o refresh seria uma carga nova, feita só quando alguém consultar a chave
+            desregistrar(key);
+            return false;
+        }
+        recargas.increment();
+        // O Caffeine junta recargas concorrentes da mesma chave; em caso de falha o valor antigo não é mantido
+        nativo.refresh(key).whenComplete((valor, erro) -> {
+            if (erro != null) {
+                remover(key);
+            }
+        });
+        return true;
+    }
+
+    private void remover(Object key) {
+        desregistrar(key);
+        delegate.evict(key);
+        remocoes.increment();
+    }
+
+    private void limpar() {
+        chavesPorUsuario.clear();
+        delegate.clear();
+    }
+
+    // Repassa a invalidação de uma chave: por dono, por id inteiro ou, para as demais chaves, o cache todo
+    private void difundir(Object key, InvalidacaoCache.Tipo porUsuario, InvalidacaoCache.Tipo porChave) {
+        if (key instanceof ChaveUsuario chave && chave.idUsuario() != null) {
+            difusao.accept(porUsuario, chave.idUsuario());
+        } else if (key instanceof Integer id) {
+            difusao.accept(porChave, id);
+        } else {
+            difusao.accept(InvalidacaoCache.Tipo.LIMPAR, null);
+        }
+    }
+
+    private void registrar(Object key) {
+        if (key instanceof ChaveUsuario chave && chave.idUsuario() != null) {
+            chavesPorUsuario.computeIfAbsent(chave.idUsuario(), id -> ConcurrentHashMap.newKeySet()).add(key);
+        }
+    }
+
+    private void desregistrar(Object key) {
+        if (key instanceof ChaveUsuario chave && chave.idUsuario() != null) {
+            chavesPorUsuario.computeIfPresent(chave.idUsuario(), (id, chaves) -> {
+                chaves.remove(key);
+                return chaves.isEmpty() ? null : chaves;
+            });
+        }
+    }
+}
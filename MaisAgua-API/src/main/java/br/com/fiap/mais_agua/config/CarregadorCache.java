@@ -0,0 +1,20 @@
+package br.com.fiap.mais_agua.config;
+
+/**
+ * Função de carga de um cache, usada pela recarga antecipada e pelo refresh-after-write. Recebe a chave da
+ * entrada ({@link ChaveUsuario} com o id do dono e os demais parâmetros, ou a chave simples do cache) e
+ * consulta o serviço diretamente, sem passar pelo proxy do @Cacheable nem pela requisição que carregou a
+ * entrada. Um bean por cache; as entradas de caches sem carregador são removidas no lugar de recarregadas.
+ */
+public interface CarregadorCache {
+
+    /**
+     * Nome do cache atendido.
+     */
+    String cache();
+
+    /**
+     * Valor atual da entrada; null também é guardado.
+     */
+    Object carregar(Object chave);
+}
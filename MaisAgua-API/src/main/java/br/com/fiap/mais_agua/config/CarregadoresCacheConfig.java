@@ -0,0 +1,78 @@
+package br.com.fiap.mais_agua.config;
+
+import br.com.fiap.mais_agua.controller.HistoricoReservatorioController.HistoricoReservatorioFilters;
+import br.com.fiap.mais_agua.controller.LeituraDispositivoController.LeituraDispositivoFilter;
+import br.com.fiap.mais_agua.model.Usuario;
+import br.com.fiap.mais_agua.repository.ReservatorioRepository;
+import br.com.fiap.mais_agua.service.EstadoAtualReservatorioService;
+import br.com.fiap.mais_agua.service.HistoricoReservatorioService;
+import br.com.fiap.mais_agua.service.LeituraDispositivoService;
+import br.com.fiap.mais_agua.service.PerfilService;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.ResponseEntity;
+
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Carregadores dos caches recarregados depois das gravações (leituras, históricos, estado atual, dashboard
+ * e perfil). Cada um refaz, a partir da chave, a mesma consulta do método com @Cacheable, chamando o
+ * serviço ou o repositório diretamente: a posse do reservatório filtrado já foi verificada quando a entrada
+ * foi carregada, e as consultas se limitam ao dono da chave. Os demais caches só são removidos.
+ */
+@Configuration
+public class CarregadoresCacheConfig {
+
+    @Bean
+    CarregadorCache carregadorLeituras(LeituraDispositivoService leituraService) {
+        // LeituraDispositivoController.index(usuario, filters, pageable)
+        return porUsuario(LeituraDispositivoService.CACHE, (usuario, parametros) -> leituraService.listar(usuario,
+                (LeituraDispositivoFilter) parametros.get(0), (Pageable) parametros.get(1)));
+    }
+
+    @Bean
+    CarregadorCache carregadorHistoricos(HistoricoReservatorioService historicoService) {
+        // HistoricoReservatorioController.index(usuario, filters, pageable)
+        return porUsuario(HistoricoReservatorioService.CACHE, (usuario, parametros) -> historicoService.listar(usuario,
+                (HistoricoReservatorioFilters) parametros.get(0), (Pageable) parametros.get(1)));
+    }
+
+    @Bean
+    CarregadorCache carregadorEstadoAtual(EstadoAtualReservatorioService estadoAtualService) {
+        return new Carregador(EstadoAtualReservatorioService.CACHE, chave -> estadoAtualService.carregar((Integer) chave));
+    }
+
+    @Bean
+    CarregadorCache carregadorDashboard(ReservatorioRepository reservatorioRepository) {
+        // DashboardController.index(usuario)
+        return porUsuario(EstadoAtualReservatorioService.CACHE_DASHBOARD,
+                (usuario, parametros) -> reservatorioRepository.findDashboard(usuario.getIdUsuario()));
+    }
+
+    @Bean
+    CarregadorCache carregadorPerfil(PerfilService perfilService) {
+        // UsuarioController.readPerfil(idReservatorio, usuario)
+        return porUsuario(EstadoAtualReservatorioService.CACHE_PERFIL, (usuario, parametros) ->
+                ResponseEntity.ok(perfilService.getPerfil((Integer) parametros.get(0), usuario)));
+    }
+
+    // Chaves do gerador "chaveUsuario": o dono vira um Usuario só com o id, como o das consultas por dono
+    private static CarregadorCache porUsuario(String cache, BiFunction<Usuario, List<Object>, Object> consulta) {
+        return new Carregador(cache, chave -> {
+            ChaveUsuario chaveUsuario = (ChaveUsuario) chave;
+            Usuario usuario = Usuario.builder().idUsuario(chaveUsuario.idUsuario()).build();
+            return consulta.apply(usuario, chaveUsuario.parametros());
+        });
+    }
+
+    private record Carregador(String cache, Function<Object, Object> carga) implements CarregadorCache {
+
+        @Override
+        public Object carregar(Object chave) {
+            return carga.apply(chave);
+        }
+    }
+}
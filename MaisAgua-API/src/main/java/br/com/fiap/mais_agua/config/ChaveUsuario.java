@@ -0,0 +1,9 @@
+package br.com.fiap.mais_agua.config;
+
+import java.util.List;
+
+/**
+ * Chave das entradas de cache de um usuário: o id do dono mais os demais parâmetros do método
+ * (filtros, paginação, ids). Gerada pelo KeyGenerator "chaveUsuario".
+ */
+public record ChaveUsuario(Integer idUsuario, List<Object> parametros) {}
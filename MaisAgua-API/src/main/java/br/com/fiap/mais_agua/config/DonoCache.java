@@ -0,0 +1,7 @@
+package br.com.fiap.mais_agua.config;
+
+/**
+ * Chave de remoção que representa todas as entradas de um usuário em um cache. Gerada pelo KeyGenerator
+ * "donoUsuario" para os @CacheEvict das escritas, ou criada diretamente para remoções programáticas.
+ */
+public record DonoCache(Integer idUsuario) {}
@@ -0,0 +1,22 @@
+package br.com.fiap.mais_agua.config;
+
+/**
+ * Invalidação feita nos caches de uma réplica, repassada às demais pelo {@link TransporteInvalidacao}.
+ * Só vão para o transporte chaves que todas as réplicas sabem reconstruir: o dono (para as chaves por
+ * usuário) ou um id inteiro (como o reservatório do "estadoAtual"); qualquer outra chave limpa o cache todo.
+ *
+ * @param origem identificador da réplica que fez a invalidação
+ * @param cache  nome do cache
+ * @param tipo   operação a repetir nas outras réplicas
+ * @param id     dono (tipos *_USUARIO) ou chave inteira (tipos *_CHAVE); null em LIMPAR
+ */
+public record InvalidacaoCache(String origem, String cache, Tipo tipo, Integer id) {
+
+    public enum Tipo {
+        REMOVER_USUARIO,
+        RECARREGAR_USUARIO,
+        REMOVER_CHAVE,
+        RECARREGAR_CHAVE,
+        LIMPAR
+    }
+}
@@ -0,0 +1,56 @@
+package br.com.fiap.mais_agua.config;
+
+import br.com.fiap.mais_agua.service.TentativasLogin;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Tentativas de HTTP Basic limitadas por IP, antes do {@link org.springframework.security.web.authentication.www.BasicAuthenticationFilter}:
+ * o Basic recusado responde 401 dentro do próprio filtro do Spring Security, sem passar pelo
+ * {@link LimiteTaxaFilter}. Usa os mesmos contadores por IP do login ({@link TentativasLogin}); cada 401 de uma
+ * requisição com Basic conta uma falha, e o IP que esgotou a janela recebe 429 antes da verificação BCrypt.
+ */
+@Component
+public class LimiteBasicFilter extends OncePerRequestFilter {
+
+    @Autowired
+    private TentativasLogin tentativasLogin;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        String ip = request.getRemoteAddr();
+        long espera = tentativasLogin.esperaBasic(ip);
+        if (espera > 0) {
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, espera)));
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.getWriter().write("""
+                {"message": "Muitas tentativas de login deste endereço"}
+            """);
+            return;
+        }
+
+        filterChain.doFilter(request, response);
+
+        // Com Basic, o 401 vem da verificação das credenciais (as autorizadas não recebem 401 depois)
+        if (response.getStatus() == HttpStatus.UNAUTHORIZED.value()) {
+            tentativasLogin.registrarFalhaBasic(ip);
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String header = request.getHeader(HttpHeaders.AUTHORIZATION);
+        return header == null || !header.startsWith("Basic ");
+    }
+}
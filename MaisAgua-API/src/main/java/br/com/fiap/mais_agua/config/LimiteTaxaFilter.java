@@ -0,0 +1,79 @@
+package br.com.fiap.mais_agua.config;
+
+import br.com.fiap.mais_agua.model.Usuario;
+import br.com.fiap.mais_agua.service.LimitadorTaxa;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Limite de taxa por principal, depois da autenticação (JWT ou Basic): o usuário autenticado, ou o IP sem
+ * autenticação e no login. O grupo da rota define o balde: ingestao (POST de leituras), login (login e
+ * cadastros), leitura (GET) e escrita (demais métodos). A requisição acima do limite recebe 429 na hora,
+ * antes de chegar ao controller e ocupar uma conexão do pool.
+ */
+@Component
+public class LimiteTaxaFilter extends OncePerRequestFilter {
+
+    @Autowired
+    private LimitadorTaxa limitadorTaxa;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        String grupo = grupo(request);
+        long espera = limitadorTaxa.consumir(grupo, principal(request, grupo));
+        if (espera > 0) {
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, LimitadorTaxa.segundos(espera))));
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.getWriter().write("""
+                {"message": "Limite de requisições atingido, tente novamente após o Retry-After"}
+            """);
+            return;
+        }
+
+        filterChain.doFilter(request, response);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI();
+        return path.startsWith("/swagger-ui") || path.startsWith("/v3/api-docs");
+    }
+
+    private static String grupo(HttpServletRequest request) {
+        String path = request.getRequestURI();
+        if (path.equals("/login") || path.equals("/cadastro") || path.equals("/cadastro-completo")) {
+            return "login";
+        }
+        if (HttpMethod.POST.matches(request.getMethod()) && path.startsWith("/leitura-dispositivo")) {
+            return "ingestao";
+        }
+        if (HttpMethod.GET.matches(request.getMethod()) || HttpMethod.HEAD.matches(request.getMethod())) {
+            return "leitura";
+        }
+        return "escrita";
+    }
+
+    private static String principal(HttpServletRequest request, String grupo) {
+        Authentication autenticacao = SecurityContextHolder.getContext().getAuthentication();
+        if (!"login".equals(grupo) && autenticacao != null && autenticacao.getPrincipal() instanceof Usuario usuario
+                && usuario.getIdUsuario() != null) {
+            return "usuario:" + usuario.getIdUsuario();
+        }
+        // IP do cliente já resolvido pelo Tomcat a partir do X-Forwarded-For, e não o do balanceador
+        return "ip:" + request.getRemoteAddr();
+    }
+}
@@ -0,0 +1,28 @@
+package br.com.fiap.mais_agua.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Limites de taxa por principal (mais-agua.limite-taxa.*): um balde de tokens por grupo de rotas e por
+ * usuário autenticado (ou IP, sem autenticação). Grupos sem configuração não são limitados.
+ *
+ * @param maximoPrincipais        quantidade máxima de baldes em memória (somando todos os grupos)
+ * @param expiraAposInatividade   tempo sem requisições depois do qual o balde do principal é descartado
+ * @param grupos                  balde de cada grupo: ingestao, leitura, escrita, login e dispositivo
+ */
+@ConfigurationProperties(prefix = "mais-agua.limite-taxa")
+public record LimiteTaxaPropriedades(Long maximoPrincipais, Duration expiraAposInatividade, Map<String, Balde> grupos) {
+
+    /**
+     * @param taxaPorSegundo tokens repostos por segundo (taxa sustentada)
+     * @param capacidade     tokens acumulados no máximo (rajada aceita depois de um período parado)
+     */
+    public record Balde(double taxaPorSegundo, int capacidade) {}
+
+    public Balde de(String grupo) {
+        return grupos != null ? grupos.get(grupo) : null;
+    }
+}
@@ -0,0 +1,51 @@
+package br.com.fiap.mais_agua.config;
+
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import org.springframework.cache.support.NullValue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Carga das entradas de um cache, usada pelo refresh-after-write do Caffeine e pela recarga antecipada
+ * depois das gravações ({@link CacheUsuario#recarregarUsuario}). Delega ao {@link CarregadorCache} do
+ * cache, obtido só na primeira recarga para não criar dependência entre o gerenciador de caches e os
+ * serviços. Sem carregador a recarga retorna null e a entrada é descartada, como uma expiração. As recargas
+ * rodam no pool próprio dos caches, e não no ForkJoinPool comum.
+ */
+class Recarregadores implements CacheLoader<Object, Object> {
+
+    private final Supplier<CarregadorCache> carregador;
+    private final Executor recarga;
+
+    Recarregadores(Supplier<CarregadorCache> carregador, Executor recarga) {
+        this.carregador = carregador;
+        this.recarga = recarga;
+    }
+
+    boolean possuiCarregador() {
+        return carregador.get() != null;
+    }
+
+    @Override
+    public Object load(Object chave) {
+        CarregadorCache atual = carregador.get();
+        if (atual == null) {
+            return null;
+        }
+        Object valor = atual.carregar(chave);
+        return valor != null ? valor : NullValue.INSTANCE;
+    }
+
+    @Override
+    public CompletableFuture<?> asyncReload(Object chave, Object valorAtual, Executor executor) {
+        try {
+            return CompletableFuture.supplyAsync(() -> load(chave), recarga);
+        } catch (RejectedExecutionException e) {
+            // Pool de recarga cheio: quem chamou decide entre manter o valor atual ou remover a entrada
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package br.com.fiap.mais_agua.config;
 
+import jakarta.servlet.DispatcherType;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -12,6 +14,7 @@ import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
@@ -19,16 +22,25 @@ import java.util.Arrays;
 
 
 @Configuration
+@EnableConfigurationProperties(LimiteTaxaPropriedades.class)
 public class SecurityConfig {
 
     @Autowired
     private AuthFilter authFilter;
 
+    @Autowired
+    private LimiteTaxaFilter limiteTaxaFilter;
+
+    @Autowired
+    private LimiteBasicFilter limiteBasicFilter;
+
     @Bean
     SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
         return http
                 .cors(Customizer.withDefaults())
                 .authorizeHttpRequests(auth -> auth
+                        // Dispatch assíncrono (fim das conexões SSE de /eventos): a requisição original já foi autorizada
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                         .requestMatchers("/swagger-ui/**", "/swagger-ui.html", "/v3/api-docs/**").permitAll()
                         .requestMatchers("/login").permitAll()
                         .requestMatchers("/cadastro").permitAll()
@@ -41,6 +53,10 @@ public class SecurityConfig {
                 .csrf(csrf -> csrf.disable())
                 .addFilterBefore(authFilter, UsernamePasswordAuthenticationFilter.class)
                 .httpBasic(Customizer.withDefaults())
+                // Antes do Basic: o Basic recusado responde 401 ali mesmo, sem chegar ao limite de taxa
+                .addFilterBefore(limiteBasicFilter, BasicAuthenticationFilter.class)
+                // Depois do JWT e do Basic, para limitar pelo usuário autenticado
+                .addFilterAfter(limiteTaxaFilter, BasicAuthenticationFilter.class)
                 .build();
     }
 
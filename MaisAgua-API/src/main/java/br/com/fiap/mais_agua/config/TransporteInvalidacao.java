@@ -0,0 +1,22 @@
+package br.com.fiap.mais_agua.config;
+
+import java.util.function.Consumer;
+
+/**
+ * Canal que leva as invalidações de cache de uma réplica para as demais. A implementação é escolhida por
+ * mais-agua.cache.invalidacao.transporte: "local" (padrão, uma réplica só ou testes) ou "jdbc" (log de
+ * invalidações no banco, lido periodicamente por todas as réplicas).
+ */
+public interface TransporteInvalidacao {
+
+    /**
+     * Envia a invalidação para as outras réplicas. Não deve bloquear: é chamado no caminho das requisições.
+     */
+    void publicar(InvalidacaoCache invalidacao);
+
+    /**
+     * Registra quem aplica as invalidações recebidas. As invalidações da própria réplica também podem ser
+     * entregues; o receptor ignora as da sua origem.
+     */
+    void receber(Consumer<InvalidacaoCache> receptor);
+}
@@ -0,0 +1,30 @@
+package br.com.fiap.mais_agua.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Transporte em memória: entrega cada invalidação na hora a todos os receptores da mesma JVM. Com uma
+ * réplica só não há a quem repassar; em testes, dois gerenciadores de cache no mesmo transporte se
+ * comportam como duas réplicas.
+ */
+@Component
+@ConditionalOnProperty(name = "mais-agua.cache.invalidacao.transporte", havingValue = "local", matchIfMissing = true)
+public class TransporteInvalidacaoLocal implements TransporteInvalidacao {
+
+    private final List<Consumer<InvalidacaoCache>> receptores = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void publicar(InvalidacaoCache invalidacao) {
+        receptores.forEach(receptor -> receptor.accept(invalidacao));
+    }
+
+    @Override
+    public void receber(Consumer<InvalidacaoCache> receptor) {
+        receptores.add(receptor);
+    }
+}
@@ -0,0 +1,103 @@
+package br.com.fiap.mais_agua.controller;
+
+import br.com.fiap.mais_agua.model.DTO.AgregacaoHistoricoDTO;
+import br.com.fiap.mais_agua.model.DTO.AgregacaoLeituraDTO;
+import br.com.fiap.mais_agua.model.IntervaloAgregacao;
+import br.com.fiap.mais_agua.model.Usuario;
+import br.com.fiap.mais_agua.repository.AgregacaoRepository;
+import br.com.fiap.mais_agua.service.IndicePropriedade;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@RestController
+@RequestMapping("/agregacao")
+@Slf4j
+@Tag(name = "Agregação", description = "Séries agregadas por intervalo de tempo das leituras e históricos de um reservatório")
+public class AgregacaoController {
+
+    @Autowired
+    private AgregacaoRepository agregacaoRepository;
+
+    @Autowired
+    private IndicePropriedade indicePropriedade;
+
+    @Value("${mais-agua.agregacao.max-buckets:2000}")
+    private long maxBuckets;
+
+    @GetMapping("/leituras")
+    @Operation(
+            summary = "Agregar leituras",
+            description = "Retorna mínimo, máximo, média e último valor de nível (%), pH e turbidez das leituras do reservatório, um item por intervalo (5m, hora, dia ou semana) no período [inicio, fim).",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Agregação retornada com sucesso"),
+                    @ApiResponse(responseCode = "400", description = "Intervalo ou período inválido"),
+                    @ApiResponse(responseCode = "403", description = "Reservatório não pertence ao usuário")
+            }
+    )
+    public List<AgregacaoLeituraDTO> leituras(@RequestParam Integer idReservatorio,
+                                              @RequestParam(defaultValue = "hora") String intervalo,
+                                              @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime inicio,
+                                              @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime fim,
+                                              @AuthenticationPrincipal Usuario usuario) {
+        IntervaloAgregacao bucket = validar(idReservatorio, intervalo, inicio, fim, usuario);
+        log.info("Agregando leituras do reservatório {} por {} de {} a {}", idReservatorio, bucket.getCodigo(), inicio, fim);
+        return agregacaoRepository.agregarLeituras(idReservatorio, bucket, inicio, fim);
+    }
+
+    @GetMapping("/historico")
+    @Operation(
+            summary = "Agregar históricos",
+            description = "Retorna mínimo, máximo, média e último valor do nível em litros dos históricos do reservatório, um item por intervalo (5m, hora, dia ou semana) no período [inicio, fim).",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Agregação retornada com sucesso"),
+                    @ApiResponse(responseCode = "400", description = "Intervalo ou período inválido"),
+                    @ApiResponse(responseCode = "403", description = "Reservatório não pertence ao usuário")
+            }
+    )
+    public List<AgregacaoHistoricoDTO> historico(@RequestParam Integer idReservatorio,
+                                                 @RequestParam(defaultValue = "dia") String intervalo,
+                                                 @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime inicio,
+                                                 @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime fim,
+                                                 @AuthenticationPrincipal Usuario usuario) {
+        IntervaloAgregacao bucket = validar(idReservatorio, intervalo, inicio, fim, usuario);
+        log.info("Agregando históricos do reservatório {} por {} de {} a {}", idReservatorio, bucket.getCodigo(), inicio, fim);
+        return agregacaoRepository.agregarHistoricos(idReservatorio, bucket, inicio, fim);
+    }
+
+    private IntervaloAgregacao validar(Integer idReservatorio, String intervalo, LocalDateTime inicio,
+                                       LocalDateTime fim, Usuario usuario) {
+        IntervaloAgregacao bucket = IntervaloAgregacao.de(intervalo);
+
+        if (!fim.isAfter(inicio)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "A data final deve ser posterior à data inicial");
+        }
+
+        // Limita o tamanho da resposta: períodos longos devem usar intervalos maiores
+        long buckets = Duration.between(inicio, fim).dividedBy(bucket.getDuracao()) + 1;
+        if (buckets > maxBuckets) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Período muito longo para o intervalo " + bucket.getCodigo() + ": máximo de " + maxBuckets + " intervalos");
+        }
+
+        if (!indicePropriedade.possuiReservatorio(usuario, idReservatorio)) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Você não tem permissão para acessar este reservatório");
+        }
+        return bucket;
+    }
+}
@@ -29,7 +29,7 @@ public class CidadeController {
                     @ApiResponse(responseCode = "200", description = "Lista retornada com sucesso")
             }
     )
-    @Cacheable("cidades")
+    @Cacheable(value = "cidades", sync = true)
     public List<Cidade> listar() {
         return repository.findAll();
     }
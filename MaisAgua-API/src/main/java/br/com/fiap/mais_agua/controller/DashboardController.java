@@ -0,0 +1,42 @@
+package br.com.fiap.mais_agua.controller;
+
+import br.com.fiap.mais_agua.model.DTO.DashboardReservatorioDTO;
+import br.com.fiap.mais_agua.model.Usuario;
+import br.com.fiap.mais_agua.repository.ReservatorioRepository;
+import br.com.fiap.mais_agua.service.EstadoAtualReservatorioService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/dashboard")
+@Slf4j
+@Tag(name = "Dashboard", description = "Visão consolidada do estado atual de todos os reservatórios do usuário")
+public class DashboardController {
+
+    @Autowired
+    private ReservatorioRepository reservatorioRepository;
+
+    @GetMapping
+    @Operation(
+            summary = "Dashboard dos reservatórios",
+            description = "Retorna, em uma única resposta e com uma única consulta, o nível atual, percentual, pH, turbidez e status de todos os reservatórios do usuário autenticado.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Dashboard retornado com sucesso"),
+                    @ApiResponse(responseCode = "401", description = "Usuário não autenticado")
+            }
+    )
+    @Cacheable(value = EstadoAtualReservatorioService.CACHE_DASHBOARD, keyGenerator = "chaveUsuario", sync = true)
+    public List<DashboardReservatorioDTO> index(@AuthenticationPrincipal Usuario usuario) {
+        return reservatorioRepository.findDashboard(usuario.getIdUsuario());
+    }
+}
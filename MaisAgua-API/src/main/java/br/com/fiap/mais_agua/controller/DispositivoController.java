@@ -34,7 +34,7 @@ public class DispositivoController {
                     @ApiResponse(responseCode = "200", description = "Lista retornada com sucesso")
             }
     )
-    @Cacheable("dispositivos")
+    @Cacheable(value = "dispositivos", sync = true)
     public List<Dispositivo> index() {
         return dispositivoRepository.findAll();
     }
@@ -8,6 +8,7 @@ import br.com.fiap.mais_agua.model.DTO.UnidadeReadDTO;
 import br.com.fiap.mais_agua.model.DTO.UsuarioResponseDTO;
 import br.com.fiap.mais_agua.repository.EnderecoRepository;
 import br.com.fiap.mais_agua.repository.UnidadeRepository;
+import br.com.fiap.mais_agua.service.IndicePropriedade;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -17,6 +18,7 @@ import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
@@ -38,6 +40,9 @@ public class EnderecoController {
     @Autowired
     private UnidadeRepository unidadeRepository;
 
+    @Autowired
+    private IndicePropriedade indicePropriedade;
+
     @GetMapping
     @Operation(
             summary = "Listar endereços do usuário",
@@ -46,7 +51,7 @@ public class EnderecoController {
                     @ApiResponse(responseCode = "200", description = "Endereços retornados com sucesso")
             }
     )
-    @Cacheable("endereco")
+    @Cacheable(value = "endereco", keyGenerator = "chaveUsuario", sync = true)
     public ResponseEntity<List<EnderecoDTO>> index(@AuthenticationPrincipal Usuario usuario) {
         List<Endereco> enderecos = enderecoRepository.findByUnidadeUsuario(usuario);
         List<EnderecoDTO> enderecoDTOs = enderecos.stream()
@@ -67,14 +72,17 @@ public class EnderecoController {
                     @ApiResponse(responseCode = "404", description = "Unidade não encontrada")
             }
     )
-    @CacheEvict(value = "endereco", allEntries = true)
+    @Caching(evict = {
+            @CacheEvict(value = "endereco", keyGenerator = "donoUsuario"),
+            @CacheEvict(value = "usuarios", keyGenerator = "donoUsuario")
+    })
     public EnderecoDTO create(@RequestBody @Valid Endereco endereco, @AuthenticationPrincipal Usuario usuario) {
         log.info("Cadastrando endereço: " + endereco.getLogradouro());
 
         Unidade unidade = unidadeRepository.findById(endereco.getUnidade().getIdUnidade())
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Unidade não encontrada"));
 
-        if (!unidade.getUsuario().equals(usuario)) {
+        if (!indicePropriedade.possuiUnidade(usuario, unidade.getIdUnidade())) {
             throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Você não tem permissão para acessar esta unidade");
         }
 
@@ -99,7 +107,7 @@ public class EnderecoController {
         Endereco endereco = enderecoRepository.findById(id)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Endereço não encontrado"));
 
-        if (!endereco.getUnidade().getUsuario().equals(usuario)) {
+        if (!indicePropriedade.possuiUnidade(usuario, endereco.getUnidade().getIdUnidade())) {
             throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Você não tem permissão para acessar este endereço");
         }
 
@@ -118,13 +126,16 @@ public class EnderecoController {
                     @ApiResponse(responseCode = "404", description = "Endereço não encontrado")
             }
     )
-    @CacheEvict(value = "endereco", allEntries = true)
+    @Caching(evict = {
+            @CacheEvict(value = "endereco", keyGenerator = "donoUsuario"),
+            @CacheEvict(value = "usuarios", keyGenerator = "donoUsuario")
+    })
     public ResponseEntity<Object> destroy(@PathVariable Integer id, @AuthenticationPrincipal Usuario usuario) {
         log.info("Excluindo endereço " + id);
         Endereco endereco = enderecoRepository.findById(id)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Endereço não encontrado"));
 
-        if (!endereco.getUnidade().getUsuario().equals(usuario)) {
+        if (!indicePropriedade.possuiUnidade(usuario, endereco.getUnidade().getIdUnidade())) {
             throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Você não tem permissão para excluir este endereço");
         }
 
@@ -143,7 +154,10 @@ public class EnderecoController {
                     @ApiResponse(responseCode = "404", description = "Endereço não encontrado")
             }
     )
-    @CacheEvict(value = "endereco", allEntries = true)
+    @Caching(evict = {
+            @CacheEvict(value = "endereco", keyGenerator = "donoUsuario"),
+            @CacheEvict(value = "usuarios", keyGenerator = "donoUsuario")
+    })
     public ResponseEntity<Object> update(@PathVariable Integer id,
                                          @RequestBody @Valid Endereco endereco,
                                          @AuthenticationPrincipal Usuario usuario) {
@@ -152,7 +166,7 @@ public class EnderecoController {
         Endereco oldEndereco = enderecoRepository.findById(id)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Endereço não encontrado"));
 
-        if (!oldEndereco.getUnidade().getUsuario().equals(usuario)) {
+        if (!indicePropriedade.possuiUnidade(usuario, oldEndereco.getUnidade().getIdUnidade())) {
             throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Você não tem permissão para atualizar este endereço");
         }
 
@@ -29,7 +29,7 @@ public class EstadoController {
                     @ApiResponse(responseCode = "200", description = "Lista retornada com sucesso")
             }
     )
-    @Cacheable("estados")
+    @Cacheable(value = "estados", sync = true)
     public List<Estado> listar() {
         return repository.findAll();
     }
@@ -0,0 +1,40 @@
+package br.com.fiap.mais_agua.controller;
+
+import br.com.fiap.mais_agua.model.Usuario;
+import br.com.fiap.mais_agua.service.EventoReservatorioHub;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+@RestController
+@RequestMapping("/eventos")
+@Slf4j
+@Tag(name = "Eventos", description = "Feed em tempo real (Server-Sent Events) das novas leituras e históricos dos reservatórios do usuário")
+public class EventoController {
+
+    @Autowired
+    private EventoReservatorioHub eventoHub;
+
+    @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(
+            summary = "Inscrever-se nos eventos dos reservatórios",
+            description = "Abre uma conexão SSE que recebe os eventos 'leituras' e 'historicos' (listas com os registros gravados) apenas dos reservatórios do usuário autenticado, substituindo o polling das listagens. Comentários 'ping' são enviados periodicamente para manter a conexão.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Conexão de eventos aberta"),
+                    @ApiResponse(responseCode = "401", description = "Usuário não autenticado"),
+                    @ApiResponse(responseCode = "429", description = "Limite de conexões de eventos atingido")
+            }
+    )
+    public SseEmitter inscrever(@AuthenticationPrincipal Usuario usuario) {
+        log.info("Abrindo conexão de eventos para o usuário {}", usuario.getIdUsuario());
+        return eventoHub.inscrever(usuario.getIdUsuario());
+    }
+}
@@ -5,10 +5,16 @@ import br.com.fiap.mais_agua.model.DTO.*;
 import br.com.fiap.mais_agua.repository.HistoricoReservatorioRepository;
 import br.com.fiap.mais_agua.repository.ReservatorioRepository;
 import br.com.fiap.mais_agua.repository.StatusReservatorioRepository;
+import br.com.fiap.mais_agua.service.HistoricoReservatorioService;
+import br.com.fiap.mais_agua.service.IndicePropriedade;
 import br.com.fiap.mais_agua.specification.HistoricoReservatorioSpecification;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
 import org.springdoc.core.annotations.ParameterObject;
@@ -16,13 +22,25 @@ import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.web.PageableDefault;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.util.List;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.stream.Stream;
 
 @RestController
 @RequestMapping("/historico-reservatorio")
@@ -39,43 +57,96 @@ public class HistoricoReservatorioController {
     @Autowired
     private StatusReservatorioRepository statusRepository;
 
-    public record HistoricoReservatorioFilters(Integer idReservatorio, Integer nivelLitros, Integer status){}
+    @Autowired
+    private HistoricoReservatorioService historicoService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private IndicePropriedade indicePropriedade;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public record HistoricoReservatorioFilters(
+            Integer idReservatorio,
+            Integer nivelLitros,
+            Integer status,
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime dataInicio,
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime dataFim
+    ){}
 
     @GetMapping
     @Operation(
             summary = "Listar históricos",
-            description = "Retorna todos os registros de histórico dos reservatórios do usuário logado.",
+            description = "Retorna os registros de histórico dos reservatórios do usuário logado de forma paginada, com filtro opcional por período (dataInicio/dataFim).",
             responses = {
                     @ApiResponse(responseCode = "200", description = "Históricos retornados com sucesso"),
                     @ApiResponse(responseCode = "401", description = "Não autorizado"),
                     @ApiResponse(responseCode = "403", description = "Você não tem acesso a este reservatório")
             }
     )
-    @Cacheable("historicoReservatorio")
-    public List<HistoricoReservatorioDTO> index(
+    @Cacheable(value = "historicoReservatorio", keyGenerator = "chaveUsuario", sync = true)
+    public Page<HistoricoReservatorioDTO> index(
             @AuthenticationPrincipal Usuario usuario,
-            @ParameterObject HistoricoReservatorioFilters filters) {
+            @ParameterObject HistoricoReservatorioFilters filters,
+            @PageableDefault(size = 20, sort = "dataHora", direction = Sort.Direction.DESC) Pageable pageable) {
 
-        if (filters.idReservatorio != null) {
-            boolean pertence = reservatorioRepository.existsByIdReservatorioAndUnidadeUsuario(
-                    filters.idReservatorio, usuario
-            );
+        validarFiltroReservatorio(filters, usuario);
 
-            if (!pertence) {
-                throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Você não tem acesso a este reservatório");
+        return historicoService.listar(usuario, filters, pageable);
+    }
+
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(
+            summary = "Exportar históricos (stream)",
+            description = "Retorna todos os históricos filtrados como um array JSON escrito incrementalmente a partir de um cursor do banco, com uso de memória constante independente do tamanho do histórico.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Históricos retornados com sucesso"),
+                    @ApiResponse(responseCode = "401", description = "Não autorizado"),
+                    @ApiResponse(responseCode = "403", description = "Você não tem acesso a este reservatório")
             }
-        }
-        var specification = HistoricoReservatorioSpecification.withFilters(filters, usuario);
+    )
+    public StreamingResponseBody stream(
+            @AuthenticationPrincipal Usuario usuario,
+            @ParameterObject HistoricoReservatorioFilters filters) {
 
-        List<HistoricoReservatorio> historicos = historicoRepository.findAll(specification);
+        validarFiltroReservatorio(filters, usuario);
+        var specification = HistoricoReservatorioSpecification.withFilters(filters, usuario);
 
-        return historicos.stream()
-                .map(this::toDTO)
-                .toList();
+        return output -> {
+            TransactionTemplate leitura = new TransactionTemplate(transactionManager);
+            leitura.setReadOnly(true);
+
+            leitura.executeWithoutResult(status -> {
+                try (JsonGenerator json = objectMapper.getFactory().createGenerator(output);
+                     Stream<HistoricoReservatorio> historicos = historicoRepository.findBy(specification, q -> q
+                             .sortBy(Sort.by(Sort.Direction.DESC, "dataHora", "id"))
+                             .project("reservatorio.unidade.usuario", "status")
+                             .stream())) {
+
+                    json.writeStartArray();
+                    historicos.forEach(historico -> {
+                        try {
+                            json.writeObject(historicoService.toDTO(historico));
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                        // Só o histórico sai do contexto; reservatórios e status se repetem e continuam em cache
+                        entityManager.detach(historico);
+                    });
+                    json.writeEndArray();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        };
     }
 
-
-
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
     @Operation(
@@ -88,7 +159,7 @@ public class HistoricoReservatorioController {
                     @ApiResponse(responseCode = "404", description = "Reservatório ou status não encontrados")
             }
     )
-    @CacheEvict(value = "historicoReservatorio", allEntries = true)
+    @CacheEvict(value = "historicoReservatorio", keyGenerator = "donoUsuario")
     public HistoricoReservatorioDTO create(@RequestBody @Valid HistoricoReservatorio historico,
                                            @AuthenticationPrincipal Usuario usuario) {
         log.info("Cadastrando histórico");
@@ -100,9 +171,10 @@ public class HistoricoReservatorioController {
 
         historico.setReservatorio(reservatorio);
         historico.setStatus(status);
+        historico.setIdUsuario(reservatorio.getUnidade().getUsuario().getIdUsuario());
 
-        var saved = historicoRepository.save(historico);
-        return toDTO(saved);
+        var saved = historicoService.salvar(historico);
+        return historicoService.toDTO(saved);
     }
 
     @GetMapping("{id}")
@@ -117,7 +189,7 @@ public class HistoricoReservatorioController {
     )
     public ResponseEntity<HistoricoReservatorioDTO> get(@PathVariable Integer id,
                                                         @AuthenticationPrincipal Usuario usuario) {
-        return ResponseEntity.ok(toDTO(getHistorico(id, usuario)));
+        return ResponseEntity.ok(historicoService.toDTO(getHistorico(id, usuario)));
     }
 
     @DeleteMapping("{id}")
@@ -130,12 +202,12 @@ public class HistoricoReservatorioController {
                     @ApiResponse(responseCode = "404", description = "Histórico não encontrado")
             }
     )
-    @CacheEvict(value = "historicoReservatorio", allEntries = true)
+    @CacheEvict(value = "historicoReservatorio", keyGenerator = "donoUsuario")
     public ResponseEntity<Object> destroy(@PathVariable Integer id,
                                           @AuthenticationPrincipal Usuario usuario) {
         var historico = getHistorico(id, usuario);
 
-        historicoRepository.delete(historico);
+        historicoService.excluir(historico);
         return ResponseEntity.noContent().build();
     }
 
@@ -150,11 +222,13 @@ public class HistoricoReservatorioController {
                     @ApiResponse(responseCode = "404", description = "Histórico ou status não encontrados")
             }
     )
-    @CacheEvict(value = "historicoReservatorio", allEntries = true)
+    @CacheEvict(value = "historicoReservatorio", keyGenerator = "donoUsuario")
     public ResponseEntity<HistoricoReservatorioDTO> update(@PathVariable Integer id,
                                                            @RequestBody @Valid HistoricoReservatorio historico,
                                                            @AuthenticationPrincipal Usuario usuario) {
         var historicoDB = getHistorico(id, usuario);
+        Integer idReservatorioAnterior = historicoDB.getReservatorio().getIdReservatorio();
+        Integer idUsuarioAnterior = historicoDB.getIdUsuario();
 
         Reservatorio reservatorio = getReservatorio(historico.getReservatorio().getIdReservatorio(), usuario);
         validarNivelLitros(historico.getNivelLitros(), reservatorio.getCapacidadeTotalLitros());
@@ -163,11 +237,20 @@ public class HistoricoReservatorioController {
 
         historico.setReservatorio(reservatorio);
         historico.setStatus(status);
+        historico.setIdUsuario(reservatorio.getUnidade().getUsuario().getIdUsuario());
 
         BeanUtils.copyProperties(historico, historicoDB, "id");
-        historicoRepository.save(historicoDB);
+        historicoService.atualizar(historicoDB, idReservatorioAnterior, idUsuarioAnterior);
+
+        return ResponseEntity.ok(historicoService.toDTO(historicoDB));
+    }
 
-        return ResponseEntity.ok(toDTO(historicoDB));
+    private void validarFiltroReservatorio(HistoricoReservatorioFilters filters, Usuario usuario) {
+        if (filters.idReservatorio() != null) {
+            if (!indicePropriedade.possuiReservatorio(usuario, filters.idReservatorio())) {
+                throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Você não tem acesso a este reservatório");
+            }
+        }
     }
 
     private void validarNivelLitros(int nivelLitros, int capacidadeTotalLitros) {
@@ -177,39 +260,11 @@ public class HistoricoReservatorioController {
         }
     }
 
-    private HistoricoReservatorioDTO toDTO(HistoricoReservatorio entity) {
-        var unidade = entity.getReservatorio().getUnidade();
-        var usuario = unidade.getUsuario();
-
-        return new HistoricoReservatorioDTO(
-                entity.getId(),
-                entity.getNivelLitros(),
-                entity.getDataHora() != null ? entity.getDataHora().toString() : null,
-                new ReservatorioBasicoDTO(
-                        entity.getReservatorio().getIdReservatorio(),
-                        entity.getReservatorio().getNome(),
-                        entity.getReservatorio().getCapacidadeTotalLitros()
-                ),
-                UnidadeReadDTO.builder()
-                        .idUnidade(unidade.getIdUnidade())
-                        .nomeUnidade(unidade.getNome())
-                        .capacidadeTotalLitros(unidade.getCapacidadeTotalLitros())
-                        .dataCadastro(unidade.getDataCadastro().toString())
-                        .usuario(new UsuarioResponseDTO(
-                                usuario.getIdUsuario(),
-                                usuario.getNome(),
-                                usuario.getEmail()
-                        ))
-                        .build(),
-                entity.getStatus()
-        );
-    }
-
     private HistoricoReservatorio getHistorico(Integer id, Usuario usuario) {
         var historico = historicoRepository.findById(id)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Histórico não encontrado"));
 
-        if (!historico.getReservatorio().getUnidade().getUsuario().equals(usuario)) {
+        if (!indicePropriedade.possuiReservatorio(usuario, historico.getReservatorio().getIdReservatorio())) {
             throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Você não tem permissão para acessar este histórico");
         }
 
@@ -220,7 +275,7 @@ public class HistoricoReservatorioController {
         var reservatorio = reservatorioRepository.findById(id)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Reservatório não encontrado"));
 
-        if (!reservatorio.getUnidade().getUsuario().equals(usuario)) {
+        if (!indicePropriedade.possuiReservatorio(usuario, reservatorio.getIdReservatorio())) {
             throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Você não tem permissão para acessar este reservatório");
         }
 
@@ -1,17 +1,24 @@
 package br.com.fiap.mais_agua.controller;
 
+import br.com.fiap.mais_agua.model.DTO.CursorLeituraDTO;
+import br.com.fiap.mais_agua.model.DTO.LeituraCursorPageDTO;
+import br.com.fiap.mais_agua.model.DTO.LeituraLoteDTO;
+import br.com.fiap.mais_agua.model.DTO.LeituraLoteResponseDTO;
 import br.com.fiap.mais_agua.model.Dispositivo;
 import br.com.fiap.mais_agua.model.LeituraDispositivo;
 import br.com.fiap.mais_agua.model.Usuario;
 import br.com.fiap.mais_agua.repository.DispositivoRepository;
 import br.com.fiap.mais_agua.repository.LeituraDispositivoRepository;
-import br.com.fiap.mais_agua.repository.ReservatorioDispositivoRepository;
-import br.com.fiap.mais_agua.repository.ReservatorioRepository;
+import br.com.fiap.mais_agua.service.IndicePropriedade;
+import br.com.fiap.mais_agua.service.LeituraDispositivoService;
+import br.com.fiap.mais_agua.service.LimitadorTaxa;
 import br.com.fiap.mais_agua.specification.LeituraDispositivoSpecification;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import lombok.extern.slf4j.Slf4j;
 import org.springdoc.core.annotations.ParameterObject;
 import org.springframework.beans.BeanUtils;
@@ -44,9 +51,13 @@ public class LeituraDispositivoController {
     private DispositivoRepository dispositivoRepository;
 
     @Autowired
-    private ReservatorioDispositivoRepository reservatorioDispositivoRepository;
+    private LeituraDispositivoService leituraService;
+
+    @Autowired
+    private IndicePropriedade indicePropriedade;
+
     @Autowired
-    private ReservatorioRepository reservatorioRepository;
+    private LimitadorTaxa limitadorTaxa;
 
     public record LeituraDispositivoFilter(Integer idReservatorio) {}
 
@@ -59,44 +70,101 @@ public class LeituraDispositivoController {
                     @ApiResponse(responseCode = "403", description = "O usuário autenticado não tem permissão para acessar o reservatório informado.")
             }
     )
-    @Cacheable("leituraDispositivo")
+    @Cacheable(value = "leituraDispositivo", keyGenerator = "chaveUsuario", sync = true)
     public Page<LeituraDispositivo> index(
             @AuthenticationPrincipal Usuario usuario,
             @ParameterObject LeituraDispositivoFilter filters,
             @PageableDefault(size = 10, sort = "dataHora", direction = Sort.Direction.DESC) Pageable pageable
     ) {
         if (filters.idReservatorio() != null) {
-            boolean pertence = reservatorioRepository.existsByIdReservatorioAndUnidadeUsuario(
-                    filters.idReservatorio(), usuario
-            );
-
-            if (!pertence) {
+            if (!indicePropriedade.possuiReservatorio(usuario, filters.idReservatorio())) {
                 throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Você não tem acesso a esse reservatório");
             }
         }
-        Specification<LeituraDispositivo> spec = LeituraDispositivoSpecification.withFilters(filters, usuario);
+        return leituraService.listar(usuario, filters, pageable);
+    }
 
-        return leituraRepository.findAll(spec, pageable);
+    @GetMapping("/cursor")
+    @Operation(
+            summary = "Listar leituras por cursor",
+            description = "Retorna as leituras mais recentes primeiro, paginadas por cursor (keyset) e sem contagem total. Envie o proximoCursor da resposta no parâmetro after para obter a página seguinte; o tempo de resposta não depende da profundidade da página.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Leituras encontradas com sucesso"),
+                    @ApiResponse(responseCode = "400", description = "Cursor inválido"),
+                    @ApiResponse(responseCode = "403", description = "O usuário autenticado não tem permissão para acessar o reservatório informado.")
+            }
+    )
+    public LeituraCursorPageDTO indexCursor(
+            @AuthenticationPrincipal Usuario usuario,
+            @ParameterObject LeituraDispositivoFilter filters,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "10") @Min(1) @Max(100) int size
+    ) {
+        if (filters.idReservatorio() != null
+                && !indicePropriedade.possuiReservatorio(usuario, filters.idReservatorio())) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Você não tem acesso a esse reservatório");
+        }
+        CursorLeituraDTO cursor = after == null || after.isBlank() ? null : CursorLeituraDTO.decodificar(after);
+
+        Specification<LeituraDispositivo> spec = LeituraDispositivoSpecification.withFilters(filters, usuario)
+                .and(LeituraDispositivoSpecification.apos(cursor));
+
+        // Busca um item a mais só para saber se existe próxima página
+        List<LeituraDispositivo> leituras = leituraRepository.findBy(spec, q -> q
+                .sortBy(Sort.by(Sort.Direction.DESC, "dataHora", "id"))
+                .project("dispositivo")
+                .limit(size + 1)
+                .all());
+
+        String proximoCursor = null;
+        if (leituras.size() > size) {
+            leituras = leituras.subList(0, size);
+            LeituraDispositivo ultima = leituras.get(size - 1);
+            proximoCursor = new CursorLeituraDTO(ultima.getDataHora(), ultima.getId()).codificar();
+        }
+        return new LeituraCursorPageDTO(leituras, leituras.size(), proximoCursor);
     }
 
     @PostMapping
-    @ResponseStatus(HttpStatus.CREATED)
     @Operation(
             summary = "Cadastrar nova leitura",
             description = "Registra uma nova leitura (nível, turbidez e pH) para um dispositivo, validando se ele pertence ao usuário.",
             responses = {
                     @ApiResponse(responseCode = "201", description = "Leitura registrada com sucesso"),
+                    @ApiResponse(responseCode = "202", description = "Leitura aceita para gravação assíncrona (write-behind habilitado)"),
                     @ApiResponse(responseCode = "403", description = "Acesso negado ao dispositivo"),
-                    @ApiResponse(responseCode = "404", description = "Dispositivo não encontrado")
+                    @ApiResponse(responseCode = "404", description = "Dispositivo não encontrado"),
+                    @ApiResponse(responseCode = "429", description = "Fila de gravação cheia ou limite do dispositivo atingido; tente novamente após o Retry-After")
             }
     )
-    @CacheEvict(value = "leituraDispositivo", allEntries = true)
-    public LeituraDispositivo create(@RequestBody @Valid LeituraDispositivo leitura,
-                                     @AuthenticationPrincipal Usuario usuario) {
+    @CacheEvict(value = "leituraDispositivo", keyGenerator = "donoUsuario")
+    public ResponseEntity<LeituraDispositivo> create(@RequestBody @Valid LeituraDispositivo leitura,
+                                                     @AuthenticationPrincipal Usuario usuario) {
         log.info("Cadastrando leitura de dispositivo");
         Dispositivo dispositivo = getDispositivoDoUsuario(leitura.getDispositivo().getIdDispositivo(), usuario);
+        // Só depois da posse: quem não é dono não pode esgotar o balde do dispositivo de outro usuário
+        limitadorTaxa.consumirDispositivo(dispositivo.getIdDispositivo());
         leitura.setDispositivo(dispositivo);
-        return leituraRepository.save(leitura);
+
+        boolean agendada = leituraService.registrar(leitura);
+        return ResponseEntity.status(agendada ? HttpStatus.ACCEPTED : HttpStatus.CREATED).body(leitura);
+    }
+
+    @PostMapping("/lote")
+    @Operation(
+            summary = "Cadastrar leituras em lote",
+            description = "Registra até 1000 leituras de um ou mais dispositivos em uma única transação, validando a posse de cada dispositivo uma única vez. Retorna o resultado de cada item.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Lote processado; consulte o status de cada item"),
+                    @ApiResponse(responseCode = "400", description = "Lote vazio, maior que o permitido ou com mais leituras de um dispositivo do que o limite dele"),
+                    @ApiResponse(responseCode = "429", description = "Fila de gravação cheia ou limite do dispositivo atingido; tente novamente após o Retry-After")
+            }
+    )
+    @CacheEvict(value = "leituraDispositivo", keyGenerator = "donoUsuario")
+    public LeituraLoteResponseDTO createLote(@RequestBody @Valid LeituraLoteDTO lote,
+                                             @AuthenticationPrincipal Usuario usuario) {
+        log.info("Cadastrando lote de {} leituras", lote.leituras().size());
+        return leituraService.registrarLote(lote.leituras(), usuario);
     }
 
     @GetMapping("{id}")
@@ -125,11 +193,11 @@ public class LeituraDispositivoController {
                     @ApiResponse(responseCode = "404", description = "Leitura não encontrada")
             }
     )
-    @CacheEvict(value = "leituraDispositivo", allEntries = true)
+    @CacheEvict(value = "leituraDispositivo", keyGenerator = "donoUsuario")
     public ResponseEntity<Object> destroy(@PathVariable Integer id,
                                           @AuthenticationPrincipal Usuario usuario) {
         var leitura = getLeituraDoUsuario(id, usuario);
-        leituraRepository.delete(leitura);
+        leituraService.excluir(leitura);
         return ResponseEntity.noContent().build();
     }
 
@@ -143,23 +211,24 @@ public class LeituraDispositivoController {
                     @ApiResponse(responseCode = "404", description = "Leitura ou dispositivo não encontrado")
             }
     )
-    @CacheEvict(value = "leituraDispositivo", allEntries = true)
+    @CacheEvict(value = "leituraDispositivo", keyGenerator = "donoUsuario")
     public ResponseEntity<Object> update(@PathVariable Integer id,
                                          @RequestBody @Valid LeituraDispositivo leitura,
                                          @AuthenticationPrincipal Usuario usuario) {
         var leituraExistente = getLeituraDoUsuario(id, usuario);
+        Integer idDispositivoAnterior = leituraExistente.getDispositivo().getIdDispositivo();
         Dispositivo dispositivo = getDispositivoDoUsuario(leitura.getDispositivo().getIdDispositivo(), usuario);
         leitura.setDispositivo(dispositivo);
-        BeanUtils.copyProperties(leitura, leituraExistente, "id_leitura", "dataHora");
-        leituraRepository.save(leituraExistente);
-        return ResponseEntity.ok(leituraExistente);
+        BeanUtils.copyProperties(leitura, leituraExistente, "id", "dataHora", "idReservatorio", "idUsuario");
+        return ResponseEntity.ok(leituraService.atualizar(leituraExistente, idDispositivoAnterior));
     }
 
     private LeituraDispositivo getLeituraDoUsuario(Integer id, Usuario usuario) {
         var leitura = leituraRepository.findById(id)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Leitura não encontrada"));
 
-        if (!pertenceAoUsuario(leitura.getDispositivo(), usuario)) {
+        // Vale o dono carimbado na gravação, como nas listagens, e não o vínculo atual do dispositivo
+        if (!usuario.getIdUsuario().equals(leitura.getIdUsuario())) {
             throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Você não tem acesso a essa leitura");
         }
 
@@ -178,12 +247,6 @@ public class LeituraDispositivoController {
     }
 
     private boolean pertenceAoUsuario(Dispositivo dispositivo, Usuario usuario) {
-        return reservatorioDispositivoRepository.findByDispositivo(dispositivo).stream()
-                .anyMatch(reservatorioDispositivo ->
-                        reservatorioDispositivo.getReservatorio()
-                                .getUnidade()
-                                .getUsuario()
-                                .equals(usuario)
-                );
+        return indicePropriedade.possuiDispositivo(usuario, dispositivo.getIdDispositivo());
     }
 }
@@ -29,7 +29,7 @@ public class PaisController {
                     @ApiResponse(responseCode = "200", description = "Lista de países retornada com sucesso")
             }
     )
-    @Cacheable("paises")
+    @Cacheable(value = "paises", sync = true)
     public List<Pais> index() {
         return repository.findAll();
     }
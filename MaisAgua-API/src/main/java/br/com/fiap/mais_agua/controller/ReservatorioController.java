@@ -1,11 +1,14 @@
 package br.com.fiap.mais_agua.controller;
 
+import br.com.fiap.mais_agua.model.DTO.EstadoAtualReservatorioDTO;
 import br.com.fiap.mais_agua.model.DTO.ReservatorioReadDTO;
 import br.com.fiap.mais_agua.model.DTO.UnidadeReadDTO;
 import br.com.fiap.mais_agua.model.DTO.UsuarioResponseDTO;
 import br.com.fiap.mais_agua.model.Reservatorio;
 import br.com.fiap.mais_agua.model.Usuario;
 import br.com.fiap.mais_agua.repository.ReservatorioRepository;
+import br.com.fiap.mais_agua.service.EstadoAtualReservatorioService;
+import br.com.fiap.mais_agua.service.IndicePropriedade;
 import br.com.fiap.mais_agua.service.ReservatorioService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -16,6 +19,7 @@ import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
@@ -38,6 +42,12 @@ public class ReservatorioController {
     @Autowired
     private ReservatorioService service;
 
+    @Autowired
+    private EstadoAtualReservatorioService estadoAtualService;
+
+    @Autowired
+    private IndicePropriedade indicePropriedade;
+
     @GetMapping
     @Operation(
             summary = "Listar reservatórios",
@@ -47,7 +57,7 @@ public class ReservatorioController {
                     @ApiResponse(responseCode = "401", description = "Usuário não autenticado")
             }
     )
-    @Cacheable("reservatorios")
+    @Cacheable(value = "reservatorios", keyGenerator = "chaveUsuario", sync = true)
     public List<ReservatorioReadDTO> index(@AuthenticationPrincipal Usuario usuario) {
         List<Reservatorio> lista = reservatorioRepository.findByUnidadeUsuario(usuario);
         List<ReservatorioReadDTO> dtoList = new ArrayList<>();
@@ -87,7 +97,11 @@ public class ReservatorioController {
                     @ApiResponse(responseCode = "404", description = "Unidade não encontrada")
             }
     )
-    @CacheEvict(value = "reservatorios", allEntries = true)
+    @Caching(evict = {
+            @CacheEvict(value = "reservatorios", keyGenerator = "donoUsuario"),
+            @CacheEvict(value = "dashboard", keyGenerator = "donoUsuario"),
+            @CacheEvict(value = "usuarios", keyGenerator = "donoUsuario")
+    })
     public ReservatorioReadDTO create(@RequestBody @Valid Reservatorio reservatorio,
                                       @AuthenticationPrincipal Usuario usuario) {
         var created = service.criarReservatorio(reservatorio, usuario);
@@ -148,6 +162,29 @@ public class ReservatorioController {
         return ResponseEntity.ok(dto);
     }
 
+    @GetMapping("{id}/estado-atual")
+    @Operation(
+            summary = "Estado atual do reservatório",
+            description = "Retorna o último nível, status, pH, turbidez e data/hora conhecidos do reservatório, lidos da tabela de estado atual (com cache em memória), sem percorrer o histórico.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Estado atual retornado com sucesso"),
+                    @ApiResponse(responseCode = "403", description = "Acesso negado"),
+                    @ApiResponse(responseCode = "404", description = "Reservatório sem histórico ou leitura registrados")
+            }
+    )
+    public ResponseEntity<EstadoAtualReservatorioDTO> getEstadoAtual(@PathVariable Integer id,
+                                                                     @AuthenticationPrincipal Usuario usuario) {
+        // Posse antes da busca: reservatórios inexistentes e de outros usuários recebem o mesmo 403
+        if (!indicePropriedade.possuiReservatorio(usuario, id)) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Você não tem permissão para acessar este reservatório");
+        }
+        EstadoAtualReservatorioDTO estado = estadoAtualService.buscar(id);
+        if (estado == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Estado atual do reservatório não encontrado");
+        }
+        return ResponseEntity.ok(estado);
+    }
+
     @DeleteMapping("{id}")
     @Operation(
             summary = "Excluir reservatório",
@@ -159,7 +196,11 @@ public class ReservatorioController {
                     @ApiResponse(responseCode = "409", description = "Não é possível excluir o reservatório, porque está vinculado à algum histórico.")
             }
     )
-    @CacheEvict(value = "reservatorios", allEntries = true)
+    @Caching(evict = {
+            @CacheEvict(value = "reservatorios", keyGenerator = "donoUsuario"),
+            @CacheEvict(value = "dashboard", keyGenerator = "donoUsuario"),
+            @CacheEvict(value = "usuarios", keyGenerator = "donoUsuario")
+    })
     public ResponseEntity<Object> destroy(@PathVariable Integer id, @AuthenticationPrincipal Usuario usuario) {
         log.info("Excluindo reservatório " + id);
         service.deletarReservatorio(id, usuario);
@@ -178,7 +219,11 @@ public class ReservatorioController {
                     @ApiResponse(responseCode = "404", description = "Reservatório não encontrado")
             }
     )
-    @CacheEvict(value = "reservatorios", allEntries = true)
+    @Caching(evict = {
+            @CacheEvict(value = "reservatorios", keyGenerator = "donoUsuario"),
+            @CacheEvict(value = "dashboard", keyGenerator = "donoUsuario"),
+            @CacheEvict(value = "usuarios", keyGenerator = "donoUsuario")
+    })
     public ResponseEntity<ReservatorioReadDTO> update(@PathVariable Integer id,
                                                       @RequestBody @Valid Reservatorio reservatorio,
                                                       @AuthenticationPrincipal Usuario usuario) {
@@ -214,7 +259,7 @@ public class ReservatorioController {
         var reservatorio = reservatorioRepository.findById(id)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Reservatório não encontrado"));
 
-        if (!reservatorio.getUnidade().getUsuario().equals(usuario)) {
+        if (!indicePropriedade.possuiReservatorio(usuario, reservatorio.getIdReservatorio())) {
             throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Você não tem permissão para acessar este reservatório");
         }
 
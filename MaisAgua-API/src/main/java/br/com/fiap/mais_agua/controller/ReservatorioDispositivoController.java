@@ -11,6 +11,7 @@ import br.com.fiap.mais_agua.model.DTO.UsuarioResponseDTO;
 import br.com.fiap.mais_agua.repository.DispositivoRepository;
 import br.com.fiap.mais_agua.repository.ReservatorioRepository;
 import br.com.fiap.mais_agua.repository.ReservatorioDispositivoRepository;
+import br.com.fiap.mais_agua.service.IndicePropriedade;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -43,6 +44,9 @@ public class ReservatorioDispositivoController {
     @Autowired
     private DispositivoRepository dispositivoRepository;
 
+    @Autowired
+    private IndicePropriedade indicePropriedade;
+
     @GetMapping
     @Operation(
             summary = "Listar vínculos entre reservatórios e dispositivos",
@@ -51,10 +55,9 @@ public class ReservatorioDispositivoController {
                     @ApiResponse(responseCode = "200", description = "Lista retornada com sucesso")
             }
     )
-    @Cacheable("reservatorioDispositivo")
+    @Cacheable(value = "reservatorioDispositivo", keyGenerator = "chaveUsuario", sync = true)
     public List<ReservatorioDispositivoDTO> index(@AuthenticationPrincipal Usuario usuario) {
-        return reservatorioSensorRepository.findAll().stream()
-                .filter(rs -> rs.getReservatorio().getUnidade().getUsuario().equals(usuario))
+        return reservatorioSensorRepository.findByReservatorio_Unidade_Usuario_IdUsuario(usuario.getIdUsuario()).stream()
                 .map(this::toDTO)
                 .toList();
     }
@@ -66,22 +69,23 @@ public class ReservatorioDispositivoController {
             description = "Cria um novo vínculo manualmente entre um reservatório e um dispositivo existente.",
             responses = {
                     @ApiResponse(responseCode = "201", description = "Vínculo criado com sucesso"),
-                    @ApiResponse(responseCode = "403", description = "Usuário não autorizado"),
+                    @ApiResponse(responseCode = "403", description = "Reservatório ou dispositivo de outro usuário"),
                     @ApiResponse(responseCode = "404", description = "Reservatório ou dispositivo não encontrado")
             }
     )
-    @CacheEvict(value = "reservatorioDispositivo", allEntries = true)
+    @CacheEvict(value = "reservatorioDispositivo", keyGenerator = "donoUsuario")
     public ReservatorioDispositivoDTO create(@RequestBody @Valid ReservatorioDispositivo reservatorioSensor,
                                              @AuthenticationPrincipal Usuario usuario) {
         log.info("Cadastrando ReservatorioSensor");
 
         Reservatorio reservatorio = getReservatorio(reservatorioSensor.getReservatorio().getIdReservatorio(), usuario);
-        Dispositivo dispositivo = getDispositivo(reservatorioSensor.getDispositivo().getIdDispositivo());
+        Dispositivo dispositivo = getDispositivoVinculavel(reservatorioSensor.getDispositivo().getIdDispositivo(), usuario);
 
         reservatorioSensor.setReservatorio(reservatorio);
         reservatorioSensor.setDispositivo(dispositivo);
 
         var saved = reservatorioSensorRepository.save(reservatorioSensor);
+        indicePropriedade.adicionarDispositivo(usuario.getIdUsuario(), dispositivo.getIdDispositivo());
         return toDTO(saved);
     }
 
@@ -111,11 +115,12 @@ public class ReservatorioDispositivoController {
                     @ApiResponse(responseCode = "404", description = "Vínculo não encontrado")
             }
     )
-    @CacheEvict(value = "reservatorioDispositivo", allEntries = true)
+    @CacheEvict(value = "reservatorioDispositivo", keyGenerator = "donoUsuario")
     public ResponseEntity<Object> destroy(@PathVariable Integer id,
                                           @AuthenticationPrincipal Usuario usuario) {
         var reservatorioSensor = getReservatorioSensor(id, usuario);
         reservatorioSensorRepository.delete(reservatorioSensor);
+        indicePropriedade.invalidar(usuario.getIdUsuario());
         return ResponseEntity.noContent().build();
     }
 
@@ -130,20 +135,25 @@ public class ReservatorioDispositivoController {
                     @ApiResponse(responseCode = "404", description = "Reservatório ou dispositivo não encontrado")
             }
     )
-    @CacheEvict(value = "reservatorioDispositivo", allEntries = true)
+    @CacheEvict(value = "reservatorioDispositivo", keyGenerator = "donoUsuario")
     public ResponseEntity<ReservatorioDispositivoDTO> update(@PathVariable Integer id,
                                                              @RequestBody @Valid ReservatorioDispositivo reservatorioSensor,
                                                              @AuthenticationPrincipal Usuario usuario) {
         var oldRS = getReservatorioSensor(id, usuario);
+        Integer idDispositivoAnterior = oldRS.getDispositivo().getIdDispositivo();
 
         Reservatorio reservatorio = getReservatorio(reservatorioSensor.getReservatorio().getIdReservatorio(), usuario);
-        Dispositivo dispositivo = getDispositivo(reservatorioSensor.getDispositivo().getIdDispositivo());
+        Integer idDispositivo = reservatorioSensor.getDispositivo().getIdDispositivo();
+        Dispositivo dispositivo = idDispositivo.equals(idDispositivoAnterior)
+                ? getDispositivo(idDispositivo)
+                : getDispositivoVinculavel(idDispositivo, usuario);
 
         reservatorioSensor.setReservatorio(reservatorio);
         reservatorioSensor.setDispositivo(dispositivo);
 
         BeanUtils.copyProperties(reservatorioSensor, oldRS, "idReservatorioDispositivo");
         reservatorioSensorRepository.save(oldRS);
+        indicePropriedade.invalidar(usuario.getIdUsuario());
 
         return ResponseEntity.ok(toDTO(oldRS));
     }
@@ -180,7 +190,7 @@ public class ReservatorioDispositivoController {
         var rs = reservatorioSensorRepository.findById(id)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Reservatorio-Sensor não encontrado"));
 
-        if (!rs.getReservatorio().getUnidade().getUsuario().equals(usuario)) {
+        if (!indicePropriedade.possuiReservatorio(usuario, rs.getReservatorio().getIdReservatorio())) {
             throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Você não tem permissão para acessar este sensor");
         }
         return rs;
@@ -191,7 +201,7 @@ public class ReservatorioDispositivoController {
         var r = reservatorioRepository.findById(id)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Reservatorio não encontrado"));
 
-        if (!r.getUnidade().getUsuario().equals(usuario)) {
+        if (!indicePropriedade.possuiReservatorio(usuario, r.getIdReservatorio())) {
             throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Você não tem permissão para alterar este reservatório");
         }
         return r;
@@ -202,4 +212,16 @@ public class ReservatorioDispositivoController {
         return dispositivoRepository.findById(id)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Dispositivo não encontrado"));
     }
+
+
+    // Só dispositivos livres ou já vinculados a um reservatório do próprio usuário podem ser vinculados
+    private Dispositivo getDispositivoVinculavel(Integer id, Usuario usuario) {
+        Dispositivo dispositivo = getDispositivo(id);
+
+        if (reservatorioSensorRepository.existsByDispositivoIdDispositivo(id)
+                && !indicePropriedade.possuiDispositivo(usuario, id)) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Você não tem permissão para vincular este dispositivo");
+        }
+        return dispositivo;
+    }
 }
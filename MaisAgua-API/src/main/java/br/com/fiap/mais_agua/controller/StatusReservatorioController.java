@@ -34,7 +34,7 @@ public class StatusReservatorioController {
                     @ApiResponse(responseCode = "200", description = "Status retornados com sucesso")
             }
     )
-    @Cacheable("statusReservatorio")
+    @Cacheable(value = "statusReservatorio", sync = true)
     public List<StatusReservatorio> index() {
         return repository.findAll();
     }
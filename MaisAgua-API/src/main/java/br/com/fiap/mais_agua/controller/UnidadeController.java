@@ -6,6 +6,7 @@ import br.com.fiap.mais_agua.model.DTO.UsuarioResponseDTO;
 import br.com.fiap.mais_agua.model.Unidade;
 import br.com.fiap.mais_agua.model.Usuario;
 import br.com.fiap.mais_agua.repository.UnidadeRepository;
+import br.com.fiap.mais_agua.service.IndicePropriedade;
 import br.com.fiap.mais_agua.service.UnidadeService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -15,6 +16,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Caching;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -35,6 +37,9 @@ public class UnidadeController {
     @Autowired
     private UnidadeService unidadeService;
 
+    @Autowired
+    private IndicePropriedade indicePropriedade;
+
     @GetMapping
     @Operation(
             summary = "Listar unidades",
@@ -44,7 +49,7 @@ public class UnidadeController {
                     @ApiResponse(responseCode = "401", description = "Usuário não autenticado")
             }
     )
-    @Cacheable("unidades")
+    @Cacheable(value = "unidades", keyGenerator = "chaveUsuario", sync = true)
     public List<UnidadeReadDTO> index(@AuthenticationPrincipal Usuario usuario) {
         return unidadeRepository.findByUsuario(usuario)
                 .stream()
@@ -76,13 +81,14 @@ public class UnidadeController {
                     @ApiResponse(responseCode = "400", description = "Dados inválidos")
             }
     )
-    @CacheEvict(value = "unidades", allEntries = true)
+    @CacheEvict(value = "unidades", keyGenerator = "donoUsuario")
     public UnidadeResponseDTO create(@RequestBody @Valid Unidade unidade, @AuthenticationPrincipal Usuario usuario) {
         log.info("Cadastrando unidade " + unidade.getNome());
 
         unidade.setUsuario(usuario);
 
         Unidade unidadeSalva = unidadeRepository.save(unidade);
+        indicePropriedade.adicionarUnidade(usuario.getIdUsuario(), unidadeSalva.getIdUnidade());
 
         UnidadeResponseDTO responseDTO = new UnidadeResponseDTO(
                 unidadeSalva.getNome(),
@@ -135,7 +141,10 @@ public class UnidadeController {
                     @ApiResponse(responseCode = "409", description = "Não é possível excluir a unidade, porque um reservatório vinculado possui histórico.")
             }
     )
-    @CacheEvict(value = "unidades", allEntries = true)
+    @Caching(evict = {
+            @CacheEvict(value = "unidades", keyGenerator = "donoUsuario"),
+            @CacheEvict(value = "dashboard", keyGenerator = "donoUsuario")
+    })
     public ResponseEntity<Void> destroy(
             @PathVariable Integer id,
             @AuthenticationPrincipal Usuario usuario
@@ -157,7 +166,10 @@ public class UnidadeController {
                     @ApiResponse(responseCode = "404", description = "Unidade não encontrada")
             }
     )
-    @CacheEvict(value = "unidades", allEntries = true)
+    @Caching(evict = {
+            @CacheEvict(value = "unidades", keyGenerator = "donoUsuario"),
+            @CacheEvict(value = "dashboard", keyGenerator = "donoUsuario")
+    })
     public ResponseEntity<UnidadeReadDTO> update(@PathVariable Integer id, @RequestBody @Valid Unidade unidade, @AuthenticationPrincipal Usuario usuario
     ) {
         log.info("Atualizando unidade " + id + " com " + unidade);
@@ -191,7 +203,7 @@ public class UnidadeController {
                         () -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Unidade não encontrada")
                 );
 
-        if(!unidadeFind.getUsuario().equals(usuario)){
+        if(!indicePropriedade.possuiUnidade(usuario, unidadeFind.getIdUnidade())){
             throw new ResponseStatusException((HttpStatus.FORBIDDEN));
         }
         return unidadeFind;
@@ -8,31 +8,29 @@ import br.com.fiap.mais_agua.model.Token;
 import br.com.fiap.mais_agua.model.Usuario;
 import br.com.fiap.mais_agua.repository.ReservatorioRepository;
 import br.com.fiap.mais_agua.repository.UsuarioRepository;
+import br.com.fiap.mais_agua.service.LoginService;
 import br.com.fiap.mais_agua.service.PerfilService;
-import br.com.fiap.mais_agua.service.TokenService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.authentication.AuthenticationManager;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.util.concurrent.CompletableFuture;
+
 @Tag(name = "Usuário")
 @RestController
 public class UsuarioController {
     @Autowired
-    private TokenService tokenService;
-    @Autowired
-    private AuthenticationManager authenticationManager;
+    private LoginService loginService;
 
     @Autowired
     private UsuarioRepository usuarioRepository;
@@ -50,20 +48,12 @@ public class UsuarioController {
             responses = {
                     @ApiResponse(responseCode = "200", description = "Login realizado com sucesso"),
                     @ApiResponse(responseCode = "401", description = "Credenciais inválidas"),
+                    @ApiResponse(responseCode = "429", description = "Muitos logins em andamento ou muitas tentativas"),
             }
     )
-    @CacheEvict(value = "usuarios", allEntries = true)
-    public ResponseEntity<Token> login(@RequestBody Credentials credentials) {
-        try {
-            var auth = new UsernamePasswordAuthenticationToken(credentials.email(), credentials.senha());
-            var user = (Usuario) authenticationManager.authenticate(auth).getPrincipal();
-
-            Token token = tokenService.createToken(user);
-
-            return ResponseEntity.ok(token);
-        } catch (Exception e) {
-            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "E-mail ou senha incorretos!");
-        }
+    public CompletableFuture<ResponseEntity<Token>> login(@RequestBody Credentials credentials, HttpServletRequest request) {
+        // IP do cliente já resolvido pelo Tomcat a partir do X-Forwarded-For do balanceador
+        return loginService.login(credentials, request.getRemoteAddr()).thenApply(ResponseEntity::ok);
     }
 
     @PostMapping("/cadastro")
@@ -75,7 +65,6 @@ public class UsuarioController {
                     @ApiResponse(responseCode = "400", description = "E-mail já cadastrado")
             }
     )
-    @CacheEvict(value = "usuarios", allEntries = true)
     public ResponseEntity<UsuarioResponseDTO> register(@RequestBody @Valid CadastroDTO dto) {
         if (usuarioRepository.findByEmail(dto.email()).isPresent()) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "E-mail já cadastrado");
@@ -103,7 +92,7 @@ public class UsuarioController {
                     @ApiResponse(responseCode = "404", description = "Dados não encontrados")
             }
     )
-    @Cacheable("usuarios")
+    @Cacheable(value = "usuarios", keyGenerator = "chaveUsuario", sync = true)
     public ResponseEntity<PerfilDTO> readPerfil(@PathVariable Integer idReservatorio,
                                                 @AuthenticationPrincipal Usuario usuario) {
         PerfilDTO perfilDTO = perfilService.getPerfil(idReservatorio, usuario);
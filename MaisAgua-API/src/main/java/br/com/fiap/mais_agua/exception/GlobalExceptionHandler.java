@@ -23,7 +23,7 @@ public class GlobalExceptionHandler {
                 "message", ex.getReason()
         );
 
-        return ResponseEntity.status(ex.getStatusCode()).body(body);
+        return ResponseEntity.status(ex.getStatusCode()).headers(ex.getHeaders()).body(body);
     }
 
     @ExceptionHandler(Exception.class)
@@ -0,0 +1,25 @@
+package br.com.fiap.mais_agua.exception;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * 429 com o header Retry-After, usado quando a API recusa trabalho para se proteger de sobrecarga.
+ */
+public class TooManyRequestsException extends ResponseStatusException {
+
+    private final long retryAfterSegundos;
+
+    public TooManyRequestsException(String reason, long retryAfterSegundos) {
+        super(HttpStatus.TOO_MANY_REQUESTS, reason);
+        this.retryAfterSegundos = Math.max(1, retryAfterSegundos);
+    }
+
+    @Override
+    public HttpHeaders getHeaders() {
+        var headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSegundos));
+        return headers;
+    }
+}
@@ -0,0 +1,9 @@
+package br.com.fiap.mais_agua.model.DTO;
+
+import java.time.LocalDateTime;
+
+public record AgregacaoHistoricoDTO(
+        LocalDateTime inicio,
+        long quantidade,
+        EstatisticaDTO nivelLitros
+) {}
@@ -0,0 +1,11 @@
+package br.com.fiap.mais_agua.model.DTO;
+
+import java.time.LocalDateTime;
+
+public record AgregacaoLeituraDTO(
+        LocalDateTime inicio,
+        long quantidade,
+        EstatisticaDTO nivelPct,
+        EstatisticaDTO ph,
+        EstatisticaDTO turbidezNtu
+) {}
@@ -0,0 +1,7 @@
+package br.com.fiap.mais_agua.model.DTO;
+
+public record CapacidadeReservatorioDTO(
+        Integer idReservatorio,
+        Integer capacidadeTotalLitros,
+        Integer idUsuario
+) {}
@@ -0,0 +1,19 @@
+package br.com.fiap.mais_agua.model.DTO;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+public record DashboardReservatorioDTO(
+        Integer idReservatorio,
+        String nomeReservatorio,
+        Integer idUnidade,
+        String nomeUnidade,
+        Integer capacidadeTotalLitros,
+        Integer nivelLitros,
+        Integer nivelPct,
+        BigDecimal ph,
+        Integer turbidezNtu,
+        String status,
+        LocalDateTime dataHoraHistorico,
+        LocalDateTime dataHoraLeitura
+) {}
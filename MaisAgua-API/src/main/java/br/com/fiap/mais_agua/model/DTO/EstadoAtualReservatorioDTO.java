@@ -0,0 +1,17 @@
+package br.com.fiap.mais_agua.model.DTO;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+public record EstadoAtualReservatorioDTO(
+        Integer idReservatorio,
+        Integer idUsuario,
+        Integer nivelLitros,
+        String status,
+        LocalDateTime dataHoraHistorico,
+        Integer idDispositivo,
+        Integer nivelPct,
+        BigDecimal ph,
+        Integer turbidezNtu,
+        LocalDateTime dataHoraLeitura
+) {}
@@ -0,0 +1,10 @@
+package br.com.fiap.mais_agua.model.DTO;
+
+import java.math.BigDecimal;
+
+public record EstatisticaDTO(
+        BigDecimal minimo,
+        BigDecimal maximo,
+        BigDecimal media,
+        BigDecimal ultimo
+) {}
@@ -0,0 +1,11 @@
+package br.com.fiap.mais_agua.model.DTO;
+
+import java.time.LocalDateTime;
+
+public record HistoricoEventoDTO(
+        Integer id,
+        Integer idReservatorio,
+        Integer nivelLitros,
+        Integer idStatusReservatorio,
+        LocalDateTime dataHora
+) {}
@@ -0,0 +1,11 @@
+package br.com.fiap.mais_agua.model.DTO;
+
+import br.com.fiap.mais_agua.model.LeituraDispositivo;
+
+import java.util.List;
+
+public record LeituraCursorPageDTO(
+        List<LeituraDispositivo> conteudo,
+        int tamanho,
+        String proximoCursor
+) {}
@@ -0,0 +1,14 @@
+package br.com.fiap.mais_agua.model.DTO;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+public record LeituraEventoDTO(
+        Integer id,
+        Integer idDispositivo,
+        Integer idReservatorio,
+        Integer nivelPct,
+        BigDecimal phInt,
+        Integer turbidezNtu,
+        LocalDateTime dataHora
+) {}
@@ -0,0 +1,13 @@
+package br.com.fiap.mais_agua.model.DTO;
+
+import br.com.fiap.mais_agua.model.LeituraDispositivo;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+public record LeituraLoteDTO(
+        @NotEmpty(message = "Informe ao menos uma leitura")
+        @Size(max = 1000, message = "O lote aceita no máximo 1000 leituras")
+        List<LeituraDispositivo> leituras
+) {}
@@ -0,0 +1,17 @@
+package br.com.fiap.mais_agua.model.DTO;
+
+import java.util.List;
+
+public record LeituraLoteResponseDTO(
+        int total,
+        int aceitas,
+        int rejeitadas,
+        List<Item> itens
+) {
+    public record Item(
+            int indice,
+            Integer idDispositivo,
+            int status,
+            String mensagem
+    ) {}
+}
@@ -0,0 +1,9 @@
+package br.com.fiap.mais_agua.model.DTO;
+
+public record NivelDispositivoDTO(
+        Integer idDispositivo,
+        Integer idReservatorio,
+        Integer idUsuario,
+        Integer capacidadeTotalLitros,
+        Integer nivelLitros
+) {}
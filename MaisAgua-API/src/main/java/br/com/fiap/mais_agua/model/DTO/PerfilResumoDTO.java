@@ -0,0 +1,18 @@
+package br.com.fiap.mais_agua.model.DTO;
+
+import java.math.BigDecimal;
+
+/**
+ * Linha única com tudo o que o perfil precisa, lida por {@code ReservatorioRepository.findPerfil}.
+ * Campos das partes opcionais (vínculo, endereço, histórico e leitura) vêm nulos quando não existem.
+ */
+public interface PerfilResumoDTO {
+    Integer getIdUsuario();
+    String getNome();
+    Integer getIdDispositivo();
+    String getLogradouro();
+    Integer getNumero();
+    Integer getNivelLitros();
+    BigDecimal getPh();
+    Integer getNivelPct();
+}
@@ -14,7 +14,8 @@ import java.time.LocalDateTime;
 public class Dispositivo {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "seq_dispositivo")
+    @SequenceGenerator(name = "seq_dispositivo", sequenceName = "seq_dispositivo", allocationSize = 50)
     @Column(name = "id_dispositivo", nullable = false, updatable = false)
     private Integer idDispositivo;
 
@@ -0,0 +1,51 @@
+package br.com.fiap.mais_agua.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import org.hibernate.annotations.Immutable;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Último estado conhecido de cada reservatório (último histórico e última leitura dos seus dispositivos).
+ * Mantido por MERGE a cada gravação de histórico ou leitura; nunca é alterado pelo JPA.
+ */
+@Entity
+@Immutable
+@Table(name = "tbl_estado_atual_reservatorio")
+@Data
+public class EstadoAtualReservatorio {
+
+    @Id
+    @Column(name = "id_reservatorio", nullable = false, updatable = false)
+    private Integer idReservatorio;
+
+    @Column(name = "id_usuario")
+    private Integer idUsuario;
+
+    @Column(name = "nivel_litros")
+    private Integer nivelLitros;
+
+    @ManyToOne
+    @JoinColumn(name = "id_status_reservatorio")
+    private StatusReservatorio status;
+
+    @Column(name = "data_hora_historico")
+    private LocalDateTime dataHoraHistorico;
+
+    @Column(name = "id_dispositivo")
+    private Integer idDispositivo;
+
+    @Column(name = "nivel_pct")
+    private Integer nivelPct;
+
+    @Column(name = "ph_int", precision = 4, scale = 2)
+    private BigDecimal phInt;
+
+    @Column(name = "turbidez_ntu")
+    private Integer turbidezNtu;
+
+    @Column(name = "data_hora_leitura")
+    private LocalDateTime dataHoraLeitura;
+}
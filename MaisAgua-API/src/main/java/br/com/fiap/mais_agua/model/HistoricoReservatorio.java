@@ -1,5 +1,6 @@
 package br.com.fiap.mais_agua.model;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotNull;
 import lombok.Data;
@@ -12,7 +13,8 @@ import java.time.LocalDateTime;
 public class HistoricoReservatorio {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "seq_historico_reservatorio")
+    @SequenceGenerator(name = "seq_historico_reservatorio", sequenceName = "seq_historico_reservatorio", allocationSize = 50)
     @Column(name = "id_historico", nullable = false, updatable = false)
     private Integer id;
 
@@ -32,4 +34,9 @@ public class HistoricoReservatorio {
     @ManyToOne
     @JoinColumn(name = "id_status_reservatorio")
     private StatusReservatorio status;
+
+    // Dono do reservatório (desnormalizado para as consultas por usuário)
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    @Column(name = "id_usuario")
+    private Integer idUsuario;
 }
@@ -0,0 +1,77 @@
+package br.com.fiap.mais_agua.model;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.Arrays;
+
+/**
+ * Tamanho do bucket das consultas de agregação e a expressão T-SQL que trunca a data/hora no início do bucket.
+ * As semanas começam na segunda-feira. Os intervalos a partir de uma hora são lidos das tabelas de rollup
+ * (granularidade H ou D); o de 5 minutos é calculado sobre as leituras.
+ */
+public enum IntervaloAgregacao {
+
+    CINCO_MINUTOS("5m", Duration.ofMinutes(5), null,
+            "DATEADD(MINUTE, (DATEDIFF(MINUTE, CAST('2000-01-01' AS DATETIME2), %1$s) / 5) * 5, CAST('2000-01-01' AS DATETIME2))"),
+    HORA("hora", Duration.ofHours(1), "H",
+            "DATEADD(HOUR, DATEDIFF(HOUR, CAST('2000-01-01' AS DATETIME2), %1$s), CAST('2000-01-01' AS DATETIME2))"),
+    DIA("dia", Duration.ofDays(1), "D",
+            "DATEADD(DAY, DATEDIFF(DAY, CAST('2000-01-01' AS DATETIME2), %1$s), CAST('2000-01-01' AS DATETIME2))"),
+    SEMANA("semana", Duration.ofDays(7), "D",
+            "DATEADD(DAY, (DATEDIFF(DAY, CAST('2000-01-03' AS DATETIME2), %1$s) / 7) * 7, CAST('2000-01-03' AS DATETIME2))");
+
+    private final String codigo;
+    private final Duration duracao;
+    private final String granularidadeRollup;
+    private final String expressao;
+
+    IntervaloAgregacao(String codigo, Duration duracao, String granularidadeRollup, String expressao) {
+        this.codigo = codigo;
+        this.duracao = duracao;
+        this.granularidadeRollup = granularidadeRollup;
+        this.expressao = expressao;
+    }
+
+    public String getCodigo() {
+        return codigo;
+    }
+
+    public Duration getDuracao() {
+        return duracao;
+    }
+
+    /**
+     * Granularidade da tabela de rollup usada por este intervalo, ou null quando ele é calculado sobre as leituras.
+     */
+    public String getGranularidadeRollup() {
+        return granularidadeRollup;
+    }
+
+    public String expressaoBucket(String coluna) {
+        return expressao.formatted(coluna);
+    }
+
+    // Mesmo truncamento da expressão T-SQL, feito em Java
+    public LocalDateTime inicioBucket(LocalDateTime dataHora) {
+        return switch (this) {
+            case CINCO_MINUTOS -> dataHora.truncatedTo(ChronoUnit.MINUTES).withMinute(dataHora.getMinute() / 5 * 5);
+            case HORA -> dataHora.truncatedTo(ChronoUnit.HOURS);
+            case DIA -> dataHora.truncatedTo(ChronoUnit.DAYS);
+            case SEMANA -> dataHora.toLocalDate().with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)).atStartOfDay();
+        };
+    }
+
+    public static IntervaloAgregacao de(String codigo) {
+        return Arrays.stream(values())
+                .filter(intervalo -> intervalo.codigo.equalsIgnoreCase(codigo))
+                .findFirst()
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "Intervalo inválido: " + codigo + ". Use 5m, hora, dia ou semana"));
+    }
+}
@@ -1,6 +1,7 @@
 package br.com.fiap.mais_agua.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.*;
 import lombok.Data;
@@ -14,7 +15,8 @@ import java.time.LocalDateTime;
 public class LeituraDispositivo {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "seq_leitura_dispositivo")
+    @SequenceGenerator(name = "seq_leitura_dispositivo", sequenceName = "seq_leitura_dispositivo", allocationSize = 50)
     @Column(name = "id_leitura", nullable = false, updatable = false)
     private Integer id;
 
@@ -41,4 +43,13 @@ public class LeituraDispositivo {
     @JoinColumn(name = "id_dispositivo")
     @JsonIgnoreProperties("leituraDispositivo")
     private Dispositivo dispositivo;
+
+    // Reservatório e dono do dispositivo no momento da gravação (desnormalizados para as consultas por usuário)
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    @Column(name = "id_reservatorio")
+    private Integer idReservatorio;
+
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    @Column(name = "id_usuario")
+    private Integer idUsuario;
 }
@@ -15,7 +15,8 @@ import java.time.LocalDateTime;
 public class ReservatorioDispositivo {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "seq_reservatorio_dispositivo")
+    @SequenceGenerator(name = "seq_reservatorio_dispositivo", sequenceName = "seq_reservatorio_dispositivo", allocationSize = 50)
     @Column(name = "id_reservatorio_dispositivo", nullable = false, updatable = false)
     private Integer idReservatorioDispositivo;
 
@@ -12,6 +12,7 @@ import java.util.Collection;
 
 @Entity
 @Table(name = "tbl_usuario")
+@EntityListeners(UsuarioListener.class)
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
@@ -0,0 +1,9 @@
+package br.com.fiap.mais_agua.model;
+
+/**
+ * Evento publicado a cada alteração ou exclusão de {@link Usuario} gravada pelo JPA, dentro da transação
+ * que a fez. Quem guarda dados derivados do usuário (credenciais verificadas) os descarta ao recebê-lo.
+ *
+ * @param idUsuario usuário alterado ou excluído
+ */
+public record UsuarioAlterado(Integer idUsuario) {}
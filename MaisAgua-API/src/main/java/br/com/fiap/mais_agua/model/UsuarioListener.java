@@ -0,0 +1,23 @@
+package br.com.fiap.mais_agua.model;
+
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+
+/**
+ * Publica {@link UsuarioAlterado} a cada alteração gravada pelo JPA (troca de senha ou de e-mail, exclusão).
+ * Instanciado pelo Hibernate através do Spring; o evento mantém a entidade sem depender dos serviços que
+ * reagem a ele.
+ */
+public class UsuarioListener {
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @PostUpdate
+    @PostRemove
+    void aoAlterar(Usuario usuario) {
+        eventPublisher.publishEvent(new UsuarioAlterado(usuario.getIdUsuario()));
+    }
+}
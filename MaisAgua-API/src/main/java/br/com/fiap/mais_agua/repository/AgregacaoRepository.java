@@ -0,0 +1,136 @@
+package br.com.fiap.mais_agua.repository;
+
+import br.com.fiap.mais_agua.model.DTO.AgregacaoHistoricoDTO;
+import br.com.fiap.mais_agua.model.DTO.AgregacaoLeituraDTO;
+import br.com.fiap.mais_agua.model.DTO.EstatisticaDTO;
+import br.com.fiap.mais_agua.model.IntervaloAgregacao;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Agregações por intervalo de tempo calculadas no banco: cada bucket volta como uma linha com
+ * mínimo, máximo, média e último valor, então o tamanho da resposta depende só do número de buckets.
+ * As consultas usam os índices (id_reservatorio, data_hora, ...) das leituras e dos históricos. As leituras
+ * agregadas por hora, dia ou semana vêm dos rollups (tbl_rollup_leitura), sem ler a tabela de leituras.
+ */
+@Repository
+public class AgregacaoRepository {
+
+    private static final String LEITURAS = """
+            SELECT bucket, COUNT(*) AS quantidade,
+                   MIN(nivel_pct) AS nivel_min, MAX(nivel_pct) AS nivel_max,
+                   AVG(CAST(nivel_pct AS DECIMAL(10, 2))) AS nivel_media, MAX(CASE WHEN ordem = 1 THEN nivel_pct END) AS nivel_ultimo,
+                   MIN(ph_int) AS ph_min, MAX(ph_int) AS ph_max,
+                   AVG(ph_int) AS ph_media, MAX(CASE WHEN ordem = 1 THEN ph_int END) AS ph_ultimo,
+                   MIN(turbidez_ntu) AS turbidez_min, MAX(turbidez_ntu) AS turbidez_max,
+                   AVG(CAST(turbidez_ntu AS DECIMAL(10, 2))) AS turbidez_media, MAX(CASE WHEN ordem = 1 THEN turbidez_ntu END) AS turbidez_ultimo
+            FROM (
+                SELECT b.bucket, l.nivel_pct, l.ph_int, l.turbidez_ntu,
+                       ROW_NUMBER() OVER (PARTITION BY b.bucket ORDER BY l.data_hora DESC, l.id_leitura DESC) AS ordem
+                FROM tbl_leitura_dispositivo l
+                CROSS APPLY (SELECT %s AS bucket) b
+                WHERE l.id_reservatorio = ? AND l.data_hora >= ? AND l.data_hora < ?
+            ) t
+            GROUP BY bucket
+            ORDER BY bucket
+            """;
+
+    // Combina os rollups dos dispositivos do reservatório; a média é a soma das somas dividida pela quantidade
+    private static final String ROLLUPS = """
+            SELECT bucket, SUM(quantidade) AS quantidade,
+                   MIN(min_nivel_pct) AS nivel_min, MAX(max_nivel_pct) AS nivel_max,
+                   CAST(SUM(soma_nivel_pct) AS DECIMAL(20, 4)) / SUM(quantidade) AS nivel_media,
+                   MAX(CASE WHEN ordem = 1 THEN ultimo_nivel_pct END) AS nivel_ultimo,
+                   MIN(min_ph) AS ph_min, MAX(max_ph) AS ph_max,
+                   CAST(SUM(soma_ph) AS DECIMAL(20, 4)) / SUM(quantidade) AS ph_media,
+                   MAX(CASE WHEN ordem = 1 THEN ultimo_ph END) AS ph_ultimo,
+                   MIN(min_turbidez_ntu) AS turbidez_min, MAX(max_turbidez_ntu) AS turbidez_max,
+                   CAST(SUM(soma_turbidez_ntu) AS DECIMAL(20, 4)) / SUM(quantidade) AS turbidez_media,
+                   MAX(CASE WHEN ordem = 1 THEN ultimo_turbidez_ntu END) AS turbidez_ultimo
+            FROM (
+                SELECT b.bucket, r.quantidade, r.soma_nivel_pct, r.min_nivel_pct, r.max_nivel_pct,
+                       r.soma_ph, r.min_ph, r.max_ph, r.soma_turbidez_ntu, r.min_turbidez_ntu, r.max_turbidez_ntu,
+                       r.ultimo_nivel_pct, r.ultimo_ph, r.ultimo_turbidez_ntu,
+                       ROW_NUMBER() OVER (PARTITION BY b.bucket ORDER BY r.data_hora_ultima DESC, r.id_leitura_ultima DESC) AS ordem
+                FROM tbl_rollup_leitura r
+                CROSS APPLY (SELECT %s AS bucket) b
+                WHERE r.id_reservatorio = ? AND r.granularidade = ? AND r.inicio >= ? AND r.inicio < ?
+            ) t
+            GROUP BY bucket
+            ORDER BY bucket
+            """;
+
+    private static final String HISTORICOS = """
+            SELECT bucket, COUNT(*) AS quantidade,
+                   MIN(nivel_litros) AS nivel_min, MAX(nivel_litros) AS nivel_max,
+                   AVG(CAST(nivel_litros AS DECIMAL(12, 2))) AS nivel_media, MAX(CASE WHEN ordem = 1 THEN nivel_litros END) AS nivel_ultimo
+            FROM (
+                SELECT b.bucket, h.nivel_litros,
+                       ROW_NUMBER() OVER (PARTITION BY b.bucket ORDER BY h.data_hora DESC, h.id_historico DESC) AS ordem
+                FROM tbl_historico_reservatorio h
+                CROSS APPLY (SELECT %s AS bucket) b
+                WHERE h.id_reservatorio = ? AND h.data_hora >= ? AND h.data_hora < ?
+            ) t
+            GROUP BY bucket
+            ORDER BY bucket
+            """;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Agrega as leituras do reservatório. Com rollup, o período é alinhado ao início do bucket que contém
+     * {@code inicio}, já que os rollups guardam buckets inteiros.
+     */
+    public List<AgregacaoLeituraDTO> agregarLeituras(Integer idReservatorio, IntervaloAgregacao intervalo,
+                                                     LocalDateTime inicio, LocalDateTime fim) {
+        RowMapper<AgregacaoLeituraDTO> mapper = (rs, i) -> new AgregacaoLeituraDTO(
+                rs.getTimestamp("bucket").toLocalDateTime(),
+                rs.getLong("quantidade"),
+                estatistica(rs, "nivel"),
+                estatistica(rs, "ph"),
+                estatistica(rs, "turbidez")
+        );
+
+        if (intervalo.getGranularidadeRollup() == null) {
+            String sql = LEITURAS.formatted(intervalo.expressaoBucket("l.data_hora"));
+            return jdbcTemplate.query(sql, mapper, idReservatorio, Timestamp.valueOf(inicio), Timestamp.valueOf(fim));
+        }
+        String sql = ROLLUPS.formatted(intervalo.expressaoBucket("r.inicio"));
+        return jdbcTemplate.query(sql, mapper, idReservatorio, intervalo.getGranularidadeRollup(),
+                Timestamp.valueOf(intervalo.inicioBucket(inicio)), Timestamp.valueOf(fim));
+    }
+
+    public List<AgregacaoHistoricoDTO> agregarHistoricos(Integer idReservatorio, IntervaloAgregacao intervalo,
+                                                         LocalDateTime inicio, LocalDateTime fim) {
+        String sql = HISTORICOS.formatted(intervalo.expressaoBucket("h.data_hora"));
+        return jdbcTemplate.query(sql, (rs, i) -> new AgregacaoHistoricoDTO(
+                rs.getTimestamp("bucket").toLocalDateTime(),
+                rs.getLong("quantidade"),
+                estatistica(rs, "nivel")
+        ), idReservatorio, Timestamp.valueOf(inicio), Timestamp.valueOf(fim));
+    }
+
+    private EstatisticaDTO estatistica(ResultSet rs, String prefixo) throws SQLException {
+        return new EstatisticaDTO(
+                rs.getBigDecimal(prefixo + "_min"),
+                rs.getBigDecimal(prefixo + "_max"),
+                arredondar(rs.getBigDecimal(prefixo + "_media")),
+                rs.getBigDecimal(prefixo + "_ultimo")
+        );
+    }
+
+    private BigDecimal arredondar(BigDecimal valor) {
+        return valor != null ? valor.setScale(2, RoundingMode.HALF_UP) : null;
+    }
+}
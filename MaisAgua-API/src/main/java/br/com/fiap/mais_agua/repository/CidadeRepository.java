@@ -1,11 +1,17 @@
 package br.com.fiap.mais_agua.repository;
 
 import br.com.fiap.mais_agua.model.Cidade;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 
 import java.util.List;
 
 public interface CidadeRepository extends JpaRepository<Cidade, Integer> {
 
+    @Override
+    @EntityGraph(attributePaths = "estado.pais")
+    List<Cidade> findAll();
+
+    @EntityGraph(attributePaths = "estado.pais")
     List<Cidade> findByEstadoId(Integer estadoId);
 }
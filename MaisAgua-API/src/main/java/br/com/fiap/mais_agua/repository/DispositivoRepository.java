@@ -1,10 +1,14 @@
 package br.com.fiap.mais_agua.repository;
 
 import br.com.fiap.mais_agua.model.Dispositivo;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 
 public interface DispositivoRepository extends JpaRepository<Dispositivo, Integer> {
     @Query("SELECT d FROM Dispositivo d " +
@@ -12,4 +16,10 @@ public interface DispositivoRepository extends JpaRepository<Dispositivo, Intege
             "(SELECT rd.dispositivo.idDispositivo FROM ReservatorioDispositivo rd)")
     List<Dispositivo> findDispositivosSemReservatorio();
 
+    @Query("SELECT d.idDispositivo FROM Dispositivo d WHERE d.idDispositivo IN :ids")
+    Set<Integer> findIdsExistentes(@Param("ids") Collection<Integer> ids);
+
+    @Query("SELECT d.idDispositivo FROM Dispositivo d WHERE d.idDispositivo > :ultimoIdDispositivo ORDER BY d.idDispositivo")
+    List<Integer> findIds(@Param("ultimoIdDispositivo") Integer ultimoIdDispositivo, Limit limit);
+
 }
@@ -2,6 +2,7 @@ package br.com.fiap.mais_agua.repository;
 
 import br.com.fiap.mais_agua.model.Endereco;
 import br.com.fiap.mais_agua.model.Usuario;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -9,6 +10,7 @@ import org.springframework.data.repository.query.Param;
 import java.util.List;
 
 public interface EnderecoRepository extends JpaRepository<Endereco, Integer> {
+    @EntityGraph(attributePaths = {"unidade.usuario", "cidade.estado.pais"})
     List<Endereco> findByUnidadeUsuario(Usuario usuario);
 
     @Query("SELECT e FROM Endereco e " +
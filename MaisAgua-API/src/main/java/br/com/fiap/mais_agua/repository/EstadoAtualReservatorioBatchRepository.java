@@ -0,0 +1,158 @@
+package br.com.fiap.mais_agua.repository;
+
+import br.com.fiap.mais_agua.model.HistoricoReservatorio;
+import br.com.fiap.mais_agua.model.LeituraDispositivo;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Mantém a tabela de estado atual dos reservatórios. Cada gravação de leitura ou histórico faz um MERGE
+ * por reservatório na mesma transação da gravação, e só avança o estado se o registro for mais recente
+ * que o atual. Só SQL: os caches que dependem do estado são tratados por quem chama, depois do commit.
+ */
+@Repository
+public class EstadoAtualReservatorioBatchRepository {
+
+    private static final String MERGE_LEITURA = """
+            MERGE tbl_estado_atual_reservatorio WITH (HOLDLOCK) AS alvo
+            USING (SELECT ? AS id_reservatorio, ? AS id_usuario, ? AS id_dispositivo, ? AS nivel_pct,
+                          ? AS ph_int, ? AS turbidez_ntu, ? AS data_hora) AS origem
+            ON alvo.id_reservatorio = origem.id_reservatorio
+            WHEN MATCHED AND (alvo.data_hora_leitura IS NULL OR alvo.data_hora_leitura <= origem.data_hora) THEN
+                UPDATE SET id_usuario = origem.id_usuario, id_dispositivo = origem.id_dispositivo,
+                           nivel_pct = origem.nivel_pct, ph_int = origem.ph_int,
+                           turbidez_ntu = origem.turbidez_ntu, data_hora_leitura = origem.data_hora
+            WHEN NOT MATCHED THEN
+                INSERT (id_reservatorio, id_usuario, id_dispositivo, nivel_pct, ph_int, turbidez_ntu, data_hora_leitura)
+                VALUES (origem.id_reservatorio, origem.id_usuario, origem.id_dispositivo, origem.nivel_pct,
+                        origem.ph_int, origem.turbidez_ntu, origem.data_hora);
+            """;
+
+    private static final String MERGE_HISTORICO = """
+            MERGE tbl_estado_atual_reservatorio WITH (HOLDLOCK) AS alvo
+            USING (SELECT ? AS id_reservatorio, ? AS id_usuario, ? AS nivel_litros,
+                          ? AS id_status_reservatorio, ? AS data_hora) AS origem
+            ON alvo.id_reservatorio = origem.id_reservatorio
+            WHEN MATCHED AND (alvo.data_hora_historico IS NULL OR alvo.data_hora_historico <= origem.data_hora) THEN
+                UPDATE SET id_usuario = origem.id_usuario, nivel_litros = origem.nivel_litros,
+                           id_status_reservatorio = origem.id_status_reservatorio,
+                           data_hora_historico = origem.data_hora
+            WHEN NOT MATCHED THEN
+                INSERT (id_reservatorio, id_usuario, nivel_litros, id_status_reservatorio, data_hora_historico)
+                VALUES (origem.id_reservatorio, origem.id_usuario, origem.nivel_litros,
+                        origem.id_status_reservatorio, origem.data_hora);
+            """;
+
+    // Volta a última leitura do estado para a leitura mais recente ainda gravada no reservatório (ou nulos)
+    private static final String RECALCULAR_LEITURA = """
+            UPDATE e
+            SET id_dispositivo = u.id_dispositivo, nivel_pct = u.nivel_pct, ph_int = u.ph_int,
+                turbidez_ntu = u.turbidez_ntu, data_hora_leitura = u.data_hora
+            FROM tbl_estado_atual_reservatorio e
+            OUTER APPLY (SELECT TOP 1 l.id_dispositivo, l.nivel_pct, l.ph_int, l.turbidez_ntu, l.data_hora
+                         FROM tbl_leitura_dispositivo l
+                         WHERE l.id_reservatorio = e.id_reservatorio
+                         ORDER BY l.data_hora DESC, l.id_leitura DESC) u
+            WHERE e.id_reservatorio = ?;
+            """;
+
+    private static final String RECALCULAR_HISTORICO = """
+            UPDATE e
+            SET nivel_litros = u.nivel_litros, id_status_reservatorio = u.id_status_reservatorio,
+                data_hora_historico = u.data_hora
+            FROM tbl_estado_atual_reservatorio e
+            OUTER APPLY (SELECT TOP 1 h.nivel_litros, h.id_status_reservatorio, h.data_hora
+                         FROM tbl_historico_reservatorio h
+                         WHERE h.id_reservatorio = e.id_reservatorio
+                         ORDER BY h.data_hora DESC, h.id_historico DESC) u
+            WHERE e.id_reservatorio = ?;
+            """;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Atualiza o estado com a leitura mais recente de cada reservatório do lote. Leituras de dispositivos
+     * sem vínculo (sem reservatório) são ignoradas. Retorna as leituras aplicadas, uma por reservatório.
+     */
+    public Collection<LeituraDispositivo> atualizarLeituras(List<LeituraDispositivo> leituras) {
+        Collection<LeituraDispositivo> ultimas = maisRecentes(leituras.stream()
+                .filter(leitura -> leitura.getIdReservatorio() != null && leitura.getDataHora() != null)
+                .toList(), LeituraDispositivo::getIdReservatorio, LeituraDispositivo::getDataHora);
+        if (ultimas.isEmpty()) {
+            return ultimas;
+        }
+
+        List<Object[]> parametros = new ArrayList<>(ultimas.size());
+        for (LeituraDispositivo leitura : ultimas) {
+            parametros.add(new Object[]{
+                    leitura.getIdReservatorio(), leitura.getIdUsuario(), leitura.getDispositivo().getIdDispositivo(),
+                    leitura.getNivelPct(), leitura.getPhInt(), leitura.getTurbidezNtu(),
+                    Timestamp.valueOf(leitura.getDataHora())
+            });
+        }
+        jdbcTemplate.batchUpdate(MERGE_LEITURA, parametros);
+        return ultimas;
+    }
+
+    /**
+     * Atualiza o estado com o histórico mais recente de cada reservatório do lote. Retorna os históricos
+     * aplicados, um por reservatório.
+     */
+    public Collection<HistoricoReservatorio> atualizarHistoricos(List<HistoricoReservatorio> historicos) {
+        Collection<HistoricoReservatorio> ultimos = maisRecentes(historicos.stream()
+                .filter(historico -> historico.getDataHora() != null)
+                .toList(), historico -> historico.getReservatorio().getIdReservatorio(), HistoricoReservatorio::getDataHora);
+        if (ultimos.isEmpty()) {
+            return ultimos;
+        }
+
+        List<Object[]> parametros = new ArrayList<>(ultimos.size());
+        for (HistoricoReservatorio historico : ultimos) {
+            parametros.add(new Object[]{
+                    historico.getReservatorio().getIdReservatorio(), historico.getIdUsuario(), historico.getNivelLitros(),
+                    historico.getStatus() != null ? historico.getStatus().getId() : null,
+                    Timestamp.valueOf(historico.getDataHora())
+            });
+        }
+        jdbcTemplate.batchUpdate(MERGE_HISTORICO, parametros);
+        return ultimos;
+    }
+
+    /**
+     * Recalcula a última leitura do estado do reservatório a partir das leituras gravadas, para quando uma
+     * leitura é excluída ou sai do reservatório (o MERGE só avança o estado).
+     */
+    public void recalcularLeituras(Integer idReservatorio) {
+        jdbcTemplate.update(RECALCULAR_LEITURA, idReservatorio);
+    }
+
+    /**
+     * Recalcula o último histórico do estado do reservatório a partir dos históricos gravados, para quando um
+     * histórico é excluído, muda de data ou sai do reservatório.
+     */
+    public void recalcularHistoricos(Integer idReservatorio) {
+        jdbcTemplate.update(RECALCULAR_HISTORICO, idReservatorio);
+    }
+
+    // Um registro por reservatório: o de maior data/hora (em empate, o último do lote)
+    private <T> Collection<T> maisRecentes(List<T> registros, Function<T, Integer> reservatorio,
+                                           Function<T, LocalDateTime> dataHora) {
+        Map<Integer, T> ultimos = new LinkedHashMap<>();
+        for (T registro : registros) {
+            ultimos.merge(reservatorio.apply(registro), registro,
+                    (atual, novo) -> dataHora.apply(novo).isBefore(dataHora.apply(atual)) ? atual : novo);
+        }
+        return ultimos.values();
+    }
+}
@@ -0,0 +1,7 @@
+package br.com.fiap.mais_agua.repository;
+
+import br.com.fiap.mais_agua.model.EstadoAtualReservatorio;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface EstadoAtualReservatorioRepository extends JpaRepository<EstadoAtualReservatorio, Integer> {
+}
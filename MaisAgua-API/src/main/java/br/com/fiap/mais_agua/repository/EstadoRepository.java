@@ -1,11 +1,17 @@
 package br.com.fiap.mais_agua.repository;
 
 import br.com.fiap.mais_agua.model.Estado;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 
 import java.util.List;
 
 public interface EstadoRepository extends JpaRepository<Estado, Integer> {
 
+    @Override
+    @EntityGraph(attributePaths = "pais")
+    List<Estado> findAll();
+
+    @EntityGraph(attributePaths = "pais")
     List<Estado> findByPaisId(Integer paisId);
 }
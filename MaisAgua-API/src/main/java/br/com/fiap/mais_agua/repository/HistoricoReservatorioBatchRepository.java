@@ -0,0 +1,40 @@
+package br.com.fiap.mais_agua.repository;
+
+import br.com.fiap.mais_agua.model.HistoricoReservatorio;
+import br.com.fiap.mais_agua.model.Reservatorio;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public class HistoricoReservatorioBatchRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}")
+    private int tamanhoLote;
+
+    /**
+     * Persiste os históricos usando o batching do Hibernate. Deve ser chamado dentro de uma transação.
+     * O contexto de persistência é limpo a cada lote para manter a memória constante.
+     */
+    public void inserir(List<HistoricoReservatorio> historicos) {
+        for (int i = 0; i < historicos.size(); i++) {
+            HistoricoReservatorio historico = historicos.get(i);
+            historico.setReservatorio(entityManager.getReference(Reservatorio.class, historico.getReservatorio().getIdReservatorio()));
+            entityManager.persist(historico);
+
+            if ((i + 1) % tamanhoLote == 0) {
+                entityManager.flush();
+                entityManager.clear();
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+}
@@ -3,6 +3,10 @@ package br.com.fiap.mais_agua.repository;
 import br.com.fiap.mais_agua.model.HistoricoReservatorio;
 import br.com.fiap.mais_agua.model.Reservatorio;
 import br.com.fiap.mais_agua.model.Usuario;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
@@ -11,6 +15,12 @@ import java.util.List;
 import java.util.Optional;
 
 public interface HistoricoReservatorioRepository extends JpaRepository<HistoricoReservatorio, Integer>, JpaSpecificationExecutor<HistoricoReservatorio> {
+
+    // Reservatório, unidade, usuário e status vêm no mesmo SELECT da página (sem N+1 no toDTO)
+    @Override
+    @EntityGraph(attributePaths = {"reservatorio.unidade.usuario", "status"})
+    Page<HistoricoReservatorio> findAll(Specification<HistoricoReservatorio> spec, Pageable pageable);
+
     Optional<HistoricoReservatorio> findTopByReservatorioIdReservatorioOrderByDataHoraDesc(Integer idReservatorio);
     boolean existsByReservatorio(Reservatorio reservatorio);
 
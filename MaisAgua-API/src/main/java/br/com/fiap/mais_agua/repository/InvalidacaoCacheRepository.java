@@ -0,0 +1,90 @@
+package br.com.fiap.mais_agua.repository;
+
+import br.com.fiap.mais_agua.config.InvalidacaoCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Log de invalidações de cache entre réplicas (tbl_invalidacao_cache). A leitura é um seek pela chave
+ * primária a partir do último id lido, mais os ids de lacunas ainda abertas.
+ */
+@Repository
+public class InvalidacaoCacheRepository {
+
+    private static final String INSERT = """
+            INSERT INTO tbl_invalidacao_cache (origem, nome_cache, tipo, id_chave) VALUES (?, ?, ?, ?)
+            """;
+
+    private static final String BUSCAR = """
+            SELECT TOP (?) id_invalidacao, origem, nome_cache, tipo, id_chave
+            FROM tbl_invalidacao_cache
+            WHERE id_invalidacao > ?%s
+            ORDER BY id_invalidacao
+            """;
+
+    private static final String APAGAR_ANTIGAS = """
+            DELETE TOP (?) FROM tbl_invalidacao_cache
+            WHERE data_hora < DATEADD(SECOND, -?, SYSUTCDATETIME())
+            """;
+
+    private static final int TAMANHO_BLOCO_LIMPEZA = 5000;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Invalidação lida do log, com o id da linha.
+     */
+    public record Registro(long id, InvalidacaoCache invalidacao) {}
+
+    public void inserir(Collection<InvalidacaoCache> invalidacoes) {
+        List<Object[]> parametros = new ArrayList<>(invalidacoes.size());
+        for (InvalidacaoCache invalidacao : invalidacoes) {
+            parametros.add(new Object[]{invalidacao.origem(), invalidacao.cache(), invalidacao.tipo().name(), invalidacao.id()});
+        }
+        jdbcTemplate.batchUpdate(INSERT, parametros);
+    }
+
+    public long ultimoId() {
+        Long id = jdbcTemplate.queryForObject("SELECT MAX(id_invalidacao) FROM tbl_invalidacao_cache", Long.class);
+        return id != null ? id : 0;
+    }
+
+    /**
+     * Invalidações com id maior que o informado ou entre as lacunas, em ordem de id.
+     */
+    public List<Registro> buscar(long depoisDe, Collection<Long> lacunas, int limite) {
+        List<Object> parametros = new ArrayList<>(lacunas.size() + 2);
+        parametros.add(limite);
+        parametros.add(depoisDe);
+        parametros.addAll(lacunas);
+        String filtroLacunas = lacunas.isEmpty() ? ""
+                : " OR id_invalidacao IN (" + String.join(", ", Collections.nCopies(lacunas.size(), "?")) + ")";
+
+        return jdbcTemplate.query(BUSCAR.formatted(filtroLacunas), (rs, rowNum) -> new Registro(
+                rs.getLong("id_invalidacao"),
+                new InvalidacaoCache(rs.getString("origem"), rs.getString("nome_cache"),
+                        InvalidacaoCache.Tipo.valueOf(rs.getString("tipo")), rs.getObject("id_chave", Integer.class))
+        ), parametros.toArray());
+    }
+
+    /**
+     * Apaga, em blocos, as invalidações mais antigas que a retenção. Retorna quantas foram apagadas.
+     */
+    public int apagarAntigas(Duration retencao) {
+        int total = 0;
+        int apagadas;
+        do {
+            apagadas = jdbcTemplate.update(APAGAR_ANTIGAS, TAMANHO_BLOCO_LIMPEZA, retencao.toSeconds());
+            total += apagadas;
+        } while (apagadas == TAMANHO_BLOCO_LIMPEZA);
+        return total;
+    }
+}
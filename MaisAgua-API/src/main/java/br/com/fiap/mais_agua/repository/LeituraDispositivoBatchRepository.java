@@ -0,0 +1,79 @@
+package br.com.fiap.mais_agua.repository;
+
+import br.com.fiap.mais_agua.model.DTO.DonoDispositivoDTO;
+import br.com.fiap.mais_agua.model.Dispositivo;
+import br.com.fiap.mais_agua.model.LeituraDispositivo;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+@Repository
+public class LeituraDispositivoBatchRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private ReservatorioDispositivoRepository reservatorioDispositivoRepository;
+
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}")
+    private int tamanhoLote;
+
+    /**
+     * Persiste as leituras usando o batching do Hibernate (ids vindos da sequence, um INSERT em lote
+     * a cada {@code hibernate.jdbc.batch_size} linhas). Deve ser chamado dentro de uma transação.
+     * O contexto de persistência é limpo a cada lote para manter a memória constante.
+     */
+    public void inserir(List<LeituraDispositivo> leituras) {
+        preencherDono(leituras);
+        for (int i = 0; i < leituras.size(); i++) {
+            LeituraDispositivo leitura = leituras.get(i);
+            leitura.setDispositivo(entityManager.getReference(Dispositivo.class, leitura.getDispositivo().getIdDispositivo()));
+            entityManager.persist(leitura);
+
+            if ((i + 1) % tamanhoLote == 0) {
+                entityManager.flush();
+                entityManager.clear();
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    /**
+     * Preenche reservatório e dono das leituras que ainda não os têm, com uma única consulta para os
+     * dispositivos distintos. Vale o vínculo mais recente do dispositivo; sem vínculo, ficam nulos.
+     * O dono é gravado só na escrita: criar, trocar ou remover um vínculo depois não reescreve leituras já
+     * gravadas, que continuam com quem era dono do dispositivo quando chegaram.
+     */
+    public void preencherDono(List<LeituraDispositivo> leituras) {
+        Set<Integer> idsDispositivo = leituras.stream()
+                .filter(leitura -> leitura.getIdUsuario() == null)
+                .map(leitura -> leitura.getDispositivo().getIdDispositivo())
+                .collect(Collectors.toSet());
+        if (idsDispositivo.isEmpty()) {
+            return;
+        }
+
+        Map<Integer, DonoDispositivoDTO> donos = new HashMap<>();
+        for (DonoDispositivoDTO dono : reservatorioDispositivoRepository.findDonos(idsDispositivo)) {
+            donos.put(dono.idDispositivo(), dono);
+        }
+
+        for (LeituraDispositivo leitura : leituras) {
+            DonoDispositivoDTO dono = donos.get(leitura.getDispositivo().getIdDispositivo());
+            if (leitura.getIdUsuario() == null && dono != null) {
+                leitura.setIdReservatorio(dono.idReservatorio());
+                leitura.setIdUsuario(dono.idUsuario());
+            }
+        }
+    }
+}
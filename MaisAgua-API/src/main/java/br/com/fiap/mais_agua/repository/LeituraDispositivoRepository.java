@@ -1,12 +1,21 @@
 package br.com.fiap.mais_agua.repository;
 
 import br.com.fiap.mais_agua.model.LeituraDispositivo;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 
 import java.util.Optional;
 
 public interface LeituraDispositivoRepository extends JpaRepository<LeituraDispositivo, Integer>, JpaSpecificationExecutor<LeituraDispositivo> {
+
+    @Override
+    @EntityGraph(attributePaths = "dispositivo")
+    Page<LeituraDispositivo> findAll(Specification<LeituraDispositivo> spec, Pageable pageable);
+
     Optional<LeituraDispositivo> findTopByDispositivoIdDispositivoOrderByDataHoraDesc(Integer idDispositivo);
 
 }
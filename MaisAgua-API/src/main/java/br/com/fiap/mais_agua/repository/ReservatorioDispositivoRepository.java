@@ -1,25 +1,75 @@
 package br.com.fiap.mais_agua.repository;
 
+import br.com.fiap.mais_agua.model.DTO.DonoDispositivoDTO;
+import br.com.fiap.mais_agua.model.DTO.NivelDispositivoDTO;
 import br.com.fiap.mais_agua.model.Dispositivo;
 import br.com.fiap.mais_agua.model.Reservatorio;
 import br.com.fiap.mais_agua.model.ReservatorioDispositivo;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 public interface ReservatorioDispositivoRepository extends JpaRepository<ReservatorioDispositivo, Integer> {
+    @EntityGraph(attributePaths = "reservatorio.unidade.usuario")
     List<ReservatorioDispositivo> findByDispositivo(Dispositivo dispositivo);
     List<ReservatorioDispositivo> findByReservatorio(Reservatorio reservatorio);
     Optional<ReservatorioDispositivo> findByReservatorioIdReservatorio(Integer idReservatorio);
+    boolean existsByDispositivoIdDispositivo(Integer idDispositivo);
 
+    @EntityGraph(attributePaths = {"reservatorio.unidade.usuario", "dispositivo"})
     List<ReservatorioDispositivo> findByReservatorio_Unidade_Usuario_IdUsuario(Integer idUsuario);
 
     @Query("SELECT rd.reservatorio FROM ReservatorioDispositivo rd " +
             "WHERE rd.dispositivo.idDispositivo = :idDispositivo")
     Optional<Reservatorio> findReservatorioByDispositivo(@Param("idDispositivo") Integer idDispositivo);
 
+    @Query("SELECT DISTINCT rd.dispositivo.idDispositivo FROM ReservatorioDispositivo rd " +
+            "WHERE rd.dispositivo.idDispositivo IN :idsDispositivo " +
+            "AND rd.reservatorio.unidade.usuario.idUsuario = :idUsuario")
+    Set<Integer> findIdsDispositivoDoUsuario(@Param("idsDispositivo") Collection<Integer> idsDispositivo,
+                                             @Param("idUsuario") Integer idUsuario);
+
+    @Query("SELECT DISTINCT rd.dispositivo.idDispositivo FROM ReservatorioDispositivo rd " +
+            "WHERE rd.reservatorio.unidade.usuario.idUsuario = :idUsuario")
+    List<Integer> findIdsDispositivoByUsuario(@Param("idUsuario") Integer idUsuario);
+
+    /**
+     * Reservatório e dono de cada vínculo dos dispositivos informados, do vínculo mais antigo para o mais recente.
+     */
+    @Query("SELECT new br.com.fiap.mais_agua.model.DTO.DonoDispositivoDTO(" +
+            "rd.dispositivo.idDispositivo, r.idReservatorio, r.unidade.usuario.idUsuario) " +
+            "FROM ReservatorioDispositivo rd JOIN rd.reservatorio r " +
+            "WHERE rd.dispositivo.idDispositivo IN :idsDispositivo " +
+            "ORDER BY rd.dataInstalacao, rd.idReservatorioDispositivo")
+    List<DonoDispositivoDTO> findDonos(@Param("idsDispositivo") Collection<Integer> idsDispositivo);
+
+    /**
+     * Dispositivos cujo vínculo mais recente (maior data de instalação, depois maior id, a mesma regra de
+     * {@link #findDonos}) é com um reservatório com histórico, junto do nível mais recente desse reservatório
+     * (lido do estado atual), a partir do id informado (paginação por chave). Uma linha por dispositivo.
+     */
+    @Query("SELECT new br.com.fiap.mais_agua.model.DTO.NivelDispositivoDTO(" +
+            "d.idDispositivo, r.idReservatorio, r.unidade.usuario.idUsuario, r.capacidadeTotalLitros, ea.nivelLitros) " +
+            "FROM ReservatorioDispositivo rd " +
+            "JOIN rd.dispositivo d " +
+            "JOIN rd.reservatorio r " +
+            "JOIN EstadoAtualReservatorio ea ON ea.idReservatorio = r.idReservatorio " +
+            "WHERE d.idDispositivo > :ultimoIdDispositivo " +
+            "AND ea.nivelLitros IS NOT NULL " +
+            "AND NOT EXISTS (SELECT 1 FROM ReservatorioDispositivo recente " +
+            "    WHERE recente.dispositivo = d " +
+            "    AND (recente.dataInstalacao > rd.dataInstalacao " +
+            "        OR (recente.dataInstalacao = rd.dataInstalacao " +
+            "            AND recente.idReservatorioDispositivo > rd.idReservatorioDispositivo))) " +
+            "ORDER BY d.idDispositivo, rd.dataInstalacao DESC, rd.idReservatorioDispositivo DESC")
+    List<NivelDispositivoDTO> findNivelAtualPorDispositivo(@Param("ultimoIdDispositivo") Integer ultimoIdDispositivo, Limit limit);
+
 
 }
@@ -1,17 +1,74 @@
 package br.com.fiap.mais_agua.repository;
 
+import br.com.fiap.mais_agua.model.DTO.CapacidadeReservatorioDTO;
+import br.com.fiap.mais_agua.model.DTO.DashboardReservatorioDTO;
+import br.com.fiap.mais_agua.model.DTO.PerfilResumoDTO;
 import br.com.fiap.mais_agua.model.Reservatorio;
 import br.com.fiap.mais_agua.model.Unidade;
 import br.com.fiap.mais_agua.model.Usuario;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.List;
+import java.util.Optional;
 
 public interface ReservatorioRepository extends JpaRepository<Reservatorio, Integer>  {
 
+    @EntityGraph(attributePaths = "unidade.usuario")
     List<Reservatorio> findByUnidadeUsuario(Usuario usuario);
     List<Reservatorio> findByUnidade(Unidade unidade);
     Reservatorio findByIdReservatorio(Integer idReservatorio);
     boolean existsByIdReservatorioAndUnidadeUsuario(Integer idReservatorio, Usuario usuario);
 
+    @Query("SELECT r.idReservatorio FROM Reservatorio r WHERE r.unidade.usuario.idUsuario = :idUsuario")
+    List<Integer> findIdsByUsuario(@Param("idUsuario") Integer idUsuario);
+
+    @Query("SELECT new br.com.fiap.mais_agua.model.DTO.CapacidadeReservatorioDTO(r.idReservatorio, r.capacidadeTotalLitros, r.unidade.usuario.idUsuario) " +
+            "FROM Reservatorio r WHERE r.idReservatorio > :ultimoIdReservatorio ORDER BY r.idReservatorio")
+    List<CapacidadeReservatorioDTO> findCapacidades(@Param("ultimoIdReservatorio") Integer ultimoIdReservatorio, Limit limit);
+
+    /**
+     * Todos os reservatórios do usuário com o seu estado atual (nulo quando ainda não há histórico ou leitura).
+     */
+    @Query("SELECT new br.com.fiap.mais_agua.model.DTO.DashboardReservatorioDTO(" +
+            "r.idReservatorio, r.nome, u.idUnidade, u.nome, r.capacidadeTotalLitros, " +
+            "ea.nivelLitros, ea.nivelPct, ea.phInt, ea.turbidezNtu, s.status, ea.dataHoraHistorico, ea.dataHoraLeitura) " +
+            "FROM Reservatorio r JOIN r.unidade u " +
+            "LEFT JOIN EstadoAtualReservatorio ea ON ea.idReservatorio = r.idReservatorio " +
+            "LEFT JOIN ea.status s " +
+            "WHERE u.usuario.idUsuario = :idUsuario " +
+            "ORDER BY u.idUnidade, r.idReservatorio")
+    List<DashboardReservatorioDTO> findDashboard(@Param("idUsuario") Integer idUsuario);
+
+    /**
+     * Monta o perfil do reservatório em uma única ida ao banco: dono, vínculo mais recente, primeiro
+     * endereço do usuário, último histórico (da tabela de estado atual) e a última leitura do dispositivo
+     * vinculado. A leitura é a do dispositivo do vínculo, e não a mais recente do reservatório, que pode vir
+     * de outro dispositivo.
+     */
+    @Query(value = """
+            SELECT u.id_usuario AS idUsuario, u.nome AS nome, rd.id_dispositivo AS idDispositivo,
+                   e.logradouro AS logradouro, e.numero AS numero, ea.nivel_litros AS nivelLitros,
+                   l.ph_int AS ph, l.nivel_pct AS nivelPct
+            FROM tbl_reservatorio r
+            JOIN tbl_unidade un ON un.id_unidade = r.id_unidade
+            JOIN tbl_usuario u ON u.id_usuario = un.id_usuario
+            LEFT JOIN tbl_estado_atual_reservatorio ea ON ea.id_reservatorio = r.id_reservatorio
+            OUTER APPLY (SELECT TOP 1 v.id_dispositivo FROM tbl_reservatorio_dispositivo v
+                         WHERE v.id_reservatorio = r.id_reservatorio
+                         ORDER BY v.data_instalacao DESC, v.id_reservatorio_dispositivo DESC) rd
+            OUTER APPLY (SELECT TOP 1 en.logradouro, en.numero FROM tbl_endereco en
+                         JOIN tbl_unidade ue ON ue.id_unidade = en.id_unidade
+                         WHERE ue.id_usuario = u.id_usuario
+                         ORDER BY en.id_endereco) e
+            OUTER APPLY (SELECT TOP 1 ld.ph_int, ld.nivel_pct FROM tbl_leitura_dispositivo ld
+                         WHERE ld.id_dispositivo = rd.id_dispositivo
+                         ORDER BY ld.data_hora DESC, ld.id_leitura DESC) l
+            WHERE r.id_reservatorio = :idReservatorio
+            """, nativeQuery = true)
+    Optional<PerfilResumoDTO> findPerfil(@Param("idReservatorio") Integer idReservatorio);
+
 }
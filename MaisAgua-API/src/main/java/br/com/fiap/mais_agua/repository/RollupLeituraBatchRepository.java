@@ -0,0 +1,207 @@
+package br.com.fiap.mais_agua.repository;
+
+import br.com.fiap.mais_agua.model.IntervaloAgregacao;
+import br.com.fiap.mais_agua.model.LeituraDispositivo;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Mantém os rollups por hora (H) e por dia (D) das leituras, uma linha por dispositivo, reservatório e bucket
+ * com quantidade, somas, mínimos, máximos e a última leitura. Com o reservatório na chave, um revínculo no meio
+ * do bucket separa as leituras de cada reservatório em vez de mover o bucket inteiro para o novo dono; leituras
+ * sem reservatório ficam de fora, já que as consultas são sempre por reservatório. As leituras novas são somadas com MERGE na mesma
+ * transação da gravação; leituras alteradas ou excluídas fazem o bucket ser recalculado a partir das leituras.
+ * As consultas por reservatório somam as linhas dos dispositivos do reservatório.
+ */
+@Repository
+public class RollupLeituraBatchRepository {
+
+    // Granularidades mantidas na tabela; a semana é lida do rollup diário
+    private static final List<IntervaloAgregacao> GRANULARIDADES = List.of(IntervaloAgregacao.HORA, IntervaloAgregacao.DIA);
+
+    private static final Comparator<LeituraDispositivo> ORDEM_LEITURA = Comparator
+            .comparing(LeituraDispositivo::getDataHora)
+            .thenComparing(LeituraDispositivo::getId, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    private static final String MERGE = """
+            MERGE tbl_rollup_leitura WITH (HOLDLOCK) AS alvo
+            USING (SELECT ? AS id_dispositivo, ? AS granularidade, ? AS inicio, ? AS id_reservatorio, ? AS id_usuario,
+                          ? AS quantidade, ? AS soma_nivel_pct, ? AS min_nivel_pct, ? AS max_nivel_pct,
+                          ? AS soma_ph, ? AS min_ph, ? AS max_ph,
+                          ? AS soma_turbidez_ntu, ? AS min_turbidez_ntu, ? AS max_turbidez_ntu,
+                          ? AS ultimo_nivel_pct, ? AS ultimo_ph, ? AS ultimo_turbidez_ntu,
+                          ? AS data_hora_ultima, ? AS id_leitura_ultima) AS origem
+            ON alvo.id_dispositivo = origem.id_dispositivo AND alvo.granularidade = origem.granularidade
+               AND alvo.inicio = origem.inicio AND alvo.id_reservatorio = origem.id_reservatorio
+            WHEN MATCHED THEN
+                UPDATE SET id_usuario = origem.id_usuario,
+                           quantidade = alvo.quantidade + origem.quantidade,
+                           soma_nivel_pct = alvo.soma_nivel_pct + origem.soma_nivel_pct,
+                           min_nivel_pct = CASE WHEN origem.min_nivel_pct < alvo.min_nivel_pct THEN origem.min_nivel_pct ELSE alvo.min_nivel_pct END,
+                           max_nivel_pct = CASE WHEN origem.max_nivel_pct > alvo.max_nivel_pct THEN origem.max_nivel_pct ELSE alvo.max_nivel_pct END,
+                           soma_ph = alvo.soma_ph + origem.soma_ph,
+                           min_ph = CASE WHEN origem.min_ph < alvo.min_ph THEN origem.min_ph ELSE alvo.min_ph END,
+                           max_ph = CASE WHEN origem.max_ph > alvo.max_ph THEN origem.max_ph ELSE alvo.max_ph END,
+                           soma_turbidez_ntu = alvo.soma_turbidez_ntu + origem.soma_turbidez_ntu,
+                           min_turbidez_ntu = CASE WHEN origem.min_turbidez_ntu < alvo.min_turbidez_ntu THEN origem.min_turbidez_ntu ELSE alvo.min_turbidez_ntu END,
+                           max_turbidez_ntu = CASE WHEN origem.max_turbidez_ntu > alvo.max_turbidez_ntu THEN origem.max_turbidez_ntu ELSE alvo.max_turbidez_ntu END,
+                           ultimo_nivel_pct = CASE WHEN origem.data_hora_ultima >= alvo.data_hora_ultima THEN origem.ultimo_nivel_pct ELSE alvo.ultimo_nivel_pct END,
+                           ultimo_ph = CASE WHEN origem.data_hora_ultima >= alvo.data_hora_ultima THEN origem.ultimo_ph ELSE alvo.ultimo_ph END,
+                           ultimo_turbidez_ntu = CASE WHEN origem.data_hora_ultima >= alvo.data_hora_ultima THEN origem.ultimo_turbidez_ntu ELSE alvo.ultimo_turbidez_ntu END,
+                           id_leitura_ultima = CASE WHEN origem.data_hora_ultima >= alvo.data_hora_ultima THEN origem.id_leitura_ultima ELSE alvo.id_leitura_ultima END,
+                           data_hora_ultima = CASE WHEN origem.data_hora_ultima >= alvo.data_hora_ultima THEN origem.data_hora_ultima ELSE alvo.data_hora_ultima END
+            WHEN NOT MATCHED THEN
+                INSERT (id_dispositivo, granularidade, inicio, id_reservatorio, id_usuario, quantidade,
+                        soma_nivel_pct, min_nivel_pct, max_nivel_pct, soma_ph, min_ph, max_ph,
+                        soma_turbidez_ntu, min_turbidez_ntu, max_turbidez_ntu,
+                        ultimo_nivel_pct, ultimo_ph, ultimo_turbidez_ntu, data_hora_ultima, id_leitura_ultima)
+                VALUES (origem.id_dispositivo, origem.granularidade, origem.inicio, origem.id_reservatorio, origem.id_usuario,
+                        origem.quantidade, origem.soma_nivel_pct, origem.min_nivel_pct, origem.max_nivel_pct,
+                        origem.soma_ph, origem.min_ph, origem.max_ph,
+                        origem.soma_turbidez_ntu, origem.min_turbidez_ntu, origem.max_turbidez_ntu,
+                        origem.ultimo_nivel_pct, origem.ultimo_ph, origem.ultimo_turbidez_ntu,
+                        origem.data_hora_ultima, origem.id_leitura_ultima);
+            """;
+
+    // %1$s: expressão do bucket; %2$s: granularidade; %3$s: filtro das leituras
+    private static final String INSERIR_AGREGADO = """
+            INSERT INTO tbl_rollup_leitura (id_dispositivo, granularidade, inicio, id_reservatorio, id_usuario, quantidade,
+                                            soma_nivel_pct, min_nivel_pct, max_nivel_pct, soma_ph, min_ph, max_ph,
+                                            soma_turbidez_ntu, min_turbidez_ntu, max_turbidez_ntu,
+                                            ultimo_nivel_pct, ultimo_ph, ultimo_turbidez_ntu, data_hora_ultima, id_leitura_ultima)
+            SELECT id_dispositivo, '%2$s', bucket, id_reservatorio, MAX(id_usuario), COUNT(*),
+                   SUM(CAST(nivel_pct AS BIGINT)), MIN(nivel_pct), MAX(nivel_pct), SUM(ph_int), MIN(ph_int), MAX(ph_int),
+                   SUM(CAST(turbidez_ntu AS BIGINT)), MIN(turbidez_ntu), MAX(turbidez_ntu),
+                   MAX(CASE WHEN ordem = 1 THEN nivel_pct END), MAX(CASE WHEN ordem = 1 THEN ph_int END),
+                   MAX(CASE WHEN ordem = 1 THEN turbidez_ntu END), MAX(data_hora), MAX(CASE WHEN ordem = 1 THEN id_leitura END)
+            FROM (
+                SELECT l.id_dispositivo, l.id_reservatorio, l.id_usuario, l.nivel_pct, l.ph_int, l.turbidez_ntu,
+                       l.data_hora, l.id_leitura, b.bucket,
+                       ROW_NUMBER() OVER (PARTITION BY l.id_dispositivo, l.id_reservatorio, b.bucket ORDER BY l.data_hora DESC, l.id_leitura DESC) AS ordem
+                FROM tbl_leitura_dispositivo l
+                CROSS APPLY (SELECT %1$s AS bucket) b
+                WHERE l.id_reservatorio IS NOT NULL AND %3$s
+            ) t
+            GROUP BY id_dispositivo, id_reservatorio, bucket
+            """;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Soma as leituras novas aos rollups. O lote é agregado em memória antes, então cada dispositivo,
+     * reservatório e bucket gera um único MERGE por granularidade. Deve ser chamado na transação que grava as leituras.
+     */
+    public void acumular(List<LeituraDispositivo> leituras) {
+        Map<Chave, Acumulado> acumulados = new LinkedHashMap<>();
+        for (LeituraDispositivo leitura : leituras) {
+            if (leitura.getDataHora() == null || leitura.getIdReservatorio() == null) {
+                continue;
+            }
+            for (IntervaloAgregacao granularidade : GRANULARIDADES) {
+                Chave chave = new Chave(leitura.getDispositivo().getIdDispositivo(), leitura.getIdReservatorio(),
+                        granularidade.getGranularidadeRollup(), granularidade.inicioBucket(leitura.getDataHora()));
+                acumulados.computeIfAbsent(chave, c -> new Acumulado()).somar(leitura);
+            }
+        }
+        if (acumulados.isEmpty()) {
+            return;
+        }
+
+        List<Object[]> parametros = new ArrayList<>(acumulados.size());
+        acumulados.forEach((chave, acumulado) -> parametros.add(acumulado.parametros(chave)));
+        jdbcTemplate.batchUpdate(MERGE, parametros);
+    }
+
+    /**
+     * Recalcula, a partir das leituras, os buckets do dispositivo (de todos os reservatórios) que contêm a
+     * data/hora informada.
+     * Usado quando uma leitura é alterada ou excluída, casos em que mínimo, máximo e última leitura não
+     * podem ser corrigidos de forma incremental. As alterações das leituras já devem ter sido enviadas ao banco.
+     */
+    public void recalcular(Integer idDispositivo, LocalDateTime dataHora) {
+        for (IntervaloAgregacao granularidade : GRANULARIDADES) {
+            LocalDateTime inicio = granularidade.inicioBucket(dataHora);
+            Timestamp de = Timestamp.valueOf(inicio);
+            Timestamp ate = Timestamp.valueOf(inicio.plus(granularidade.getDuracao()));
+
+            jdbcTemplate.update("DELETE FROM tbl_rollup_leitura WHERE id_dispositivo = ? AND granularidade = ? AND inicio = ?",
+                    idDispositivo, granularidade.getGranularidadeRollup(), de);
+            jdbcTemplate.update(inserirAgregado(granularidade, "l.id_dispositivo = ? AND l.data_hora >= ? AND l.data_hora < ?"),
+                    idDispositivo, de, ate);
+        }
+    }
+
+    /**
+     * Reconstrói os rollups dos dispositivos com id no intervalo (deIdDispositivo, ateIdDispositivo].
+     * Retorna a quantidade de linhas de rollup geradas.
+     */
+    public int reconstruir(int deIdDispositivo, int ateIdDispositivo) {
+        jdbcTemplate.update("DELETE FROM tbl_rollup_leitura WHERE id_dispositivo > ? AND id_dispositivo <= ?",
+                deIdDispositivo, ateIdDispositivo);
+        int linhas = 0;
+        for (IntervaloAgregacao granularidade : GRANULARIDADES) {
+            linhas += jdbcTemplate.update(inserirAgregado(granularidade, "l.id_dispositivo > ? AND l.id_dispositivo <= ?"),
+                    deIdDispositivo, ateIdDispositivo);
+        }
+        return linhas;
+    }
+
+    private String inserirAgregado(IntervaloAgregacao granularidade, String filtro) {
+        return INSERIR_AGREGADO.formatted(granularidade.expressaoBucket("l.data_hora"),
+                granularidade.getGranularidadeRollup(), filtro);
+    }
+
+    private record Chave(Integer idDispositivo, Integer idReservatorio, String granularidade, LocalDateTime inicio) {}
+
+    private static class Acumulado {
+        private int quantidade;
+        private long somaNivelPct;
+        private int minNivelPct = Integer.MAX_VALUE;
+        private int maxNivelPct = Integer.MIN_VALUE;
+        private BigDecimal somaPh = BigDecimal.ZERO;
+        private BigDecimal minPh;
+        private BigDecimal maxPh;
+        private long somaTurbidezNtu;
+        private int minTurbidezNtu = Integer.MAX_VALUE;
+        private int maxTurbidezNtu = Integer.MIN_VALUE;
+        private LeituraDispositivo ultima;
+
+        void somar(LeituraDispositivo leitura) {
+            quantidade++;
+            somaNivelPct += leitura.getNivelPct();
+            minNivelPct = Math.min(minNivelPct, leitura.getNivelPct());
+            maxNivelPct = Math.max(maxNivelPct, leitura.getNivelPct());
+            somaPh = somaPh.add(leitura.getPhInt());
+            minPh = minPh == null ? leitura.getPhInt() : minPh.min(leitura.getPhInt());
+            maxPh = maxPh == null ? leitura.getPhInt() : maxPh.max(leitura.getPhInt());
+            somaTurbidezNtu += leitura.getTurbidezNtu();
+            minTurbidezNtu = Math.min(minTurbidezNtu, leitura.getTurbidezNtu());
+            maxTurbidezNtu = Math.max(maxTurbidezNtu, leitura.getTurbidezNtu());
+            if (ultima == null || ORDEM_LEITURA.compare(leitura, ultima) >= 0) {
+                ultima = leitura;
+            }
+        }
+
+        Object[] parametros(Chave chave) {
+            return new Object[]{
+                    chave.idDispositivo(), chave.granularidade(), Timestamp.valueOf(chave.inicio()),
+                    chave.idReservatorio(), ultima.getIdUsuario(), quantidade,
+                    somaNivelPct, minNivelPct, maxNivelPct, somaPh, minPh, maxPh,
+                    somaTurbidezNtu, minTurbidezNtu, maxTurbidezNtu,
+                    ultima.getNivelPct(), ultima.getPhInt(), ultima.getTurbidezNtu(),
+                    Timestamp.valueOf(ultima.getDataHora()), ultima.getId()
+            };
+        }
+    }
+}
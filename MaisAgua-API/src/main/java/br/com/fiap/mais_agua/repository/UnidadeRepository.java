@@ -2,10 +2,17 @@ package br.com.fiap.mais_agua.repository;
 
 import br.com.fiap.mais_agua.model.Unidade;
 import br.com.fiap.mais_agua.model.Usuario;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.List;
 
 public interface UnidadeRepository extends JpaRepository<Unidade, Integer> {
+    @EntityGraph(attributePaths = "usuario")
     List<Unidade> findByUsuario(Usuario usuario);
+
+    @Query("SELECT u.idUnidade FROM Unidade u WHERE u.usuario.idUsuario = :idUsuario")
+    List<Integer> findIdsByUsuario(@Param("idUsuario") Integer idUsuario);
 }
@@ -0,0 +1,83 @@
+package br.com.fiap.mais_agua.service;
+
+import br.com.fiap.mais_agua.config.CacheUsuario;
+import br.com.fiap.mais_agua.config.DonoCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Remoção programática das entradas de cache dos donos afetados por uma gravação, para os caminhos que não
+ * passam pelos controllers (jobs, gravação em lote, write-behind e journal). Os caminhos em lote usam a
+ * recarga antecipada: as entradas dos donos são recarregadas em segundo plano e continuam servindo o valor
+ * anterior até lá, para que o pico de acessos depois de um job não encontre o cache vazio.
+ */
+@Service
+public class CacheUsuarioService {
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    /**
+     * Remove as entradas dos usuários nos caches informados depois do commit da transação atual
+     * (ou na hora, fora de transação).
+     */
+    public void evictarAposCommit(Collection<Integer> idsUsuario, String... caches) {
+        aposCommit(idsUsuario, ids -> evictar(ids, caches));
+    }
+
+    /**
+     * Recarrega em segundo plano as entradas dos usuários nos caches informados depois do commit da
+     * transação atual (ou na hora, fora de transação).
+     */
+    public void recarregarAposCommit(Collection<Integer> idsUsuario, String... caches) {
+        aposCommit(idsUsuario, ids -> recarregar(ids, caches));
+    }
+
+    public void evictar(Collection<Integer> idsUsuario, String... caches) {
+        for (String nome : List.of(caches)) {
+            Cache cache = cacheManager.getCache(nome);
+            if (cache != null) {
+                idsUsuario.forEach(idUsuario -> cache.evict(new DonoCache(idUsuario)));
+            }
+        }
+    }
+
+    public void recarregar(Collection<Integer> idsUsuario, String... caches) {
+        for (String nome : List.of(caches)) {
+            Cache cache = cacheManager.getCache(nome);
+            if (cache instanceof CacheUsuario cacheUsuario) {
+                idsUsuario.forEach(cacheUsuario::recarregarUsuario);
+            } else if (cache != null) {
+                idsUsuario.forEach(idUsuario -> cache.evict(new DonoCache(idUsuario)));
+            }
+        }
+    }
+
+    private void aposCommit(Collection<Integer> idsUsuario, Consumer<Set<Integer>> acao) {
+        Set<Integer> ids = idsUsuario.stream().filter(Objects::nonNull).collect(Collectors.toSet());
+        if (ids.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            acao.accept(ids);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                acao.accept(ids);
+            }
+        });
+    }
+}
@@ -29,6 +29,8 @@ public class CadastroCompletoService {
     private CidadeRepository cidadeRepository;
     @Autowired
     private PasswordEncoder passwordEncoder;
+    @Autowired
+    private IndicePropriedade indicePropriedade;
 
     @Transactional
     public CadastroCompletoResponseDTO cadastrar(CadastroCompletoDTO dto) {
@@ -53,6 +55,7 @@ public class CadastroCompletoService {
                 .dataCadastro(LocalDateTime.now())
                 .build();
         unidade = unidadeRepository.save(unidade);
+        indicePropriedade.adicionarUnidade(usuario.getIdUsuario(), unidade.getIdUnidade());
 
         // 4 - Buscar cidade
         Cidade cidade = cidadeRepository.findById(dto.idCidade())
@@ -0,0 +1,219 @@
+package br.com.fiap.mais_agua.service;
+
+import br.com.fiap.mais_agua.config.InvalidacaoCache;
+import br.com.fiap.mais_agua.config.TransporteInvalidacao;
+import br.com.fiap.mais_agua.model.Usuario;
+import br.com.fiap.mais_agua.model.UsuarioAlterado;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Autenticação por e-mail e senha (HTTP Basic e /login) com um cache curto das verificações bem-sucedidas.
+ * A consulta do usuário e a comparação BCrypt são feitas pelo {@link DaoAuthenticationProvider} só na primeira
+ * vez; até a entrada expirar, as requisições seguintes com as mesmas credenciais comparam apenas um HMAC.
+ * <p>
+ * O cache guarda, por e-mail, o HMAC de e-mail e senha com uma chave aleatória gerada a cada inicialização
+ * (a senha não fica em memória, nem um hash que sirva fora deste processo) e o usuário sem a senha. Falhas
+ * não são guardadas. Alterações do usuário (troca de senha) descartam a entrada aqui e nas outras réplicas,
+ * inclusive a de uma verificação que ainda estava em andamento.
+ */
+@Service
+public class CredenciaisService implements AuthenticationProvider {
+
+    public static final String CACHE = "credenciais";
+
+    @Autowired
+    private AuthService authService;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private TransporteInvalidacao transporteInvalidacao;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${mais-agua.auth.credenciais-verificadas.maximo-entradas:10000}")
+    private long maximoEntradas;
+
+    @Value("${mais-agua.auth.credenciais-verificadas.expira-apos:5m}")
+    private Duration expiraApos;
+
+    private final String origem = UUID.randomUUID().toString();
+    private SecretKeySpec chave;
+    private DaoAuthenticationProvider verificador;
+    private Cache<String, CredencialVerificada> verificadas;
+
+    // Incrementada a cada remoção de credenciais: uma verificação que começou antes não grava o resultado
+    private final AtomicLong geracao = new AtomicLong();
+
+    private record CredencialVerificada(byte[] hmac, Usuario usuario) {}
+
+    @PostConstruct
+    void iniciar() {
+        byte[] segredo = new byte[32];
+        new SecureRandom().nextBytes(segredo);
+        chave = new SecretKeySpec(segredo, "HmacSHA256");
+
+        verificador = new DaoAuthenticationProvider(passwordEncoder);
+        verificador.setUserDetailsService(authService);
+
+        verificadas = Caffeine.newBuilder()
+                .maximumSize(maximoEntradas)
+                .expireAfterWrite(expiraApos)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, verificadas, CACHE);
+
+        transporteInvalidacao.receber(invalidacao -> {
+            if (!CACHE.equals(invalidacao.cache()) || origem.equals(invalidacao.origem())) {
+                return;
+            }
+            if (invalidacao.tipo() == InvalidacaoCache.Tipo.LIMPAR) {
+                geracao.incrementAndGet();
+                verificadas.invalidateAll();
+            } else if (invalidacao.id() != null) {
+                removerUsuario(invalidacao.id());
+            }
+        });
+    }
+
+    @Override
+    public Authentication authenticate(Authentication authentication) throws AuthenticationException {
+        String email = authentication.getName();
+        Object senha = authentication.getCredentials();
+        if (email == null || !(senha instanceof String)) {
+            return verificador.authenticate(authentication);
+        }
+
+        byte[] hmac = hmac(email, (String) senha);
+        CredencialVerificada verificada = verificadas.getIfPresent(email);
+        if (verificada != null && MessageDigest.isEqual(verificada.hmac(), hmac)) {
+            return autenticado(verificada.usuario(), authentication);
+        }
+
+        // Senha diferente da guardada (ou sem entrada): verificação completa; a falha não altera o cache
+        long geracaoInicial = geracao.get();
+        Authentication autenticado = verificador.authenticate(authentication);
+        if (autenticado.getPrincipal() instanceof Usuario usuario) {
+            Usuario semSenha = copia(usuario);
+            guardar(email, new CredencialVerificada(hmac, semSenha), geracaoInicial);
+            return autenticado(semSenha, authentication);
+        }
+        return autenticado;
+    }
+
+    @Override
+    public boolean supports(Class<?> authentication) {
+        return UsernamePasswordAuthenticationToken.class.isAssignableFrom(authentication);
+    }
+
+    /**
+     * Descarta as credenciais verificadas do usuário depois do commit, nesta e nas outras réplicas. Chamado
+     * a cada alteração do usuário (troca de senha, exclusão).
+     */
+    public void invalidar(Integer idUsuario) {
+        aposCommit(() -> {
+            removerUsuario(idUsuario);
+            transporteInvalidacao.publicar(
+                    new InvalidacaoCache(origem, CACHE, InvalidacaoCache.Tipo.REMOVER_USUARIO, idUsuario));
+        });
+    }
+
+    /**
+     * Descarta as credenciais do usuário alterado pelo JPA (ver {@link UsuarioAlterado}).
+     */
+    @EventListener
+    public void aoAlterarUsuario(UsuarioAlterado evento) {
+        invalidar(evento.idUsuario());
+    }
+
+    /**
+     * Guarda a verificação só se nenhuma remoção aconteceu desde que ela começou: uma troca de senha
+     * confirmada durante a consulta ao banco deixaria a senha anterior no cache. A remoção incrementa a
+     * geração antes de varrer as entradas, então a nova conferência depois do put cobre a remoção que
+     * começar entre a primeira conferência e o put.
+     */
+    private void guardar(String email, CredencialVerificada verificada, long geracaoInicial) {
+        if (geracao.get() != geracaoInicial) {
+            return;
+        }
+        verificadas.put(email, verificada);
+        if (geracao.get() != geracaoInicial) {
+            verificadas.asMap().remove(email, verificada);
+        }
+    }
+
+    private void removerUsuario(Integer idUsuario) {
+        geracao.incrementAndGet();
+        // Poucas entradas e alteração rara: a varredura evita manter um índice por id
+        verificadas.asMap().values().removeIf(verificada -> idUsuario.equals(verificada.usuario().getIdUsuario()));
+    }
+
+    // Uma cópia por requisição: o usuário é mutável e não pode ser compartilhado entre requisições
+    private static Authentication autenticado(Usuario usuario, Authentication pedido) {
+        Usuario principal = copia(usuario);
+        var autenticado = UsernamePasswordAuthenticationToken.authenticated(principal, null, principal.getAuthorities());
+        autenticado.setDetails(pedido.getDetails());
+        return autenticado;
+    }
+
+    private static Usuario copia(Usuario usuario) {
+        return Usuario.builder()
+                .idUsuario(usuario.getIdUsuario())
+                .nome(usuario.getNome())
+                .email(usuario.getEmail())
+                .build();
+    }
+
+    private byte[] hmac(String email, String senha) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(chave);
+            mac.update(email.getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) 0);
+            return mac.doFinal(senha.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void aposCommit(Runnable acao) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            acao.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                acao.run();
+            }
+        });
+    }
+}
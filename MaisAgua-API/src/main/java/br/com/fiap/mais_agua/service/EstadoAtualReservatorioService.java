@@ -0,0 +1,169 @@
+package br.com.fiap.mais_agua.service;
+
+import br.com.fiap.mais_agua.config.CacheUsuario;
+import br.com.fiap.mais_agua.model.DTO.EstadoAtualReservatorioDTO;
+import br.com.fiap.mais_agua.model.EstadoAtualReservatorio;
+import br.com.fiap.mais_agua.model.HistoricoReservatorio;
+import br.com.fiap.mais_agua.model.LeituraDispositivo;
+import br.com.fiap.mais_agua.repository.EstadoAtualReservatorioBatchRepository;
+import br.com.fiap.mais_agua.repository.EstadoAtualReservatorioRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Estado atual dos reservatórios. As gravações de leitura e histórico atualizam a tabela pelo
+ * {@link EstadoAtualReservatorioBatchRepository} na mesma transação; as entradas do cache "estadoAtual" (por
+ * reservatório) e dos caches "dashboard" e "usuarios" (perfil) dos donos afetados são removidas depois do
+ * commit, ou recarregadas em segundo plano quando a gravação vem de um caminho em lote (jobs, write-behind,
+ * journal), para não esvaziar o cache antes do pico de acessos.
+ */
+@Service
+public class EstadoAtualReservatorioService {
+
+    public static final String CACHE = "estadoAtual";
+    public static final String CACHE_DASHBOARD = "dashboard";
+    public static final String CACHE_PERFIL = "usuarios";
+
+    @Autowired
+    private EstadoAtualReservatorioRepository estadoAtualRepository;
+
+    @Autowired
+    private EstadoAtualReservatorioBatchRepository estadoAtualBatchRepository;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private CacheUsuarioService cacheUsuarioService;
+
+    /**
+     * Estado atual do reservatório (último histórico e última leitura) por chave primária, com cache em
+     * memória. O cache é invalidado (ou recarregado) a cada gravação, então o null de um reservatório ainda
+     * sem histórico nem leitura também pode ficar em cache.
+     */
+    @Cacheable(value = CACHE, sync = true)
+    public EstadoAtualReservatorioDTO buscar(Integer idReservatorio) {
+        return carregar(idReservatorio);
+    }
+
+    /**
+     * Estado atual do reservatório lido direto do banco, sem o cache; é a carga das entradas de "estadoAtual".
+     */
+    public EstadoAtualReservatorioDTO carregar(Integer idReservatorio) {
+        return estadoAtualRepository.findById(idReservatorio)
+                .map(this::toDTO)
+                .orElse(null);
+    }
+
+    /**
+     * Atualiza o estado com a leitura mais recente de cada reservatório do lote, na transação atual.
+     */
+    public void atualizarLeituras(List<LeituraDispositivo> leituras) {
+        atualizarLeituras(leituras, false);
+    }
+
+    /**
+     * Como {@link #atualizarLeituras(List)}; com recarregar, os caches afetados são recarregados em segundo
+     * plano depois do commit no lugar de removidos.
+     */
+    public void atualizarLeituras(List<LeituraDispositivo> leituras, boolean recarregar) {
+        Collection<LeituraDispositivo> ultimas = estadoAtualBatchRepository.atualizarLeituras(leituras);
+        if (!ultimas.isEmpty()) {
+            invalidarAposCommit(ultimas.stream().map(LeituraDispositivo::getIdReservatorio).toList(),
+                    ultimas.stream().map(LeituraDispositivo::getIdUsuario).toList(), recarregar);
+        }
+    }
+
+    /**
+     * Atualiza o estado com o histórico mais recente de cada reservatório do lote, na transação atual.
+     */
+    public void atualizarHistoricos(List<HistoricoReservatorio> historicos) {
+        atualizarHistoricos(historicos, false);
+    }
+
+    /**
+     * Como {@link #atualizarHistoricos(List)}; com recarregar, os caches afetados são recarregados em segundo
+     * plano depois do commit no lugar de removidos.
+     */
+    public void atualizarHistoricos(List<HistoricoReservatorio> historicos, boolean recarregar) {
+        Collection<HistoricoReservatorio> ultimos = estadoAtualBatchRepository.atualizarHistoricos(historicos);
+        if (!ultimos.isEmpty()) {
+            invalidarAposCommit(ultimos.stream().map(historico -> historico.getReservatorio().getIdReservatorio()).toList(),
+                    ultimos.stream().map(HistoricoReservatorio::getIdUsuario).toList(), recarregar);
+        }
+    }
+
+    /**
+     * Recalcula a última leitura do estado do reservatório a partir das leituras que restaram, na transação
+     * atual. Chamado quando uma leitura é excluída ou passa para outro reservatório.
+     */
+    public void recalcularLeituras(Integer idReservatorio, Integer idUsuario) {
+        estadoAtualBatchRepository.recalcularLeituras(idReservatorio);
+        invalidarAposCommit(List.of(idReservatorio), Collections.singletonList(idUsuario), false);
+    }
+
+    /**
+     * Recalcula o último histórico do estado do reservatório a partir dos históricos que restaram, na
+     * transação atual. Chamado quando um histórico é excluído ou alterado.
+     */
+    public void recalcularHistoricos(Integer idReservatorio, Integer idUsuario) {
+        estadoAtualBatchRepository.recalcularHistoricos(idReservatorio);
+        invalidarAposCommit(List.of(idReservatorio), Collections.singletonList(idUsuario), false);
+    }
+
+    private void invalidarAposCommit(List<Integer> idsReservatorio, List<Integer> idsUsuario, boolean recarregar) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            invalidar(idsReservatorio, idsUsuario, recarregar);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                invalidar(idsReservatorio, idsUsuario, recarregar);
+            }
+        });
+    }
+
+    private void invalidar(List<Integer> idsReservatorio, List<Integer> idsUsuario, boolean recarregar) {
+        List<Integer> donos = idsUsuario.stream().filter(Objects::nonNull).distinct().toList();
+        Cache estadoAtual = cacheManager.getCache(CACHE);
+        if (!recarregar) {
+            if (estadoAtual != null) {
+                idsReservatorio.forEach(estadoAtual::evict);
+            }
+            cacheUsuarioService.evictar(donos, CACHE_DASHBOARD, CACHE_PERFIL);
+            return;
+        }
+        if (estadoAtual instanceof CacheUsuario cacheUsuario) {
+            idsReservatorio.forEach(cacheUsuario::recarregar);
+        } else if (estadoAtual != null) {
+            idsReservatorio.forEach(estadoAtual::evict);
+        }
+        cacheUsuarioService.recarregar(donos, CACHE_DASHBOARD, CACHE_PERFIL);
+    }
+
+    private EstadoAtualReservatorioDTO toDTO(EstadoAtualReservatorio estado) {
+        return new EstadoAtualReservatorioDTO(
+                estado.getIdReservatorio(),
+                estado.getIdUsuario(),
+                estado.getNivelLitros(),
+                estado.getStatus() != null ? estado.getStatus().getStatus() : null,
+                estado.getDataHoraHistorico(),
+                estado.getIdDispositivo(),
+                estado.getNivelPct(),
+                estado.getPhInt(),
+                estado.getTurbidezNtu(),
+                estado.getDataHoraLeitura()
+        );
+    }
+}
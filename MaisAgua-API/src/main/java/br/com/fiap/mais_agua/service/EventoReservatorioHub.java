@@ -0,0 +1,213 @@
+package br.com.fiap.mais_agua.service;
+
+import br.com.fiap.mais_agua.exception.TooManyRequestsException;
+import br.com.fiap.mais_agua.model.DTO.HistoricoEventoDTO;
+import br.com.fiap.mais_agua.model.DTO.LeituraEventoDTO;
+import br.com.fiap.mais_agua.model.HistoricoReservatorio;
+import br.com.fiap.mais_agua.model.LeituraDispositivo;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Publicação em memória das leituras e históricos gravados para as conexões SSE dos donos dos reservatórios.
+ * As conexões são assíncronas (Servlet async): uma inscrição parada não ocupa thread do Tomcat, só o
+ * SseEmitter registrado aqui. Os eventos são enviados depois do commit por um pool pequeno e limitado; com a
+ * fila cheia o evento é descartado, já que o cliente pode recarregar o estado pelas consultas normais.
+ */
+@Component
+@Slf4j
+public class EventoReservatorioHub {
+
+    public static final String EVENTO_LEITURAS = "leituras";
+    public static final String EVENTO_HISTORICOS = "historicos";
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${mais-agua.eventos.timeout-ms:1800000}")
+    private long timeoutMs;
+
+    @Value("${mais-agua.eventos.max-inscricoes:10000}")
+    private int maxInscricoes;
+
+    @Value("${mais-agua.eventos.max-inscricoes-por-usuario:10}")
+    private int maxInscricoesPorUsuario;
+
+    @Value("${mais-agua.eventos.threads-envio:2}")
+    private int threadsEnvio;
+
+    @Value("${mais-agua.eventos.fila-envio:10000}")
+    private int filaEnvio;
+
+    private final Map<Integer, Set<SseEmitter>> inscricoes = new ConcurrentHashMap<>();
+    private final AtomicInteger totalInscricoes = new AtomicInteger();
+    private ThreadPoolExecutor envio;
+    private Counter descartados;
+
+    @PostConstruct
+    void iniciar() {
+        AtomicInteger sequencia = new AtomicInteger();
+        envio = new ThreadPoolExecutor(threadsEnvio, threadsEnvio, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(filaEnvio), tarefa -> {
+                    Thread thread = new Thread(tarefa, "eventos-envio-" + sequencia.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        meterRegistry.gauge("eventos.inscricoes", totalInscricoes);
+        descartados = meterRegistry.counter("eventos.descartados");
+    }
+
+    @PreDestroy
+    void encerrar() {
+        envio.shutdownNow();
+        inscricoes.values().forEach(emitters -> emitters.forEach(SseEmitter::complete));
+        inscricoes.clear();
+    }
+
+    /**
+     * Abre uma inscrição para os eventos dos reservatórios do usuário.
+     */
+    public SseEmitter inscrever(Integer idUsuario) {
+        if (totalInscricoes.get() >= maxInscricoes) {
+            throw new TooManyRequestsException("Limite de conexões de eventos atingido", 30);
+        }
+
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        AtomicBoolean aceita = new AtomicBoolean();
+        inscricoes.compute(idUsuario, (id, emitters) -> {
+            Set<SseEmitter> doUsuario = emitters != null ? emitters : new CopyOnWriteArraySet<>();
+            if (doUsuario.size() < maxInscricoesPorUsuario) {
+                doUsuario.add(emitter);
+                aceita.set(true);
+            }
+            return doUsuario.isEmpty() ? null : doUsuario;
+        });
+        if (!aceita.get()) {
+            throw new TooManyRequestsException("Limite de conexões de eventos do usuário atingido", 30);
+        }
+        totalInscricoes.incrementAndGet();
+        emitter.onCompletion(() -> remover(idUsuario, emitter));
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(erro -> remover(idUsuario, emitter));
+
+        try {
+            emitter.send(SseEmitter.event().comment("conectado"));
+        } catch (IOException e) {
+            remover(idUsuario, emitter);
+        }
+        log.debug("Inscrição de eventos aberta para o usuário {}", idUsuario);
+        return emitter;
+    }
+
+    /**
+     * Publica as leituras gravadas para os donos inscritos, depois do commit da transação atual.
+     */
+    public void publicarLeituras(List<LeituraDispositivo> leituras) {
+        if (inscricoes.isEmpty()) {
+            return;
+        }
+        publicar(EVENTO_LEITURAS, leituras, LeituraDispositivo::getIdUsuario, leitura -> new LeituraEventoDTO(
+                leitura.getId(), leitura.getDispositivo().getIdDispositivo(), leitura.getIdReservatorio(),
+                leitura.getNivelPct(), leitura.getPhInt(), leitura.getTurbidezNtu(), leitura.getDataHora()));
+    }
+
+    /**
+     * Publica os históricos gravados para os donos inscritos, depois do commit da transação atual.
+     */
+    public void publicarHistoricos(List<HistoricoReservatorio> historicos) {
+        if (inscricoes.isEmpty()) {
+            return;
+        }
+        publicar(EVENTO_HISTORICOS, historicos, HistoricoReservatorio::getIdUsuario, historico -> new HistoricoEventoDTO(
+                historico.getId(), historico.getReservatorio().getIdReservatorio(), historico.getNivelLitros(),
+                historico.getStatus() != null ? historico.getStatus().getId() : null, historico.getDataHora()));
+    }
+
+    // Mantém as conexões vivas através de proxies e detecta clientes que já desconectaram
+    @Scheduled(fixedDelayString = "${mais-agua.eventos.heartbeat-ms:25000}")
+    public void heartbeat() {
+        inscricoes.forEach((idUsuario, emitters) -> emitters.forEach(emitter ->
+                executar(() -> enviar(idUsuario, emitter, SseEmitter.event().comment("ping")))));
+    }
+
+    private <T, D> void publicar(String nome, List<T> registros, Function<T, Integer> dono, Function<T, D> evento) {
+        // Monta os eventos agora (dentro da transação) só para os usuários com inscrição aberta
+        Map<Integer, List<D>> porUsuario = registros.stream()
+                .filter(registro -> dono.apply(registro) != null && inscricoes.containsKey(dono.apply(registro)))
+                .collect(Collectors.groupingBy(dono, Collectors.mapping(evento, Collectors.toList())));
+        if (porUsuario.isEmpty()) {
+            return;
+        }
+
+        Runnable envioEventos = () -> porUsuario.forEach((idUsuario, eventos) -> {
+            Set<SseEmitter> emitters = inscricoes.get(idUsuario);
+            if (emitters != null) {
+                emitters.forEach(emitter -> executar(() ->
+                        enviar(idUsuario, emitter, SseEmitter.event().name(nome).data(eventos))));
+            }
+        });
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            envioEventos.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                envioEventos.run();
+            }
+        });
+    }
+
+    private void executar(Runnable tarefa) {
+        try {
+            envio.execute(tarefa);
+        } catch (RejectedExecutionException e) {
+            descartados.increment();
+        }
+    }
+
+    private void enviar(Integer idUsuario, SseEmitter emitter, SseEmitter.SseEventBuilder evento) {
+        try {
+            emitter.send(evento);
+        } catch (IOException | IllegalStateException e) {
+            // Cliente desconectado: a conexão é descartada e o cliente reconecta quando quiser
+            remover(idUsuario, emitter);
+            emitter.completeWithError(e);
+        }
+    }
+
+    private void remover(Integer idUsuario, SseEmitter emitter) {
+        inscricoes.computeIfPresent(idUsuario, (id, emitters) -> {
+            if (emitters.remove(emitter)) {
+                totalInscricoes.decrementAndGet();
+            }
+            return emitters.isEmpty() ? null : emitters;
+        });
+    }
+}
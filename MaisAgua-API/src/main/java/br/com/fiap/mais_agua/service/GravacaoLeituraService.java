@@ -0,0 +1,48 @@
+package br.com.fiap.mais_agua.service;
+
+import br.com.fiap.mais_agua.model.LeituraDispositivo;
+import br.com.fiap.mais_agua.repository.LeituraDispositivoBatchRepository;
+import br.com.fiap.mais_agua.repository.RollupLeituraBatchRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Gravação em lote das leituras, comum à ingestão síncrona, ao write-behind, ao journal e ao job diário.
+ * Separada do {@link LeituraDispositivoService}, que depende do journal e do write-behind, para que esses
+ * possam gravar sem voltar a ele.
+ */
+@Service
+public class GravacaoLeituraService {
+
+    @Autowired
+    private LeituraDispositivoBatchRepository leituraBatchRepository;
+
+    @Autowired
+    private RollupLeituraBatchRepository rollupBatchRepository;
+
+    @Autowired
+    private EstadoAtualReservatorioService estadoAtualService;
+
+    @Autowired
+    private EventoReservatorioHub eventoHub;
+
+    @Autowired
+    private CacheUsuarioService cacheUsuarioService;
+
+    /**
+     * Insere as leituras em lote e atualiza, na mesma transação, o estado atual dos reservatórios e os
+     * rollups. Deve ser chamado dentro de uma transação. Depois do commit, as leituras são publicadas para as
+     * inscrições de eventos e o cache de leituras dos donos é recarregado em segundo plano (recarga
+     * antecipada), sem deixar as chaves vazias.
+     */
+    public void inserir(List<LeituraDispositivo> leituras) {
+        leituraBatchRepository.inserir(leituras);
+        estadoAtualService.atualizarLeituras(leituras, true);
+        rollupBatchRepository.acumular(leituras);
+        eventoHub.publicarLeituras(leituras);
+        cacheUsuarioService.recarregarAposCommit(leituras.stream().map(LeituraDispositivo::getIdUsuario).toList(),
+                LeituraDispositivoService.CACHE);
+    }
+}
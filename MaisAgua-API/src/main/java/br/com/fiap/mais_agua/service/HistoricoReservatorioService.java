@@ -1,46 +1,219 @@
 package br.com.fiap.mais_agua.service;
 
+import br.com.fiap.mais_agua.controller.HistoricoReservatorioController.HistoricoReservatorioFilters;
+import br.com.fiap.mais_agua.model.DTO.CapacidadeReservatorioDTO;
+import br.com.fiap.mais_agua.model.DTO.HistoricoReservatorioDTO;
+import br.com.fiap.mais_agua.model.DTO.ReservatorioBasicoDTO;
+import br.com.fiap.mais_agua.model.DTO.UnidadeReadDTO;
+import br.com.fiap.mais_agua.model.DTO.UsuarioResponseDTO;
 import br.com.fiap.mais_agua.model.HistoricoReservatorio;
 import br.com.fiap.mais_agua.model.Reservatorio;
 import br.com.fiap.mais_agua.model.StatusReservatorio;
+import br.com.fiap.mais_agua.model.Usuario;
+import br.com.fiap.mais_agua.repository.HistoricoReservatorioBatchRepository;
 import br.com.fiap.mais_agua.repository.HistoricoReservatorioRepository;
 import br.com.fiap.mais_agua.repository.ReservatorioRepository;
 import br.com.fiap.mais_agua.repository.StatusReservatorioRepository;
+import br.com.fiap.mais_agua.specification.HistoricoReservatorioSpecification;
+import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Random;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class HistoricoReservatorioService {
 
+    public static final String CACHE = "historicoReservatorio";
+
     @Autowired
     private ReservatorioRepository reservatorioRepository;
     @Autowired
     private HistoricoReservatorioRepository historicoRepository;
     @Autowired
+    private HistoricoReservatorioBatchRepository historicoBatchRepository;
+    @Autowired
+    private EstadoAtualReservatorioService estadoAtualService;
+    @Autowired
     private StatusReservatorioRepository statusRepository;
+    @Autowired
+    private EventoReservatorioHub eventoHub;
+    @Autowired
+    private CacheUsuarioService cacheUsuarioService;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${mais-agua.job.historico.tamanho-bloco:1000}")
+    private int tamanhoBloco;
+
+    @Value("${mais-agua.job.historico.workers:3}")
+    private int workers;
+
+    @Value("${spring.datasource.hikari.maximum-pool-size:10}")
+    private int tamanhoPool;
+
+    // Tabela de status carregada uma única vez (dado de referência)
+    private volatile Map<String, StatusReservatorio> statusPorNome;
+
+    /**
+     * Grava um histórico criado ou alterado manualmente e atualiza o estado atual do reservatório
+     * na mesma transação. O histórico é publicado para as inscrições de eventos depois do commit.
+     */
+    @Transactional
+    public HistoricoReservatorio salvar(HistoricoReservatorio historico) {
+        HistoricoReservatorio salvo = historicoRepository.save(historico);
+        estadoAtualService.atualizarHistoricos(List.of(salvo));
+        eventoHub.publicarHistoricos(List.of(salvo));
+        return salvo;
+    }
+
+    /**
+     * Grava um histórico alterado e recalcula o estado atual do reservatório atual e do anterior: a data pode
+     * ter recuado e o histórico pode ter mudado de reservatório, casos em que o MERGE não volta o estado.
+     */
+    @Transactional
+    public HistoricoReservatorio atualizar(HistoricoReservatorio historico, Integer idReservatorioAnterior,
+                                           Integer idUsuarioAnterior) {
+        HistoricoReservatorio salvo = salvar(historico);
+        historicoRepository.flush();
+        estadoAtualService.recalcularHistoricos(salvo.getReservatorio().getIdReservatorio(), salvo.getIdUsuario());
+        if (!idReservatorioAnterior.equals(salvo.getReservatorio().getIdReservatorio())) {
+            estadoAtualService.recalcularHistoricos(idReservatorioAnterior, idUsuarioAnterior);
+        }
+        return salvo;
+    }
+
+    /**
+     * Exclui um histórico e recalcula o estado atual do seu reservatório na mesma transação.
+     */
+    @Transactional
+    public void excluir(HistoricoReservatorio historico) {
+        historicoRepository.delete(historico);
+        historicoRepository.flush();
+        estadoAtualService.recalcularHistoricos(historico.getReservatorio().getIdReservatorio(), historico.getIdUsuario());
+    }
+
+    /**
+     * Página de históricos do usuário já convertida para a resposta. A posse do reservatório filtrado é
+     * verificada pelo chamador; a consulta já se limita aos históricos do usuário.
+     */
+    public Page<HistoricoReservatorioDTO> listar(Usuario usuario, HistoricoReservatorioFilters filters, Pageable pageable) {
+        return historicoRepository.findAll(HistoricoReservatorioSpecification.withFilters(filters, usuario), pageable)
+                .map(this::toDTO);
+    }
 
-    private final Random random = new Random();
+    /**
+     * Converte o histórico para a resposta da API. Percorre reservatório, unidade, dono e status, que as
+     * consultas da listagem já trazem pelo entity graph.
+     */
+    public HistoricoReservatorioDTO toDTO(HistoricoReservatorio entity) {
+        var unidade = entity.getReservatorio().getUnidade();
+        var usuario = unidade.getUsuario();
 
-    // Executa todo dia às 6h da manhã
-    @CacheEvict(value = "historicoReservatorio", allEntries = true)
+        return new HistoricoReservatorioDTO(
+                entity.getId(),
+                entity.getNivelLitros(),
+                entity.getDataHora() != null ? entity.getDataHora().toString() : null,
+                new ReservatorioBasicoDTO(
+                        entity.getReservatorio().getIdReservatorio(),
+                        entity.getReservatorio().getNome(),
+                        entity.getReservatorio().getCapacidadeTotalLitros()
+                ),
+                UnidadeReadDTO.builder()
+                        .idUnidade(unidade.getIdUnidade())
+                        .nomeUnidade(unidade.getNome())
+                        .capacidadeTotalLitros(unidade.getCapacidadeTotalLitros())
+                        .dataCadastro(unidade.getDataCadastro().toString())
+                        .usuario(new UsuarioResponseDTO(
+                                usuario.getIdUsuario(),
+                                usuario.getNome(),
+                                usuario.getEmail()
+                        ))
+                        .build(),
+                entity.getStatus()
+        );
+    }
+
+    // Executa todo dia às 6h da manhã (o cache de cada dono é recarregado no commit do seu bloco)
     @Scheduled(cron = "0 0 6 * * *", zone = "America/Sao_Paulo")
     public void gerarHistoricoDiario() {
         log.info("Iniciando geração de histórico dos reservatórios...");
+        long inicio = System.nanoTime();
 
-        List<Reservatorio> reservatorios = reservatorioRepository.findAll();
+        // Deixa ao menos uma conexão do pool livre para as requisições da API
+        int paralelismo = Math.max(1, Math.min(workers, tamanhoPool - 1));
+        ExecutorService executor = Executors.newFixedThreadPool(paralelismo);
+        Semaphore vagas = new Semaphore(paralelismo);
+        AtomicInteger gerados = new AtomicInteger();
+        AtomicInteger blocosComFalha = new AtomicInteger();
+        int ultimoIdReservatorio = 0;
 
-        for (Reservatorio reservatorio : reservatorios) {
-            int capacidadeMaxima = reservatorio.getCapacidadeTotalLitros();
+        try {
+            while (true) {
+                List<CapacidadeReservatorioDTO> bloco = reservatorioRepository
+                        .findCapacidades(ultimoIdReservatorio, Limit.of(tamanhoBloco));
+                if (bloco.isEmpty()) {
+                    break;
+                }
+                ultimoIdReservatorio = bloco.get(bloco.size() - 1).idReservatorio();
+
+                vagas.acquire();
+                executor.execute(() -> {
+                    try {
+                        gerados.addAndGet(gerarBloco(bloco));
+                    } catch (RuntimeException e) {
+                        blocosComFalha.incrementAndGet();
+                        log.error("Falha ao gerar histórico dos reservatórios {} a {}: {}",
+                                bloco.get(0).idReservatorio(), bloco.get(bloco.size() - 1).idReservatorio(), e.getMessage());
+                    } finally {
+                        vagas.release();
+                    }
+                });
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Geração de históricos interrompida");
+        } finally {
+            executor.shutdown();
+            aguardar(executor);
+        }
+
+        double segundos = (System.nanoTime() - inicio) / 1_000_000_000.0;
+        log.info("Geração de históricos concluída: {} históricos em {} s ({} históricos/s), {} blocos com falha, {} workers",
+                gerados.get(), String.format("%.2f", segundos), String.format("%.0f", segundos > 0 ? gerados.get() / segundos : gerados.get()),
+                blocosComFalha.get(), paralelismo);
+    }
+
+    /**
+     * Gera e grava o histórico de um bloco de reservatórios em uma transação própria.
+     */
+    private int gerarBloco(List<CapacidadeReservatorioDTO> bloco) {
+        LocalDateTime agora = LocalDateTime.now();
+        List<HistoricoReservatorio> historicos = new ArrayList<>(bloco.size());
+
+        for (CapacidadeReservatorioDTO reservatorio : bloco) {
+            int capacidadeMaxima = reservatorio.capacidadeTotalLitros();
 
             // Gerar nível aleatório entre 5% e 100% da capacidade
             int nivelLitros = gerarNivelAleatorio(capacidadeMaxima);
@@ -49,23 +222,47 @@ public class HistoricoReservatorioService {
             StatusReservatorio status = definirStatus(nivelLitros, capacidadeMaxima);
 
             HistoricoReservatorio historico = new HistoricoReservatorio();
-            historico.setReservatorio(reservatorio);
+            historico.setReservatorio(Reservatorio.builder().idReservatorio(reservatorio.idReservatorio()).build());
             historico.setNivelLitros(nivelLitros);
-            historico.setDataHora(LocalDateTime.now());
+            historico.setDataHora(agora);
             historico.setStatus(status);
+            historico.setIdUsuario(reservatorio.idUsuario());
+            historicos.add(historico);
 
-            historicoRepository.save(historico);
-
-            log.info("Histórico gerado para reservatório {}: {} litros, status {}",
-                    reservatorio.getNome(), nivelLitros, status.getStatus());
+            log.debug("Histórico gerado para reservatório {}: {} litros, status {}",
+                    reservatorio.idReservatorio(), nivelLitros, status.getStatus());
         }
 
-        log.info("Geração de históricos concluída.");
+        transactionTemplate.executeWithoutResult(s -> inserirLote(historicos));
+        return historicos.size();
+    }
+
+    /**
+     * Insere os históricos em lote e atualiza o estado atual dos reservatórios na mesma transação. Depois do
+     * commit, os históricos são publicados para as inscrições de eventos e o cache de históricos dos donos é
+     * recarregado em segundo plano (recarga antecipada), sem deixar as chaves vazias.
+     */
+    private void inserirLote(List<HistoricoReservatorio> historicos) {
+        historicoBatchRepository.inserir(historicos);
+        estadoAtualService.atualizarHistoricos(historicos, true);
+        eventoHub.publicarHistoricos(historicos);
+        cacheUsuarioService.recarregarAposCommit(historicos.stream().map(HistoricoReservatorio::getIdUsuario).toList(),
+                CACHE);
+    }
+
+    private void aguardar(ExecutorService executor) {
+        try {
+            if (!executor.awaitTermination(1, TimeUnit.HOURS)) {
+                log.warn("Geração de históricos não terminou no tempo esperado");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 
     private int gerarNivelAleatorio(int capacidadeMaxima) {
         // Gera um valor aleatório entre 5% e 100% da capacidade
-        double percentual = 0.05 + (0.95 * random.nextDouble());
+        double percentual = 0.05 + (0.95 * ThreadLocalRandom.current().nextDouble());
         return Math.max(1, (int) (capacidadeMaxima * percentual));
     }
 
@@ -85,7 +282,18 @@ public class HistoricoReservatorioService {
             nomeStatus = "Esvaziado";
         }
 
-        return statusRepository.findByStatus(nomeStatus)
-                .orElseThrow(() -> new RuntimeException("Status não encontrado: " + nomeStatus));
+        StatusReservatorio status = getStatusPorNome().get(nomeStatus);
+        if (status == null) {
+            throw new RuntimeException("Status não encontrado: " + nomeStatus);
+        }
+        return status;
+    }
+
+    private Map<String, StatusReservatorio> getStatusPorNome() {
+        if (statusPorNome == null) {
+            statusPorNome = statusRepository.findAll().stream()
+                    .collect(Collectors.toUnmodifiableMap(StatusReservatorio::getStatus, Function.identity()));
+        }
+        return statusPorNome;
     }
 }
@@ -0,0 +1,207 @@
+package br.com.fiap.mais_agua.service;
+
+import br.com.fiap.mais_agua.config.InvalidacaoCache;
+import br.com.fiap.mais_agua.config.TransporteInvalidacao;
+import br.com.fiap.mais_agua.model.Usuario;
+import br.com.fiap.mais_agua.repository.ReservatorioDispositivoRepository;
+import br.com.fiap.mais_agua.repository.ReservatorioRepository;
+import br.com.fiap.mais_agua.repository.UnidadeRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.UUID;
+import java.util.function.UnaryOperator;
+
+/**
+ * Índice em memória de propriedade: para cada usuário, os ids das suas unidades, reservatórios e dispositivos
+ * (vinculados aos seus reservatórios), em arrays de int ordenados. As checagens de autorização dos controllers
+ * viram uma busca no índice, sem percorrer unidade e usuário de cada entidade.
+ * <p>
+ * O índice de um usuário é carregado na primeira checagem (três consultas de ids) e fica em um cache limitado.
+ * Depois do commit, criações são somadas ao índice carregado; exclusões e mudanças de vínculo descartam o
+ * índice do usuário, que é recarregado na próxima checagem. As outras réplicas descartam o índice do usuário
+ * pelo {@link TransporteInvalidacao}.
+ */
+@Component
+public class IndicePropriedade {
+
+    public static final String CACHE = "propriedades";
+
+    @Autowired
+    private UnidadeRepository unidadeRepository;
+
+    @Autowired
+    private ReservatorioRepository reservatorioRepository;
+
+    @Autowired
+    private ReservatorioDispositivoRepository reservatorioDispositivoRepository;
+
+    @Autowired
+    private TransporteInvalidacao transporteInvalidacao;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${mais-agua.propriedade.maximo-usuarios:50000}")
+    private long maximoUsuarios;
+
+    @Value("${mais-agua.propriedade.expira-apos-acesso:30m}")
+    private Duration expiraAposAcesso;
+
+    private final String origem = UUID.randomUUID().toString();
+    private Cache<Integer, Propriedades> porUsuario;
+
+    /**
+     * Ids do usuário; cada alteração cria uma cópia, então as leituras não precisam de lock.
+     */
+    private record Propriedades(int[] unidades, int[] reservatorios, int[] dispositivos) {
+
+        Propriedades comUnidade(int id) {
+            return new Propriedades(com(unidades, id), reservatorios, dispositivos);
+        }
+
+        Propriedades comReservatorio(int id) {
+            return new Propriedades(unidades, com(reservatorios, id), dispositivos);
+        }
+
+        Propriedades comDispositivo(int id) {
+            return new Propriedades(unidades, reservatorios, com(dispositivos, id));
+        }
+
+        private static boolean contem(int[] ids, Integer id) {
+            return id != null && Arrays.binarySearch(ids, id) >= 0;
+        }
+
+        private static int[] com(int[] ids, int id) {
+            int posicao = Arrays.binarySearch(ids, id);
+            if (posicao >= 0) {
+                return ids;
+            }
+            int insercao = -posicao - 1;
+            int[] novos = new int[ids.length + 1];
+            System.arraycopy(ids, 0, novos, 0, insercao);
+            novos[insercao] = id;
+            System.arraycopy(ids, insercao, novos, insercao + 1, ids.length - insercao);
+            return novos;
+        }
+
+        private static int[] ordenados(Collection<Integer> ids) {
+            return ids.stream().mapToInt(Integer::intValue).sorted().distinct().toArray();
+        }
+    }
+
+    @PostConstruct
+    void iniciar() {
+        porUsuario = Caffeine.newBuilder()
+                .maximumSize(maximoUsuarios)
+                .expireAfterAccess(expiraAposAcesso)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, porUsuario, CACHE);
+
+        transporteInvalidacao.receber(invalidacao -> {
+            if (!CACHE.equals(invalidacao.cache()) || origem.equals(invalidacao.origem())) {
+                return;
+            }
+            if (invalidacao.tipo() == InvalidacaoCache.Tipo.LIMPAR) {
+                porUsuario.invalidateAll();
+            } else if (invalidacao.id() != null) {
+                porUsuario.invalidate(invalidacao.id());
+            }
+        });
+    }
+
+    public boolean possuiUnidade(Usuario usuario, Integer idUnidade) {
+        return Propriedades.contem(de(usuario).unidades(), idUnidade);
+    }
+
+    public boolean possuiReservatorio(Usuario usuario, Integer idReservatorio) {
+        return Propriedades.contem(de(usuario).reservatorios(), idReservatorio);
+    }
+
+    public boolean possuiDispositivo(Usuario usuario, Integer idDispositivo) {
+        return Propriedades.contem(de(usuario).dispositivos(), idDispositivo);
+    }
+
+    /**
+     * Soma a unidade criada ao índice do dono depois do commit.
+     */
+    public void adicionarUnidade(Integer idUsuario, Integer idUnidade) {
+        alterarAposCommit(idUsuario, propriedades -> propriedades.comUnidade(idUnidade));
+    }
+
+    /**
+     * Soma o reservatório criado e o dispositivo vinculado a ele ao índice do dono depois do commit.
+     */
+    public void adicionarReservatorio(Integer idUsuario, Integer idReservatorio, Integer idDispositivo) {
+        alterarAposCommit(idUsuario, propriedades -> {
+            Propriedades novas = propriedades.comReservatorio(idReservatorio);
+            return idDispositivo != null ? novas.comDispositivo(idDispositivo) : novas;
+        });
+    }
+
+    /**
+     * Soma o dispositivo vinculado a um reservatório do dono depois do commit.
+     */
+    public void adicionarDispositivo(Integer idUsuario, Integer idDispositivo) {
+        alterarAposCommit(idUsuario, propriedades -> propriedades.comDispositivo(idDispositivo));
+    }
+
+    /**
+     * Descarta o índice do usuário depois do commit (exclusões e mudanças de vínculo): um dispositivo pode
+     * continuar do usuário por outro vínculo, então o índice é recarregado do banco na próxima checagem.
+     */
+    public void invalidar(Integer idUsuario) {
+        aposCommit(() -> {
+            porUsuario.invalidate(idUsuario);
+            difundir(idUsuario);
+        });
+    }
+
+    private Propriedades de(Usuario usuario) {
+        return porUsuario.get(usuario.getIdUsuario(), this::carregar);
+    }
+
+    private Propriedades carregar(Integer idUsuario) {
+        return new Propriedades(
+                Propriedades.ordenados(unidadeRepository.findIdsByUsuario(idUsuario)),
+                Propriedades.ordenados(reservatorioRepository.findIdsByUsuario(idUsuario)),
+                Propriedades.ordenados(reservatorioDispositivoRepository.findIdsDispositivoByUsuario(idUsuario)));
+    }
+
+    private void alterarAposCommit(Integer idUsuario, UnaryOperator<Propriedades> alteracao) {
+        aposCommit(() -> {
+            // Só altera o índice já carregado; sem índice, a próxima checagem lê o estado já gravado
+            porUsuario.asMap().computeIfPresent(idUsuario, (id, propriedades) -> alteracao.apply(propriedades));
+            difundir(idUsuario);
+        });
+    }
+
+    private void difundir(Integer idUsuario) {
+        transporteInvalidacao.publicar(new InvalidacaoCache(origem, CACHE, InvalidacaoCache.Tipo.REMOVER_USUARIO, idUsuario));
+    }
+
+    private void aposCommit(Runnable acao) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            acao.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                acao.run();
+            }
+        });
+    }
+}
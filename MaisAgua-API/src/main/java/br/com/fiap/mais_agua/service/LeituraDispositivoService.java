@@ -1,27 +1,48 @@
 package br.com.fiap.mais_agua.service;
 
+import br.com.fiap.mais_agua.controller.LeituraDispositivoController.LeituraDispositivoFilter;
+import br.com.fiap.mais_agua.model.DTO.LeituraLoteResponseDTO;
+import br.com.fiap.mais_agua.model.DTO.NivelDispositivoDTO;
 import br.com.fiap.mais_agua.model.Dispositivo;
 import br.com.fiap.mais_agua.model.LeituraDispositivo;
+import br.com.fiap.mais_agua.model.Usuario;
 import br.com.fiap.mais_agua.repository.DispositivoRepository;
-import br.com.fiap.mais_agua.repository.HistoricoReservatorioRepository;
+import br.com.fiap.mais_agua.repository.LeituraDispositivoBatchRepository;
 import br.com.fiap.mais_agua.repository.LeituraDispositivoRepository;
 import br.com.fiap.mais_agua.repository.ReservatorioDispositivoRepository;
+import br.com.fiap.mais_agua.repository.RollupLeituraBatchRepository;
+import br.com.fiap.mais_agua.specification.LeituraDispositivoSpecification;
+import jakarta.transaction.Transactional;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Service
 @Slf4j
 public class LeituraDispositivoService {
 
+    public static final String CACHE = "leituraDispositivo";
+
     @Autowired
     private LeituraDispositivoRepository leituraRepository;
 
@@ -32,66 +53,256 @@ public class LeituraDispositivoService {
     private ReservatorioDispositivoRepository reservatorioDispositivoRepository;
 
     @Autowired
-    private HistoricoReservatorioRepository historicoRepository;
+    private LeituraDispositivoBatchRepository leituraBatchRepository;
+
+    @Autowired
+    private EstadoAtualReservatorioService estadoAtualService;
+
+    @Autowired
+    private GravacaoLeituraService gravacaoLeituraService;
+
+    @Autowired
+    private RollupLeituraBatchRepository rollupBatchRepository;
+
+    @Autowired
+    private EventoReservatorioHub eventoHub;
+
+    @Autowired
+    private Validator validator;
+
+    @Autowired
+    private LimitadorTaxa limitadorTaxa;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${mais-agua.job.leitura.tamanho-bloco:1000}")
+    private int tamanhoBlocoGeracao;
+
+    @Autowired(required = false)
+    private LeituraWriteBehindBuffer writeBehindBuffer;
+
+    @Autowired(required = false)
+    private LeituraJournal journal;
 
     Random random = new Random();
 
     /**
-     * Gera leituras dos dispositivos de acordo com o último nível do histórico do reservatório
+     * Página de leituras do usuário, com filtro opcional de reservatório. A posse do reservatório filtrado é
+     * verificada pelo chamador; a consulta já se limita às leituras do usuário.
      */
-    @CacheEvict(value = "leituraDispositivo", allEntries = true)
-    @Scheduled(cron = "0 10 6 * * *", zone = "America/Sao_Paulo") // Executa todos os dias às 6:10
-    public void gerarLeitura() {
-        System.out.println("Iniciando geração de leitura...");
+    public Page<LeituraDispositivo> listar(Usuario usuario, LeituraDispositivoFilter filters, Pageable pageable) {
+        return leituraRepository.findAll(LeituraDispositivoSpecification.withFilters(filters, usuario), pageable);
+    }
 
-        List<Dispositivo> dispositivos = dispositivoRepository.findAll();
+    /**
+     * Registra um lote de leituras de um ou mais dispositivos. A posse de cada dispositivo distinto é
+     * verificada uma única vez e as leituras válidas são gravadas com JDBC batch em uma única transação.
+     * Leituras inválidas ou de dispositivos de outro usuário são rejeitadas individualmente. Cada leitura aceita
+     * consome um token do balde do seu dispositivo, tudo ou nada: com algum balde sem tokens suficientes o lote
+     * recebe 429 e nenhum balde é consumido. Os baldes de dispositivos de outros usuários não são tocados.
+     * Com o journal ou o write-behind habilitado, as leituras aceitas são agendadas (status 202) e gravadas depois.
+     */
+    @Transactional
+    public LeituraLoteResponseDTO registrarLote(List<LeituraDispositivo> leituras, Usuario usuario) {
+        Set<Integer> idsDispositivo = leituras.stream()
+                .map(this::getIdDispositivo)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
 
-        for (Dispositivo dispositivo : dispositivos) {
-            var reservatorioOpt = reservatorioDispositivoRepository.findReservatorioByDispositivo(dispositivo.getIdDispositivo());
+        Set<Integer> existentes = idsDispositivo.isEmpty() ? Set.of() : dispositivoRepository.findIdsExistentes(idsDispositivo);
+        Set<Integer> doUsuario = existentes.isEmpty() ? Set.of()
+                : reservatorioDispositivoRepository.findIdsDispositivoDoUsuario(existentes, usuario.getIdUsuario());
 
-            if (reservatorioOpt.isEmpty()) {
-                System.out.println("Dispositivo " + dispositivo.getIdDispositivo() + " não tem reservatório. Pulando...");
-                continue;
+        List<LeituraDispositivo> aceitas = new ArrayList<>();
+        List<LeituraLoteResponseDTO.Item> itens = new ArrayList<>(leituras.size());
+        boolean assincrono = journal != null || writeBehindBuffer != null;
+
+        for (int i = 0; i < leituras.size(); i++) {
+            LeituraDispositivo leitura = leituras.get(i);
+            Integer idDispositivo = getIdDispositivo(leitura);
+
+            String erro = validar(leitura);
+            if (erro != null) {
+                itens.add(new LeituraLoteResponseDTO.Item(i, idDispositivo, 400, erro));
+            } else if (!existentes.contains(idDispositivo)) {
+                itens.add(new LeituraLoteResponseDTO.Item(i, idDispositivo, 404, "Dispositivo não encontrado"));
+            } else if (!doUsuario.contains(idDispositivo)) {
+                itens.add(new LeituraLoteResponseDTO.Item(i, idDispositivo, 403, "Você não tem acesso a esse dispositivo"));
+            } else {
+                if (leitura.getDataHora() == null) {
+                    leitura.setDataHora(LocalDateTime.now());
+                }
+                aceitas.add(leitura);
+                itens.add(assincrono
+                        ? new LeituraLoteResponseDTO.Item(i, idDispositivo, 202, "Leitura aceita para gravação")
+                        : new LeituraLoteResponseDTO.Item(i, idDispositivo, 201, "Leitura registrada"));
             }
+        }
+
+        // Uma leitura aceita, um token do balde do dispositivo: tudo ou nada, antes de gravar
+        Map<Integer, Integer> leiturasPorDispositivo = new LinkedHashMap<>();
+        aceitas.forEach(leitura -> leiturasPorDispositivo.merge(getIdDispositivo(leitura), 1, Integer::sum));
+        limitadorTaxa.consumirDispositivos(leiturasPorDispositivo);
+
+        if (!aceitas.isEmpty() && !agendar(aceitas)) {
+            gravacaoLeituraService.inserir(aceitas);
+        }
+
+        log.info("Lote de leituras processado: {} aceitas, {} rejeitadas", aceitas.size(), leituras.size() - aceitas.size());
+        return new LeituraLoteResponseDTO(leituras.size(), aceitas.size(), leituras.size() - aceitas.size(), itens);
+    }
+
+    /**
+     * Grava uma leitura já validada: anexa ao journal ou enfileira no write-behind, se habilitados,
+     * ou salva na hora. Retorna true quando a gravação foi apenas agendada.
+     */
+    @Transactional
+    public boolean registrar(LeituraDispositivo leitura) {
+        if (agendar(List.of(leitura))) {
+            return true;
+        }
+        salvar(leitura);
+        return false;
+    }
 
-            var reservatorio = reservatorioOpt.get();
+    /**
+     * Atualiza uma leitura existente, recalculando o dono (o dispositivo pode ter mudado), o estado atual
+     * do reservatório atual e do anterior e os buckets de rollup do dispositivo anterior e do atual.
+     */
+    @Transactional
+    public LeituraDispositivo atualizar(LeituraDispositivo leitura, Integer idDispositivoAnterior) {
+        Integer idReservatorioAnterior = leitura.getIdReservatorio();
+        Integer idUsuarioAnterior = leitura.getIdUsuario();
+        leitura.setIdReservatorio(null);
+        leitura.setIdUsuario(null);
+        leituraBatchRepository.preencherDono(List.of(leitura));
+        LeituraDispositivo salva = leituraRepository.saveAndFlush(leitura);
+        estadoAtualService.atualizarLeituras(List.of(salva));
+        // A leitura saiu do reservatório: se era a mais recente dele, o estado volta para a anterior
+        if (idReservatorioAnterior != null && !idReservatorioAnterior.equals(salva.getIdReservatorio())) {
+            estadoAtualService.recalcularLeituras(idReservatorioAnterior, idUsuarioAnterior);
+        }
+
+        Integer idDispositivo = salva.getDispositivo().getIdDispositivo();
+        rollupBatchRepository.recalcular(idDispositivo, salva.getDataHora());
+        if (!idDispositivo.equals(idDispositivoAnterior)) {
+            rollupBatchRepository.recalcular(idDispositivoAnterior, salva.getDataHora());
+        }
+        return salva;
+    }
+
+    /**
+     * Exclui uma leitura e recalcula o estado atual do seu reservatório e os buckets de rollup que a continham.
+     */
+    @Transactional
+    public void excluir(LeituraDispositivo leitura) {
+        leituraRepository.delete(leitura);
+        leituraRepository.flush();
+        if (leitura.getIdReservatorio() != null) {
+            estadoAtualService.recalcularLeituras(leitura.getIdReservatorio(), leitura.getIdUsuario());
+        }
+        rollupBatchRepository.recalcular(leitura.getDispositivo().getIdDispositivo(), leitura.getDataHora());
+    }
+
+    private LeituraDispositivo salvar(LeituraDispositivo leitura) {
+        leituraBatchRepository.preencherDono(List.of(leitura));
+        LeituraDispositivo salva = leituraRepository.save(leitura);
+        estadoAtualService.atualizarLeituras(List.of(salva));
+        rollupBatchRepository.acumular(List.of(salva));
+        eventoHub.publicarLeituras(List.of(salva));
+        return salva;
+    }
+
+    private boolean agendar(List<LeituraDispositivo> leituras) {
+        if (journal != null) {
+            journal.anexar(leituras);
+            return true;
+        }
+        if (writeBehindBuffer != null) {
+            writeBehindBuffer.enfileirar(leituras);
+            return true;
+        }
+        return false;
+    }
+
+    private Integer getIdDispositivo(LeituraDispositivo leitura) {
+        return leitura != null && leitura.getDispositivo() != null ? leitura.getDispositivo().getIdDispositivo() : null;
+    }
 
-            var historicoOpt = historicoRepository
-                    .findTopByReservatorioIdReservatorioOrderByDataHoraDesc(reservatorio.getIdReservatorio());
+    private String validar(LeituraDispositivo leitura) {
+        if (leitura == null) {
+            return "Leitura vazia";
+        }
+        if (getIdDispositivo(leitura) == null) {
+            return "dispositivo: campo obrigatório";
+        }
+        Set<ConstraintViolation<LeituraDispositivo>> violacoes = validator.validate(leitura);
+        if (violacoes.isEmpty()) {
+            return null;
+        }
+        return violacoes.stream()
+                .map(v -> v.getPropertyPath() + ": " + v.getMessage())
+                .sorted()
+                .collect(Collectors.joining("; "));
+    }
+
+    /**
+     * Gera leituras dos dispositivos de acordo com o último nível do histórico do reservatório.
+     * Os dispositivos são lidos em blocos (dispositivo, reservatório e último histórico em uma única
+     * consulta) e cada bloco é gravado em lote na sua própria transação, que recarrega o cache de leituras
+     * dos donos do bloco.
+     */
+    @Scheduled(cron = "0 10 6 * * *", zone = "America/Sao_Paulo") // Executa todos os dias às 6:10
+    public void gerarLeitura() {
+        log.info("Iniciando geração de leituras...");
+        long inicio = System.nanoTime();
+        int total = 0;
+        int ultimoIdDispositivo = 0;
 
-            if (historicoOpt.isEmpty()) {
-                System.out.println("Reservatório " + reservatorio.getIdReservatorio() + " sem histórico. Pulando...");
-                continue;
+        while (true) {
+            List<NivelDispositivoDTO> niveis = reservatorioDispositivoRepository
+                    .findNivelAtualPorDispositivo(ultimoIdDispositivo, Limit.of(tamanhoBlocoGeracao));
+            if (niveis.isEmpty()) {
+                break;
             }
+            ultimoIdDispositivo = niveis.get(niveis.size() - 1).idDispositivo();
+
+            List<LeituraDispositivo> leituras = gerarLeituras(niveis);
+            transactionTemplate.executeWithoutResult(status -> gravacaoLeituraService.inserir(leituras));
+            total += leituras.size();
+        }
+
+        double segundos = (System.nanoTime() - inicio) / 1_000_000_000.0;
+        log.info("Finalizou geração de leituras: {} leituras em {} s ({} leituras/s)",
+                total, String.format("%.2f", segundos), String.format("%.0f", segundos > 0 ? total / segundos : total));
+    }
 
-            var historico = historicoOpt.get();
+    private List<LeituraDispositivo> gerarLeituras(List<NivelDispositivoDTO> niveis) {
+        List<LeituraDispositivo> leituras = new ArrayList<>(niveis.size());
+        LocalDateTime agora = LocalDateTime.now();
 
+        // Uma linha por dispositivo: a consulta já traz só o vínculo mais recente
+        for (NivelDispositivoDTO nivel : niveis) {
             // Cálculo do nível em %
-            int capacidade = reservatorio.getCapacidadeTotalLitros();
-            int nivelLitros = historico.getNivelLitros();
-            int nivelPct = capacidade > 0 ? (int) ((nivelLitros * 100.0) / capacidade) : 0;
+            int capacidade = nivel.capacidadeTotalLitros();
+            int nivelPct = capacidade > 0 ? (int) ((nivel.nivelLitros() * 100.0) / capacidade) : 0;
 
             // Gerar valores aleatórios
             int turbidez = random.nextInt(101); // 0 a 100
             double ph = 5 + (9 * random.nextDouble()); // entre 5 e 14
 
-            // Criar a leitura
             var leitura = new LeituraDispositivo();
-            leitura.setDispositivo(dispositivo);
-            leitura.setDataHora(LocalDateTime.now());
+            leitura.setDispositivo(Dispositivo.builder().idDispositivo(nivel.idDispositivo()).build());
+            leitura.setIdReservatorio(nivel.idReservatorio());
+            leitura.setIdUsuario(nivel.idUsuario());
+            leitura.setDataHora(agora);
             leitura.setNivelPct(nivelPct);
             leitura.setTurbidezNtu(turbidez);
             leitura.setPhInt(BigDecimal.valueOf(ph).setScale(2, RoundingMode.HALF_UP));
-
-            // Salvar no banco
-            leituraRepository.save(leitura);
-
-            System.out.println("Leitura salva -> Dispositivo " + dispositivo.getIdDispositivo() +
-                    " | Nível: " + nivelPct + "%" +
-                    " | Turbidez: " + turbidez +
-                    " | pH: " + leitura.getPhInt());
+            leituras.add(leitura);
         }
-
-        System.out.println("Finalizou geração de leituras.");
+        return leituras;
     }
+
 }
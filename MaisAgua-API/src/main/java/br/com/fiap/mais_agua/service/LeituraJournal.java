@@ -0,0 +1,508 @@
+package br.com.fiap.mais_agua.service;
+
+import br.com.fiap.mais_agua.exception.TooManyRequestsException;
+import br.com.fiap.mais_agua.model.Dispositivo;
+import br.com.fiap.mais_agua.model.LeituraDispositivo;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.ConstraintViolationException;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.exception.DataException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Journal local, append-only e mapeado em memória, para as leituras recebidas. A requisição é
+ * confirmada assim que a leitura é escrita no segmento atual; uma thread de replay grava o journal no
+ * banco em lotes e registra um checkpoint a cada lote confirmado. Na inicialização o último segmento
+ * é varrido e o ponto de escrita é reposicionado após o último registro íntegro (CRC válido).
+ *
+ * <p>Formato de cada registro (tamanho fixo): tamanho do payload, payload e CRC32 do payload.
+ * O replay é "pelo menos uma vez": uma queda entre o commit no banco e a gravação do checkpoint
+ * pode reenviar o último lote.</p>
+ *
+ * <p>Nenhuma leitura sai do journal sem estar no banco ou na quarentena. Falhas de conexão, throttling e
+ * demais erros transitórios mantêm o checkpoint no lugar e o lote é tentado de novo, com espera crescente,
+ * pelo tempo que o banco levar para voltar. Só quando o banco rejeita os dados (constraint ou valor
+ * inválido) o lote é gravado item a item, e os registros recusados vão para o arquivo de quarentena
+ * ({@value #ARQUIVO_QUARENTENA}, uma linha CSV por leitura com o erro) antes de o checkpoint avançar.</p>
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "mais-agua.leitura.journal.enabled", havingValue = "true")
+public class LeituraJournal {
+
+    // idDispositivo, nivelPct, turbidezNtu, pH em centésimos, epochSecond (long) e nano
+    private static final int TAMANHO_PAYLOAD = 4 + 4 + 4 + 4 + 8 + 4;
+    private static final int TAMANHO_REGISTRO = 4 + TAMANHO_PAYLOAD + 4;
+    private static final String EXTENSAO_SEGMENTO = ".journal";
+    private static final String ARQUIVO_CHECKPOINT = "checkpoint";
+    private static final String ARQUIVO_QUARENTENA = "quarentena.csv";
+    private static final long ESPERA_MAXIMA_MS = 30_000;
+
+    private record Posicao(long segmento, int offset) {}
+
+    private record Lote(List<LeituraDispositivo> leituras, Posicao fim) {}
+
+    @Autowired
+    private GravacaoLeituraService gravacaoLeituraService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${mais-agua.leitura.journal.diretorio:journal}")
+    private Path diretorio;
+
+    @Value("${mais-agua.leitura.journal.tamanho-segmento-mb:64}")
+    private int tamanhoSegmentoMb;
+
+    @Value("${mais-agua.leitura.journal.max-segmentos:32}")
+    private int maxSegmentos;
+
+    @Value("${mais-agua.leitura.journal.tamanho-lote:1000}")
+    private int tamanhoLote;
+
+    @Value("${mais-agua.leitura.journal.intervalo-ms:500}")
+    private long intervaloMs;
+
+    @Value("${mais-agua.leitura.journal.fsync-intervalo-ms:200}")
+    private long fsyncIntervaloMs;
+
+    private int tamanhoSegmento;
+
+    // Escrita (protegida pelo monitor da instância)
+    private long segmentoEscrita;
+    private FileChannel canalEscrita;
+    private MappedByteBuffer bufferEscrita;
+    private final AtomicReference<Posicao> posicaoEscrita = new AtomicReference<>();
+
+    // Leitura (acessada apenas pela thread de replay, exceto o segmento usado no controle de espaço)
+    private volatile Posicao posicaoLeitura;
+    private long segmentoMapeadoLeitura = -1;
+    private MappedByteBuffer bufferLeitura;
+
+    private Thread replay;
+    private ScheduledExecutorService fsync;
+    private volatile boolean ativo;
+
+    private Counter gravadas;
+    private Counter quarentena;
+    private Timer tempoReplay;
+
+    @PostConstruct
+    void iniciar() throws IOException {
+        tamanhoSegmento = (tamanhoSegmentoMb * 1024 * 1024 / TAMANHO_REGISTRO) * TAMANHO_REGISTRO;
+        Files.createDirectories(diretorio);
+
+        posicaoLeitura = lerCheckpoint();
+        List<Long> segmentos = listarSegmentos();
+        for (long segmento : segmentos) {
+            if (segmento < posicaoLeitura.segmento()) {
+                Files.deleteIfExists(caminho(segmento));
+            }
+        }
+
+        long ultimo = segmentos.isEmpty() ? posicaoLeitura.segmento() : Math.max(segmentos.get(segmentos.size() - 1), posicaoLeitura.segmento());
+        abrirSegmento(ultimo);
+        int fim = recuperarFim(bufferEscrita);
+        bufferEscrita.position(fim);
+        posicaoEscrita.set(new Posicao(segmentoEscrita, fim));
+        log.info("Journal de leituras recuperado em {}: escrita em {}:{}, checkpoint em {}:{}",
+                diretorio.toAbsolutePath(), segmentoEscrita, fim, posicaoLeitura.segmento(), posicaoLeitura.offset());
+
+        meterRegistry.gauge("leitura.journal.segmentos_pendentes", this, j -> j.segmentosPendentes());
+        gravadas = meterRegistry.counter("leitura.journal.gravadas");
+        quarentena = meterRegistry.counter("leitura.journal.quarentena");
+        tempoReplay = Timer.builder("leitura.journal.replay").description("Tempo de gravação de cada lote do journal").register(meterRegistry);
+
+        ativo = true;
+        fsync = Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "leitura-journal-fsync"));
+        fsync.scheduleWithFixedDelay(this::forcarEscrita, fsyncIntervaloMs, fsyncIntervaloMs, TimeUnit.MILLISECONDS);
+        replay = new Thread(this::executarReplay, "leitura-journal-replay");
+        replay.start();
+    }
+
+    /**
+     * Anexa as leituras ao journal. Lança 429 com Retry-After se o replay estiver atrasado demais.
+     */
+    public synchronized void anexar(List<LeituraDispositivo> leituras) {
+        if (!ativo || segmentosPendentes() >= maxSegmentos) {
+            throw new TooManyRequestsException("Journal de leituras cheio, tente novamente em instantes",
+                    TimeUnit.MILLISECONDS.toSeconds(intervaloMs) + 1);
+        }
+
+        ByteBuffer payload = ByteBuffer.allocate(TAMANHO_PAYLOAD);
+        CRC32 crc = new CRC32();
+        for (LeituraDispositivo leitura : leituras) {
+            if (bufferEscrita.remaining() < TAMANHO_REGISTRO) {
+                rotacionar();
+            }
+            LocalDateTime dataHora = leitura.getDataHora() != null ? leitura.getDataHora() : LocalDateTime.now();
+
+            payload.clear();
+            payload.putInt(leitura.getDispositivo().getIdDispositivo())
+                    .putInt(leitura.getNivelPct())
+                    .putInt(leitura.getTurbidezNtu())
+                    .putInt(leitura.getPhInt().setScale(2, RoundingMode.HALF_UP).unscaledValue().intValueExact())
+                    .putLong(dataHora.toEpochSecond(ZoneOffset.UTC))
+                    .putInt(dataHora.getNano())
+                    .flip();
+            crc.reset();
+            crc.update(payload.duplicate());
+
+            bufferEscrita.putInt(TAMANHO_PAYLOAD).put(payload).putInt((int) crc.getValue());
+        }
+        posicaoEscrita.set(new Posicao(segmentoEscrita, bufferEscrita.position()));
+    }
+
+    private void rotacionar() {
+        bufferEscrita.force();
+        fecharEscrita();
+        abrirSegmento(segmentoEscrita + 1);
+        log.info("Journal de leituras rotacionado para o segmento {}", segmentoEscrita);
+    }
+
+    private long segmentosPendentes() {
+        return posicaoEscrita.get().segmento() - posicaoLeitura.segmento() + 1;
+    }
+
+    private synchronized void forcarEscrita() {
+        try {
+            bufferEscrita.force();
+        } catch (RuntimeException e) {
+            log.warn("Falha ao sincronizar o journal com o disco: {}", e.getMessage());
+        }
+    }
+
+    // ---------------------------------------------------------------- replay
+
+    private void executarReplay() {
+        int falhasSeguidas = 0;
+        // Ao parar, o que não foi gravado continua no journal e é reenviado na próxima inicialização
+        while (ativo) {
+            Lote lote = lerLote(posicaoLeitura, tamanhoLote);
+            if (lote.leituras().isEmpty()) {
+                avancar(lote.fim());
+                dormir(intervaloMs);
+                continue;
+            }
+
+            boolean processado;
+            try {
+                processado = gravarLote(lote);
+            } catch (RuntimeException e) {
+                log.warn("Falha no replay do journal: {}", e.getMessage());
+                processado = false;
+            }
+
+            if (processado) {
+                falhasSeguidas = 0;
+            } else {
+                // O checkpoint não avança: o mesmo lote é tentado de novo quando o banco voltar
+                falhasSeguidas++;
+                dormir(Math.min(intervaloMs << Math.min(falhasSeguidas, 6), ESPERA_MAXIMA_MS));
+            }
+        }
+    }
+
+    /**
+     * Grava o lote e avança o checkpoint. Retorna false, sem avançar, se o banco estiver indisponível.
+     */
+    private boolean gravarLote(Lote lote) {
+        try {
+            tempoReplay.record(() -> gravar(lote.leituras()));
+            gravadas.increment(lote.leituras().size());
+            avancar(lote.fim());
+            return true;
+        } catch (RuntimeException e) {
+            if (!dadoInvalido(e)) {
+                log.warn("Banco indisponível para o lote de {} leituras do journal; mantido para nova tentativa: {}",
+                        lote.leituras().size(), e.getMessage());
+                return false;
+            }
+            log.warn("Lote de {} leituras do journal recusado pelo banco; gravando item a item: {}",
+                    lote.leituras().size(), e.getMessage());
+        }
+        return isolar(lote.leituras().size());
+    }
+
+    /**
+     * Grava as próximas leituras uma a uma, avançando o checkpoint a cada leitura gravada ou posta em
+     * quarentena. Para (retornando false) no primeiro erro que não seja dos dados.
+     */
+    private boolean isolar(int quantidade) {
+        for (int i = 0; i < quantidade && ativo; i++) {
+            Lote item = lerLote(posicaoLeitura, 1);
+            if (item.leituras().isEmpty()) {
+                return true;
+            }
+            LeituraDispositivo leitura = item.leituras().get(0);
+            try {
+                gravar(List.of(leitura));
+                gravadas.increment();
+            } catch (RuntimeException e) {
+                if (!dadoInvalido(e)) {
+                    log.warn("Banco indisponível durante o isolamento do lote; retomando depois: {}", e.getMessage());
+                    return false;
+                }
+                quarentenar(leitura, e);
+            }
+            avancar(item.fim());
+        }
+        return true;
+    }
+
+    private void gravar(List<LeituraDispositivo> leituras) {
+        transactionTemplate.executeWithoutResult(status -> gravacaoLeituraService.inserir(leituras));
+    }
+
+    /**
+     * Erros causados pelo conteúdo das leituras (constraint, valor fora do tipo da coluna), que se repetem
+     * em qualquer nova tentativa. Os demais (conexão, throttling, deadlock, timeout) são tratados como
+     * transitórios.
+     */
+    static boolean dadoInvalido(Throwable erro) {
+        for (Throwable causa = erro; causa != null; causa = causa.getCause() != causa ? causa.getCause() : null) {
+            if (causa instanceof DataIntegrityViolationException
+                    || causa instanceof ConstraintViolationException
+                    || causa instanceof org.hibernate.exception.ConstraintViolationException
+                    || causa instanceof DataException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Anexa a leitura recusada ao arquivo de quarentena e sincroniza com o disco antes de o checkpoint
+     * passar por ela. Uma falha aqui propaga e o replay tenta de novo, sem perder a leitura.
+     */
+    private void quarentenar(LeituraDispositivo leitura, RuntimeException erro) {
+        String motivo = String.valueOf(NestedExceptionUtils.getMostSpecificCause(erro).getMessage()).replaceAll("[\\r\\n;]", " ");
+        String linha = String.join(";",
+                String.valueOf(leitura.getDispositivo().getIdDispositivo()),
+                String.valueOf(leitura.getNivelPct()),
+                String.valueOf(leitura.getTurbidezNtu()),
+                leitura.getPhInt().toPlainString(),
+                leitura.getDataHora().toString(),
+                motivo) + "\n";
+        try (FileChannel canal = FileChannel.open(diretorio.resolve(ARQUIVO_QUARENTENA),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            canal.write(ByteBuffer.wrap(linha.getBytes(StandardCharsets.UTF_8)));
+            canal.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        quarentena.increment();
+        log.error("Leitura do dispositivo {} em {} recusada pelo banco e movida para a quarentena do journal: {}",
+                leitura.getDispositivo().getIdDispositivo(), leitura.getDataHora(), motivo);
+    }
+
+    private Lote lerLote(Posicao inicio, int limite) {
+        List<LeituraDispositivo> leituras = new ArrayList<>();
+        long segmento = inicio.segmento();
+        int offset = inicio.offset();
+
+        while (leituras.size() < limite) {
+            Posicao escrita = posicaoEscrita.get();
+            if (segmento == escrita.segmento() && offset >= escrita.offset()) {
+                break;
+            }
+            if (segmento < escrita.segmento() && offset + TAMANHO_REGISTRO > tamanhoSegmento) {
+                segmento++;
+                offset = 0;
+                continue;
+            }
+
+            ByteBuffer buffer = mapearLeitura(segmento);
+            LeituraDispositivo leitura = ler(buffer, offset);
+            if (leitura == null) {
+                if (segmento < escrita.segmento()) {
+                    // Fim do segmento antigo (espaço não usado antes da rotação)
+                    segmento++;
+                    offset = 0;
+                    continue;
+                }
+                break;
+            }
+            leituras.add(leitura);
+            offset += TAMANHO_REGISTRO;
+        }
+        return new Lote(leituras, new Posicao(segmento, offset));
+    }
+
+    private void avancar(Posicao nova) {
+        Posicao anterior = posicaoLeitura;
+        if (nova.equals(anterior)) {
+            return;
+        }
+        salvarCheckpoint(nova);
+        posicaoLeitura = nova;
+        for (long segmento = anterior.segmento(); segmento < nova.segmento(); segmento++) {
+            try {
+                Files.deleteIfExists(caminho(segmento));
+            } catch (IOException e) {
+                log.warn("Não foi possível remover o segmento {} do journal: {}", segmento, e.getMessage());
+            }
+        }
+    }
+
+    private ByteBuffer mapearLeitura(long segmento) {
+        if (segmento != segmentoMapeadoLeitura) {
+            try (FileChannel canal = FileChannel.open(caminho(segmento), StandardOpenOption.READ)) {
+                bufferLeitura = canal.map(FileChannel.MapMode.READ_ONLY, 0, tamanhoSegmento);
+                segmentoMapeadoLeitura = segmento;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return bufferLeitura;
+    }
+
+    /**
+     * Lê o registro no offset informado, ou null se não houver registro íntegro nessa posição.
+     */
+    private LeituraDispositivo ler(ByteBuffer buffer, int offset) {
+        if (offset + TAMANHO_REGISTRO > buffer.limit() || buffer.getInt(offset) != TAMANHO_PAYLOAD) {
+            return null;
+        }
+        ByteBuffer payload = buffer.duplicate().position(offset + 4).limit(offset + 4 + TAMANHO_PAYLOAD).slice();
+        CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+        if ((int) crc.getValue() != buffer.getInt(offset + 4 + TAMANHO_PAYLOAD)) {
+            return null;
+        }
+
+        var leitura = new LeituraDispositivo();
+        leitura.setDispositivo(Dispositivo.builder().idDispositivo(payload.getInt()).build());
+        leitura.setNivelPct(payload.getInt());
+        leitura.setTurbidezNtu(payload.getInt());
+        leitura.setPhInt(BigDecimal.valueOf(payload.getInt(), 2));
+        leitura.setDataHora(LocalDateTime.ofEpochSecond(payload.getLong(), payload.getInt(), ZoneOffset.UTC));
+        return leitura;
+    }
+
+    // ---------------------------------------------------------------- arquivos
+
+    private int recuperarFim(ByteBuffer buffer) {
+        int offset = 0;
+        while (ler(buffer, offset) != null) {
+            offset += TAMANHO_REGISTRO;
+        }
+        return offset;
+    }
+
+    private void abrirSegmento(long segmento) {
+        try {
+            canalEscrita = FileChannel.open(caminho(segmento),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            bufferEscrita = canalEscrita.map(FileChannel.MapMode.READ_WRITE, 0, tamanhoSegmento);
+            segmentoEscrita = segmento;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void fecharEscrita() {
+        try {
+            canalEscrita.close();
+        } catch (IOException e) {
+            log.warn("Falha ao fechar o segmento {} do journal: {}", segmentoEscrita, e.getMessage());
+        }
+    }
+
+    private Posicao lerCheckpoint() throws IOException {
+        Path arquivo = diretorio.resolve(ARQUIVO_CHECKPOINT);
+        if (!Files.exists(arquivo)) {
+            List<Long> segmentos = listarSegmentos();
+            return new Posicao(segmentos.isEmpty() ? 1 : segmentos.get(0), 0);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(arquivo));
+        return new Posicao(buffer.getLong(), buffer.getInt());
+    }
+
+    private void salvarCheckpoint(Posicao posicao) {
+        Path temporario = diretorio.resolve(ARQUIVO_CHECKPOINT + ".tmp");
+        try (FileChannel canal = FileChannel.open(temporario,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            canal.write(ByteBuffer.allocate(12).putLong(posicao.segmento()).putInt(posicao.offset()).flip());
+            canal.force(true);
+            Files.move(temporario, diretorio.resolve(ARQUIVO_CHECKPOINT),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private List<Long> listarSegmentos() throws IOException {
+        try (Stream<Path> arquivos = Files.list(diretorio)) {
+            return arquivos
+                    .map(p -> p.getFileName().toString())
+                    .filter(nome -> nome.endsWith(EXTENSAO_SEGMENTO))
+                    .map(nome -> Long.parseLong(nome.substring(0, nome.length() - EXTENSAO_SEGMENTO.length())))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private Path caminho(long segmento) {
+        return diretorio.resolve(String.format("%020d%s", segmento, EXTENSAO_SEGMENTO));
+    }
+
+    private void dormir(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @PreDestroy
+    void parar() throws InterruptedException {
+        synchronized (this) {
+            ativo = false;
+        }
+        replay.interrupt();
+        replay.join(TimeUnit.SECONDS.toMillis(30));
+        fsync.shutdown();
+        synchronized (this) {
+            bufferEscrita.force();
+            fecharEscrita();
+        }
+        log.info("Journal de leituras finalizado em {}:{}", posicaoLeitura.segmento(), posicaoLeitura.offset());
+    }
+}
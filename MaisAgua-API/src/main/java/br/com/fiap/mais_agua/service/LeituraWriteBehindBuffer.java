@@ -0,0 +1,171 @@
+package br.com.fiap.mais_agua.service;
+
+import br.com.fiap.mais_agua.exception.TooManyRequestsException;
+import br.com.fiap.mais_agua.model.LeituraDispositivo;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fila limitada em memória para gravação assíncrona (write-behind) das leituras. As requisições são
+ * confirmadas assim que a leitura entra na fila e uma thread dedicada grava a fila em lotes, por
+ * tamanho ou por tempo. Com a fila cheia, a requisição recebe 429 em vez de disputar conexões do pool.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "mais-agua.leitura.write-behind.enabled", havingValue = "true")
+public class LeituraWriteBehindBuffer {
+
+    private static final int MAX_TENTATIVAS = 3;
+
+    @Autowired
+    private GravacaoLeituraService gravacaoLeituraService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${mais-agua.leitura.write-behind.capacidade:10000}")
+    private int capacidade;
+
+    @Value("${mais-agua.leitura.write-behind.tamanho-lote:500}")
+    private int tamanhoLote;
+
+    @Value("${mais-agua.leitura.write-behind.intervalo-ms:1000}")
+    private long intervaloMs;
+
+    private BlockingQueue<LeituraDispositivo> fila;
+    private final ReentrantLock lockProdutores = new ReentrantLock();
+    private Thread flusher;
+    private volatile boolean ativo;
+
+    private Timer tempoFlush;
+    private Counter gravadas;
+    private Counter rejeitadas;
+    private Counter descartadas;
+
+    @PostConstruct
+    void iniciar() {
+        fila = new ArrayBlockingQueue<>(capacidade);
+
+        meterRegistry.gauge("leitura.write_behind.fila", fila, BlockingQueue::size);
+        tempoFlush = Timer.builder("leitura.write_behind.flush").description("Tempo de gravação de cada lote").register(meterRegistry);
+        gravadas = meterRegistry.counter("leitura.write_behind.gravadas");
+        rejeitadas = meterRegistry.counter("leitura.write_behind.rejeitadas");
+        descartadas = meterRegistry.counter("leitura.write_behind.descartadas");
+
+        ativo = true;
+        flusher = new Thread(this::executar, "leitura-write-behind");
+        flusher.start();
+        log.info("Write-behind de leituras habilitado (capacidade {}, lote {}, intervalo {} ms)", capacidade, tamanhoLote, intervaloMs);
+    }
+
+    /**
+     * Enfileira todas as leituras ou nenhuma. Lança 429 com Retry-After se não houver espaço.
+     */
+    public void enfileirar(List<LeituraDispositivo> leituras) {
+        lockProdutores.lock();
+        try {
+            if (!ativo || fila.remainingCapacity() < leituras.size()) {
+                rejeitadas.increment(leituras.size());
+                throw new TooManyRequestsException("Fila de leituras cheia, tente novamente em instantes",
+                        TimeUnit.MILLISECONDS.toSeconds(intervaloMs) + 1);
+            }
+            // Só a thread de flush remove itens, então o espaço verificado acima está garantido
+            fila.addAll(leituras);
+        } finally {
+            lockProdutores.unlock();
+        }
+    }
+
+    private void executar() {
+        List<LeituraDispositivo> lote = new ArrayList<>(tamanhoLote);
+        while (ativo || !fila.isEmpty()) {
+            try {
+                coletarLote(lote);
+            } catch (InterruptedException e) {
+                // Parada solicitada: o que sobrou na fila é gravado antes de sair do loop
+                fila.drainTo(lote, tamanhoLote - lote.size());
+            }
+            if (!lote.isEmpty()) {
+                gravar(lote);
+                lote.clear();
+            }
+        }
+    }
+
+    private void coletarLote(List<LeituraDispositivo> lote) throws InterruptedException {
+        LeituraDispositivo primeira = fila.poll(intervaloMs, TimeUnit.MILLISECONDS);
+        if (primeira == null) {
+            return;
+        }
+        lote.add(primeira);
+
+        long limite = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(intervaloMs);
+        while (lote.size() < tamanhoLote) {
+            fila.drainTo(lote, tamanhoLote - lote.size());
+            long restante = limite - System.nanoTime();
+            if (lote.size() >= tamanhoLote || restante <= 0) {
+                break;
+            }
+            LeituraDispositivo proxima = fila.poll(restante, TimeUnit.NANOSECONDS);
+            if (proxima == null) {
+                break;
+            }
+            lote.add(proxima);
+        }
+    }
+
+    private void gravar(List<LeituraDispositivo> lote) {
+        for (int tentativa = 1; tentativa <= MAX_TENTATIVAS; tentativa++) {
+            if (tentativa > 1) {
+                // O persist da tentativa anterior já atribuiu ids da sequence e o rollback não os desfaz:
+                // com id, o Hibernate trataria as leituras como destacadas e recusaria o novo persist
+                lote.forEach(leitura -> leitura.setId(null));
+            }
+            try {
+                tempoFlush.record(() -> transactionTemplate.executeWithoutResult(status -> gravacaoLeituraService.inserir(lote)));
+                gravadas.increment(lote.size());
+                return;
+            } catch (RuntimeException e) {
+                log.warn("Falha ao gravar lote de {} leituras (tentativa {}/{}): {}", lote.size(), tentativa, MAX_TENTATIVAS, e.getMessage());
+                dormir(tentativa * intervaloMs);
+            }
+        }
+        descartadas.increment(lote.size());
+        log.error("Lote de {} leituras descartado após {} tentativas", lote.size(), MAX_TENTATIVAS);
+    }
+
+    private void dormir(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @PreDestroy
+    void parar() throws InterruptedException {
+        ativo = false;
+        flusher.interrupt();
+        flusher.join(TimeUnit.SECONDS.toMillis(30));
+        log.info("Write-behind de leituras finalizado ({} leituras pendentes)", fila.size());
+    }
+}
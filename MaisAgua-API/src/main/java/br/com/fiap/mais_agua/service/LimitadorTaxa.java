@@ -0,0 +1,160 @@
+package br.com.fiap.mais_agua.service;
+
+import br.com.fiap.mais_agua.config.LimiteTaxaPropriedades;
+import br.com.fiap.mais_agua.exception.TooManyRequestsException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Baldes de tokens por grupo de rotas e principal. Cada balde é um único AtomicLong com o instante teórico
+ * em que o balde estaria cheio de novo (GCRA, equivalente ao balde de tokens): consumir um token é uma
+ * leitura e um compareAndSet, sem lock. Os baldes ficam em um cache limitado que descarta os principais
+ * parados; um balde descartado volta cheio, o mesmo estado que teria depois do tempo de inatividade.
+ */
+@Service
+public class LimitadorTaxa {
+
+    public static final String DISPOSITIVO = "dispositivo";
+
+    private static final long NANOS_POR_SEGUNDO = TimeUnit.SECONDS.toNanos(1);
+
+    @Autowired
+    private LimiteTaxaPropriedades propriedades;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Cache<Chave, AtomicLong> baldes;
+
+    private record Chave(String grupo, String principal) {}
+
+    @PostConstruct
+    void iniciar() {
+        baldes = Caffeine.newBuilder()
+                .maximumSize(propriedades.maximoPrincipais() != null ? propriedades.maximoPrincipais() : 100_000)
+                .expireAfterAccess(propriedades.expiraAposInatividade() != null
+                        ? propriedades.expiraAposInatividade() : Duration.ofMinutes(10))
+                .build();
+        Gauge.builder("limite.taxa.baldes", baldes, Cache::estimatedSize)
+                .description("Baldes de tokens em memória").register(meterRegistry);
+    }
+
+    /**
+     * Consome um token do balde do principal no grupo. Retorna 0 quando a requisição pode seguir ou, quando
+     * o balde está vazio, quantos nanossegundos faltam para o próximo token. Grupos sem limite retornam 0.
+     */
+    public long consumir(String grupo, String principal) {
+        LimiteTaxaPropriedades.Balde balde = limitado(grupo);
+        if (balde == null) {
+            return 0;
+        }
+        long espera = reservar(balde, grupo, principal, 1, null);
+        if (espera > 0) {
+            meterRegistry.counter("limite.taxa.recusadas", "grupo", grupo).increment();
+        }
+        return espera;
+    }
+
+    /**
+     * Consome um token do balde do dispositivo, para que um único firmware em loop não use todo o limite de
+     * ingestão do dono. Lança 429 com o Retry-After quando o balde está vazio.
+     */
+    public void consumirDispositivo(Integer idDispositivo) {
+        if (idDispositivo == null) {
+            return;
+        }
+        long espera = consumir(DISPOSITIVO, idDispositivo.toString());
+        if (espera > 0) {
+            throw new TooManyRequestsException("Limite de leituras do dispositivo " + idDispositivo + " atingido",
+                    segundos(espera));
+        }
+    }
+
+    /**
+     * Consome, tudo ou nada, um token por leitura do balde de cada dispositivo do lote. Os baldes são reservados
+     * um a um e, se algum não tiver tokens suficientes, as reservas já feitas são devolvidas antes do 429: um
+     * lote recusado não gasta o limite de nenhum dispositivo. Um dispositivo com mais leituras do que a
+     * capacidade do balde nunca caberia, e o lote é recusado com 400 para ser dividido.
+     */
+    public void consumirDispositivos(Map<Integer, Integer> leiturasPorDispositivo) {
+        LimiteTaxaPropriedades.Balde balde = limitado(DISPOSITIVO);
+        if (balde == null) {
+            return;
+        }
+        leiturasPorDispositivo.forEach((idDispositivo, quantidade) -> {
+            if (quantidade > balde.capacidade()) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "O lote traz %d leituras do dispositivo %d; o limite é %d por requisição"
+                        .formatted(quantidade, idDispositivo, balde.capacidade()));
+            }
+        });
+
+        List<Reserva> reservas = new ArrayList<>(leiturasPorDispositivo.size());
+        for (Map.Entry<Integer, Integer> dispositivo : leiturasPorDispositivo.entrySet()) {
+            long espera = reservar(balde, DISPOSITIVO, dispositivo.getKey().toString(), dispositivo.getValue(), reservas);
+            if (espera > 0) {
+                reservas.forEach(Reserva::devolver);
+                meterRegistry.counter("limite.taxa.recusadas", "grupo", DISPOSITIVO).increment();
+                throw new TooManyRequestsException("Limite de leituras do dispositivo " + dispositivo.getKey() + " atingido",
+                        segundos(espera));
+            }
+        }
+    }
+
+    public static long segundos(long nanos) {
+        return (nanos + NANOS_POR_SEGUNDO - 1) / NANOS_POR_SEGUNDO;
+    }
+
+    private LimiteTaxaPropriedades.Balde limitado(String grupo) {
+        LimiteTaxaPropriedades.Balde balde = propriedades.de(grupo);
+        if (balde == null || balde.taxaPorSegundo() <= 0 || balde.capacidade() <= 0) {
+            return null;
+        }
+        return balde;
+    }
+
+    // Tira a quantidade de tokens do balde e retorna 0, ou retorna quantos nanossegundos faltam para caberem
+    private long reservar(LimiteTaxaPropriedades.Balde balde, String grupo, String principal, int quantidade,
+                          List<Reserva> reservas) {
+        long intervalo = Math.max(1, (long) (NANOS_POR_SEGUNDO / balde.taxaPorSegundo()));
+        long rajada = intervalo * balde.capacidade();
+        long custo = intervalo * quantidade;
+        long agora = System.nanoTime();
+        AtomicLong cheioEm = baldes.get(new Chave(grupo, principal), chave -> new AtomicLong(agora));
+
+        while (true) {
+            long atual = cheioEm.get();
+            long novo = Math.max(atual, agora) + custo;
+            long excesso = novo - agora - rajada;
+            if (excesso > 0) {
+                return excesso;
+            }
+            if (cheioEm.compareAndSet(atual, novo)) {
+                if (reservas != null) {
+                    reservas.add(new Reserva(cheioEm, custo));
+                }
+                return 0;
+            }
+        }
+    }
+
+    // Tokens tirados de um balde, devolvidos quando outro balde do mesmo lote recusa
+    private record Reserva(AtomicLong cheioEm, long custo) {
+        void devolver() {
+            cheioEm.addAndGet(-custo);
+        }
+    }
+}
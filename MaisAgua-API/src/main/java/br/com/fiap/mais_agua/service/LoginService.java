@@ -0,0 +1,146 @@
+package br.com.fiap.mais_agua.service;
+
+import br.com.fiap.mais_agua.exception.TooManyRequestsException;
+import br.com.fiap.mais_agua.model.DTO.Credentials;
+import br.com.fiap.mais_agua.model.Token;
+import br.com.fiap.mais_agua.model.Usuario;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.AuthenticationServiceException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Login isolado das demais rotas. A verificação BCrypt roda em um pool próprio e limitado, fora das threads
+ * do Tomcat, que ficam livres para leituras, escritas e ingestão durante uma onda de logins (por exemplo,
+ * todos os apps entrando de novo depois de uma queda). Com a fila cheia, ou quando o pedido esperou demais
+ * na fila, o login é recusado na hora com 429; tentativas por e-mail e por IP também são limitadas por janela
+ * ({@link TentativasLogin}).
+ */
+@Service
+@Slf4j
+public class LoginService {
+
+    @Autowired
+    private AuthenticationManager authenticationManager;
+
+    @Autowired
+    private TokenService tokenService;
+
+    @Autowired
+    private CacheUsuarioService cacheUsuarioService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private TentativasLogin tentativasLogin;
+
+    @Value("${mais-agua.login.threads:2}")
+    private int threads;
+
+    @Value("${mais-agua.login.fila:200}")
+    private int fila;
+
+    @Value("${mais-agua.login.espera-maxima:5s}")
+    private Duration esperaMaxima;
+
+    private ThreadPoolExecutor verificacao;
+
+    private Timer sucesso;
+    private Timer falha;
+    private Timer espera;
+
+    @PostConstruct
+    void iniciar() {
+        AtomicInteger sequencia = new AtomicInteger();
+        verificacao = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(fila), tarefa -> {
+                    Thread thread = new Thread(tarefa, "login-" + sequencia.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+        meterRegistry.gauge("login.fila", verificacao, executor -> executor.getQueue().size());
+        meterRegistry.gauge("login.ativos", verificacao, ThreadPoolExecutor::getActiveCount);
+        sucesso = Timer.builder("login.duracao").tag("resultado", "sucesso")
+                .description("Verificação das credenciais e emissão do token").register(meterRegistry);
+        falha = Timer.builder("login.duracao").tag("resultado", "falha")
+                .description("Verificação das credenciais e emissão do token").register(meterRegistry);
+        espera = Timer.builder("login.espera")
+                .description("Tempo do login na fila do pool de verificação").register(meterRegistry);
+    }
+
+    @PreDestroy
+    void encerrar() {
+        verificacao.shutdownNow();
+    }
+
+    /**
+     * Agenda a verificação das credenciais no pool de login. O futuro termina com o token, com 401 para
+     * credenciais inválidas ou com 429 quando o login é recusado por sobrecarga ou por excesso de tentativas.
+     */
+    public CompletableFuture<Token> login(Credentials credentials, String ip) {
+        String email = credentials.email() != null ? credentials.email().trim().toLowerCase(Locale.ROOT) : null;
+        tentativasLogin.limitarLogin(ip, email);
+
+        long agendado = System.nanoTime();
+        try {
+            return CompletableFuture.supplyAsync(() -> verificar(credentials, email, agendado), verificacao);
+        } catch (RejectedExecutionException e) {
+            meterRegistry.counter("login.rejeitados", "motivo", "fila").increment();
+            throw new TooManyRequestsException("Muitos logins em andamento, tente novamente em instantes", 5);
+        }
+    }
+
+    private Token verificar(Credentials credentials, String email, long agendado) {
+        long inicio = System.nanoTime();
+        espera.record(inicio - agendado, TimeUnit.NANOSECONDS);
+        // O cliente provavelmente já desistiu: recusa sem gastar o BCrypt
+        if (inicio - agendado > esperaMaxima.toNanos()) {
+            meterRegistry.counter("login.rejeitados", "motivo", "espera").increment();
+            throw new TooManyRequestsException("Muitos logins em andamento, tente novamente em instantes", 5);
+        }
+
+        try {
+            var auth = new UsernamePasswordAuthenticationToken(credentials.email(), credentials.senha());
+            var user = (Usuario) authenticationManager.authenticate(auth).getPrincipal();
+
+            Token token = tokenService.createToken(user);
+
+            // Um novo login recarrega o perfil do próprio usuário
+            cacheUsuarioService.evictar(List.of(user.getIdUsuario()), EstadoAtualReservatorioService.CACHE_PERFIL);
+
+            tentativasLogin.esquecerEmail(email);
+            sucesso.record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+            return token;
+        } catch (AuthenticationServiceException e) {
+            // Falha do próprio serviço (ex.: banco fora do ar) embrulhada pelo provider: não é credencial errada
+            falha.record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+            log.error("Falha no serviço de autenticação: {}", e.getMessage());
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Serviço de autenticação indisponível", e);
+        } catch (AuthenticationException e) {
+            falha.record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "E-mail ou senha incorretos!");
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package br.com.fiap.mais_agua.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reconstrói os rollups de leituras na inicialização, quando executado com
+ * {@code --mais-agua.rollup.reconstruir=true} (por exemplo, depois de uma carga de leituras feita
+ * direto no banco). A API sobe normalmente ao final.
+ */
+@Component
+@ConditionalOnProperty(name = "mais-agua.rollup.reconstruir", havingValue = "true")
+public class ReconstrucaoRollupRunner implements ApplicationRunner {
+
+    @Autowired
+    private RollupLeituraService rollupService;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        rollupService.reconstruir();
+    }
+}
@@ -6,6 +6,7 @@ import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
@@ -29,6 +30,10 @@ public class ReservatorioService {
     private ReservatorioDispositivoRepository reservatorioDispositivoRepository;
     @Autowired
     private HistoricoReservatorioRepository historicoReservatorioRepository;
+    @Autowired
+    private EstadoAtualReservatorioRepository estadoAtualRepository;
+    @Autowired
+    private IndicePropriedade indicePropriedade;
 
     // executar um conjunto de operações no bd em uma unica transação
     @Transactional
@@ -38,7 +43,7 @@ public class ReservatorioService {
         Unidade unidade = unidadeRepository.findById(reservatorio.getUnidade().getIdUnidade())
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Unidade não encontrada"));
 
-        if (!unidade.getUsuario().getIdUsuario().equals(usuario.getIdUsuario())) {
+        if (!indicePropriedade.possuiUnidade(usuario, unidade.getIdUnidade())) {
             throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Você não tem permissão para acessar essa unidade");
         }
 
@@ -73,6 +78,8 @@ public class ReservatorioService {
                 .dispositivo(dispositivo)
                 .build();
         reservatorioDispositivoRepository.save(vinculo);
+        indicePropriedade.adicionarReservatorio(usuario.getIdUsuario(), novoReservatorio.getIdReservatorio(),
+                dispositivo.getIdDispositivo());
 
         return novoReservatorio;
     }
@@ -96,11 +103,12 @@ public class ReservatorioService {
     }
 
     @Transactional
+    @CacheEvict(value = EstadoAtualReservatorioService.CACHE, key = "#id")
     public void deletarReservatorio(Integer id, Usuario usuario) {
         Reservatorio reservatorio = reservatorioRepository.findById(id)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Reservatório não encontrado"));
 
-        if (!reservatorio.getUnidade().getUsuario().getIdUsuario().equals(usuario.getIdUsuario())) {
+        if (!indicePropriedade.possuiReservatorio(usuario, reservatorio.getIdReservatorio())) {
             throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Você não tem permissão para acessar este reservatório");
         }
         if (historicoReservatorioRepository.existsByReservatorio(reservatorio)) {
@@ -110,6 +118,8 @@ public class ReservatorioService {
         var vinculos = reservatorioDispositivoRepository.findByReservatorio(reservatorio);
         reservatorioDispositivoRepository.deleteAll(vinculos);
 
+        estadoAtualRepository.deleteById(reservatorio.getIdReservatorio());
         reservatorioRepository.delete(reservatorio);
+        indicePropriedade.invalidar(usuario.getIdUsuario());
     }
 }
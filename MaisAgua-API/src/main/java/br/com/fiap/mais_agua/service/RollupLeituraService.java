@@ -0,0 +1,56 @@
+package br.com.fiap.mais_agua.service;
+
+import br.com.fiap.mais_agua.repository.DispositivoRepository;
+import br.com.fiap.mais_agua.repository.RollupLeituraBatchRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+@Service
+@Slf4j
+public class RollupLeituraService {
+
+    @Autowired
+    private DispositivoRepository dispositivoRepository;
+
+    @Autowired
+    private RollupLeituraBatchRepository rollupBatchRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${mais-agua.rollup.reconstrucao.tamanho-bloco:200}")
+    private int tamanhoBloco;
+
+    /**
+     * Reconstrói os rollups por hora e por dia de todas as leituras. Os dispositivos são processados em blocos
+     * por id, cada bloco em uma transação própria, então a reconstrução pode ser repetida ou interrompida
+     * sem deixar rollups pela metade.
+     */
+    public void reconstruir() {
+        log.info("Iniciando reconstrução dos rollups de leituras...");
+        long inicio = System.nanoTime();
+        int linhas = 0;
+        int ultimoIdDispositivo = 0;
+
+        while (true) {
+            List<Integer> ids = dispositivoRepository.findIds(ultimoIdDispositivo, Limit.of(tamanhoBloco));
+            if (ids.isEmpty()) {
+                break;
+            }
+            int de = ultimoIdDispositivo;
+            int ate = ids.get(ids.size() - 1);
+            linhas += transactionTemplate.execute(status -> rollupBatchRepository.reconstruir(de, ate));
+            ultimoIdDispositivo = ate;
+            log.debug("Rollups reconstruídos até o dispositivo {}", ate);
+        }
+
+        double segundos = (System.nanoTime() - inicio) / 1_000_000_000.0;
+        log.info("Reconstrução dos rollups concluída: {} linhas em {} s", linhas, String.format("%.2f", segundos));
+    }
+}
@@ -0,0 +1,104 @@
+package br.com.fiap.mais_agua.service;
+
+import br.com.fiap.mais_agua.exception.TooManyRequestsException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tentativas de login por e-mail e por IP em janelas fixas, compartilhadas pelo /login ({@link LoginService})
+ * e pelo HTTP Basic ({@code LimiteBasicFilter}). No /login toda tentativa conta; no Basic, só as falhas, já
+ * que o cliente manda as credenciais em toda requisição. Sem dependência da autenticação, para poder ser usado
+ * pelos filtros da cadeia de segurança.
+ */
+@Service
+public class TentativasLogin {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${mais-agua.login.janela-tentativas:1m}")
+    private Duration janelaTentativas;
+
+    @Value("${mais-agua.login.tentativas-por-email:10}")
+    private int tentativasPorEmail;
+
+    @Value("${mais-agua.login.tentativas-por-ip:50}")
+    private int tentativasPorIp;
+
+    @Value("${mais-agua.login.maximo-chaves-tentativas:100000}")
+    private long maximoChavesTentativas;
+
+    // Contadores por janela fixa: a entrada não é regravada a cada tentativa, então expira no fim da janela
+    private Cache<String, AtomicInteger> tentativasEmail;
+    private Cache<String, AtomicInteger> tentativasIp;
+
+    @PostConstruct
+    void iniciar() {
+        tentativasEmail = Caffeine.newBuilder()
+                .maximumSize(maximoChavesTentativas)
+                .expireAfterWrite(janelaTentativas)
+                .build();
+        tentativasIp = Caffeine.newBuilder()
+                .maximumSize(maximoChavesTentativas)
+                .expireAfterWrite(janelaTentativas)
+                .build();
+    }
+
+    /**
+     * Conta uma tentativa de /login do IP e do e-mail e recusa com 429 a que passar do limite de qualquer um.
+     */
+    public void limitarLogin(String ip, String email) {
+        limitar(tentativasIp, ip, tentativasPorIp, "ip", "Muitas tentativas de login deste endereço");
+        limitar(tentativasEmail, email, tentativasPorEmail, "email", "Muitas tentativas de login para este e-mail");
+    }
+
+    /**
+     * Login aceito: as tentativas anteriores do e-mail não contam mais contra o usuário.
+     */
+    public void esquecerEmail(String email) {
+        if (email != null) {
+            tentativasEmail.invalidate(email);
+        }
+    }
+
+    /**
+     * Tempo, em segundos, que o IP ainda precisa esperar antes de tentar HTTP Basic de novo, ou 0 se ainda
+     * tem tentativas na janela. Logins e falhas de Basic contam juntos nas tentativas do IP.
+     */
+    public long esperaBasic(String ip) {
+        AtomicInteger tentativas = ip != null ? tentativasIp.getIfPresent(ip) : null;
+        if (tentativas == null || tentativas.get() < tentativasPorIp) {
+            return 0;
+        }
+        meterRegistry.counter("login.rejeitados", "motivo", "basic").increment();
+        return janelaTentativas.toSeconds();
+    }
+
+    /**
+     * Conta uma falha de HTTP Basic nas tentativas do IP.
+     */
+    public void registrarFalhaBasic(String ip) {
+        if (ip != null) {
+            tentativasIp.get(ip, c -> new AtomicInteger()).incrementAndGet();
+        }
+    }
+
+    private void limitar(Cache<String, AtomicInteger> tentativas, String chave, int limite,
+                         String motivo, String mensagem) {
+        if (chave == null) {
+            return;
+        }
+        if (tentativas.get(chave, c -> new AtomicInteger()).incrementAndGet() > limite) {
+            meterRegistry.counter("login.rejeitados", "motivo", motivo).increment();
+            throw new TooManyRequestsException(mensagem, janelaTentativas.toSeconds());
+        }
+    }
+}
@@ -2,36 +2,122 @@ package br.com.fiap.mais_agua.service;
 
 import br.com.fiap.mais_agua.model.Token;
 import br.com.fiap.mais_agua.model.Usuario;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTVerifier;
 import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.exceptions.TokenExpiredException;
+import com.auth0.jwt.interfaces.DecodedJWT;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.time.Instant;
-import java.time.LocalDateTime;
-import java.time.ZoneOffset;
+import java.util.Base64;
 
 @Service
 public class TokenService {
-    private Instant expiresAt = LocalDateTime.now().plusDays(1).toInstant(ZoneOffset.ofHours(-3));
 
-    private Algorithm algorithm = Algorithm.HMAC256("secret");
+    private static final Duration VALIDADE = Duration.ofDays(1);
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${mais-agua.auth.tokens-verificados.maximo-entradas:10000}")
+    private long maximoTokensVerificados;
+
+    @Value("${mais-agua.auth.tokens-verificados.expira-apos:10m}")
+    private Duration expiraAposVerificacao;
+
+    private final Algorithm algorithm = Algorithm.HMAC256("secret");
+
+    // O verificador é imutável e thread-safe: montado uma vez, e não a cada requisição
+    private final JWTVerifier verifier = JWT.require(algorithm).build();
+
+    // Tokens já verificados, pelo hash do token; cada entrada expira no máximo junto com o token
+    private Cache<String, TokenVerificado> tokensVerificados;
+
+    private record TokenVerificado(Integer idUsuario, String email, Instant expiraEm) {}
+
+    @PostConstruct
+    void iniciar() {
+        tokensVerificados = Caffeine.newBuilder()
+                .maximumSize(maximoTokensVerificados)
+                .expireAfter(new Expiry<String, TokenVerificado>() {
+                    @Override
+                    public long expireAfterCreate(String hash, TokenVerificado token, long agora) {
+                        Duration restante = Duration.between(Instant.now(), token.expiraEm());
+                        return (restante.compareTo(expiraAposVerificacao) < 0 ? restante : expiraAposVerificacao).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String hash, TokenVerificado token, long agora, long duracaoAtual) {
+                        return duracaoAtual;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String hash, TokenVerificado token, long agora, long duracaoAtual) {
+                        return duracaoAtual;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, tokensVerificados, "tokensVerificados");
+    }
+
     public Token createToken(Usuario user
     ){
         var jwt = JWT.create()
                 .withSubject(user.getIdUsuario().toString())
                 .withClaim("email", user.getEmail())
-                .withExpiresAt(expiresAt)
+                .withExpiresAt(Instant.now().plus(VALIDADE))
                 .sign(algorithm);
 
         return new Token(jwt, user.getEmail());
     }
 
+    /**
+     * Usuário do token. A assinatura e as claims são verificadas só na primeira vez que o token aparece;
+     * as requisições seguintes com o mesmo token usam o resultado guardado até o token expirar.
+     */
     public Usuario getUserFromToken(String token){
-        var verifiedToken = JWT.require(algorithm).build().verify(token);
+        String hash = hash(token);
+        TokenVerificado verificado = tokensVerificados.get(hash, chave -> verificar(token));
+        if (!verificado.expiraEm().isAfter(Instant.now())) {
+            tokensVerificados.invalidate(hash);
+            throw new TokenExpiredException("The Token has expired on " + verificado.expiraEm() + ".", verificado.expiraEm());
+        }
 
         return Usuario.builder()
-                .idUsuario(Integer.valueOf(verifiedToken.getSubject()))
-                .email(verifiedToken.getClaim("email").toString()).build();
+                .idUsuario(verificado.idUsuario())
+                .email(verificado.email()).build();
+    }
+
+    private TokenVerificado verificar(String token) {
+        DecodedJWT verifiedToken = verifier.verify(token);
+        return new TokenVerificado(
+                Integer.valueOf(verifiedToken.getSubject()),
+                verifiedToken.getClaim("email").toString(),
+                verifiedToken.getExpiresAtAsInstant() != null ? verifiedToken.getExpiresAtAsInstant() : Instant.MAX);
+    }
+
+    // A chave do cache é o hash: o token em si não fica guardado em memória
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
     }
 }
@@ -0,0 +1,211 @@
+package br.com.fiap.mais_agua.service;
+
+import br.com.fiap.mais_agua.config.InvalidacaoCache;
+import br.com.fiap.mais_agua.config.TransporteInvalidacao;
+import br.com.fiap.mais_agua.repository.InvalidacaoCacheRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Transporte de invalidações pelo banco, para várias réplicas atrás do balanceador. As invalidações locais
+ * entram em uma fila limitada e uma thread dedicada (fora do agendador, que os jobs ocupam por minutos)
+ * grava a fila em lote no log e lê as linhas novas das outras réplicas a cada intervalo. Com a fila cheia,
+ * o cache afetado é limpo por inteiro nas outras réplicas, no lugar de perder a invalidação.
+ * <p>
+ * Ids de IDENTITY de inserts concorrentes podem ficar visíveis fora de ordem, então os ids pulados na
+ * leitura ficam como lacunas e são procurados de novo até o prazo de lacuna.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "mais-agua.cache.invalidacao.transporte", havingValue = "jdbc")
+public class TransporteInvalidacaoJdbc implements TransporteInvalidacao {
+
+    // Saltos maiores que isso são do IDENTITY (reinício do SQL Server), não de inserts em andamento
+    private static final int MAX_LACUNAS_POR_SALTO = 100;
+    // Mantém o IN da consulta bem abaixo do limite de parâmetros do SQL Server
+    private static final int MAX_LACUNAS = 1000;
+
+    @Autowired
+    private InvalidacaoCacheRepository invalidacaoRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${mais-agua.cache.invalidacao.intervalo-ms:1000}")
+    private long intervaloMs;
+
+    @Value("${mais-agua.cache.invalidacao.capacidade:10000}")
+    private int capacidade;
+
+    @Value("${mais-agua.cache.invalidacao.tamanho-lote:1000}")
+    private int tamanhoLote;
+
+    @Value("${mais-agua.cache.invalidacao.prazo-lacuna-ms:10000}")
+    private long prazoLacunaMs;
+
+    @Value("${mais-agua.cache.invalidacao.retencao:1h}")
+    private Duration retencao;
+
+    private final List<Consumer<InvalidacaoCache>> receptores = new CopyOnWriteArrayList<>();
+    // Cache transbordado -> origem que o invalidou
+    private final Map<String, String> cachesTransbordados = new ConcurrentHashMap<>();
+    private BlockingQueue<InvalidacaoCache> fila;
+
+    // Estado da leitura, usado só pela thread do transporte
+    private long ultimoId = -1;
+    private final Map<Long, Long> lacunas = new LinkedHashMap<>();
+    private long proximaLimpeza;
+    private boolean falhando;
+
+    private Thread sincronizador;
+    private volatile boolean ativo;
+
+    private Counter enviadas;
+    private Counter recebidas;
+    private Counter transbordadas;
+
+    @PostConstruct
+    void iniciar() {
+        fila = new ArrayBlockingQueue<>(capacidade);
+        meterRegistry.gauge("cache.invalidacao.fila", fila, BlockingQueue::size);
+        enviadas = meterRegistry.counter("cache.invalidacao.enviadas");
+        recebidas = meterRegistry.counter("cache.invalidacao.recebidas");
+        transbordadas = meterRegistry.counter("cache.invalidacao.transbordadas");
+
+        ativo = true;
+        sincronizador = new Thread(this::executar, "cache-invalidacao");
+        sincronizador.setDaemon(true);
+        sincronizador.start();
+        log.info("Invalidação de cache entre réplicas pelo banco habilitada (intervalo {} ms)", intervaloMs);
+    }
+
+    @PreDestroy
+    void encerrar() throws InterruptedException {
+        ativo = false;
+        sincronizador.interrupt();
+        sincronizador.join(5000);
+    }
+
+    @Override
+    public void publicar(InvalidacaoCache invalidacao) {
+        if (!fila.offer(invalidacao)) {
+            transbordadas.increment();
+            cachesTransbordados.put(invalidacao.cache(), invalidacao.origem());
+        }
+    }
+
+    @Override
+    public void receber(Consumer<InvalidacaoCache> receptor) {
+        receptores.add(receptor);
+    }
+
+    private void executar() {
+        while (ativo) {
+            sincronizar();
+            try {
+                Thread.sleep(intervaloMs);
+            } catch (InterruptedException e) {
+                // Parada solicitada: envia o que sobrou na fila antes de sair
+                try {
+                    enviar();
+                } catch (DataAccessException falha) {
+                    log.warn("Invalidações de cache não enviadas no encerramento: {}", falha.getMessage());
+                }
+                return;
+            }
+        }
+    }
+
+    private void sincronizar() {
+        try {
+            enviar();
+            receberNovas();
+            if (System.currentTimeMillis() >= proximaLimpeza) {
+                proximaLimpeza = System.currentTimeMillis() + retencao.toMillis() / 4;
+                int apagadas = invalidacaoRepository.apagarAntigas(retencao);
+                log.debug("{} invalidações de cache antigas apagadas", apagadas);
+            }
+            if (falhando) {
+                falhando = false;
+                log.info("Log de invalidações de cache acessível de novo");
+            }
+        } catch (DataAccessException e) {
+            // Loga só a transição para não repetir o erro a cada intervalo
+            if (!falhando) {
+                falhando = true;
+                log.warn("Falha ao sincronizar invalidações de cache entre réplicas: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void enviar() {
+        // Invalidações repetidas no mesmo intervalo (vários blocos do mesmo dono) viram uma linha só
+        Set<InvalidacaoCache> lote = new LinkedHashSet<>();
+        List<InvalidacaoCache> drenadas = new ArrayList<>(tamanhoLote);
+        fila.drainTo(drenadas, tamanhoLote);
+        lote.addAll(drenadas);
+        for (String cache : List.copyOf(cachesTransbordados.keySet())) {
+            String origem = cachesTransbordados.remove(cache);
+            lote.add(new InvalidacaoCache(origem, cache, InvalidacaoCache.Tipo.LIMPAR, null));
+        }
+        if (lote.isEmpty()) {
+            return;
+        }
+        try {
+            invalidacaoRepository.inserir(lote);
+            enviadas.increment(lote.size());
+        } catch (DataAccessException e) {
+            // Volta para a fila; o que não couber limpa o cache inteiro no próximo envio
+            lote.forEach(this::publicar);
+            throw e;
+        }
+    }
+
+    private void receberNovas() {
+        if (ultimoId < 0) {
+            // Os caches começam vazios: só interessam as invalidações a partir de agora
+            ultimoId = invalidacaoRepository.ultimoId();
+            return;
+        }
+
+        long agora = System.currentTimeMillis();
+        lacunas.values().removeIf(prazo -> prazo < agora);
+        List<InvalidacaoCacheRepository.Registro> registros =
+                invalidacaoRepository.buscar(ultimoId, List.copyOf(lacunas.keySet()), tamanhoLote);
+
+        for (InvalidacaoCacheRepository.Registro registro : registros) {
+            if (lacunas.remove(registro.id()) == null && registro.id() > ultimoId) {
+                long saltados = registro.id() - ultimoId - 1;
+                if (saltados > 0 && saltados <= MAX_LACUNAS_POR_SALTO && lacunas.size() + saltados <= MAX_LACUNAS) {
+                    for (long id = ultimoId + 1; id < registro.id(); id++) {
+                        lacunas.put(id, agora + prazoLacunaMs);
+                    }
+                }
+                ultimoId = registro.id();
+            }
+            recebidas.increment();
+            receptores.forEach(receptor -> receptor.accept(registro.invalidacao()));
+        }
+    }
+}
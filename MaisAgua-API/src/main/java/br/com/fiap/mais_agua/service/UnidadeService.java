@@ -27,13 +27,15 @@ public class UnidadeService {
     private ReservatorioService reservatorioService;
     @Autowired
     HistoricoReservatorioRepository historicoReservatorioRepository;
+    @Autowired
+    private IndicePropriedade indicePropriedade;
 
     @Transactional
     public void deletarUnidade(Integer id, Usuario usuario) {
         Unidade unidade = unidadeRepository.findById(id)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Unidade não encontrada"));
 
-        if (!unidade.getUsuario().getIdUsuario().equals(usuario.getIdUsuario())) {
+        if (!indicePropriedade.possuiUnidade(usuario, unidade.getIdUnidade())) {
             throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Você não tem permissão para acessar esta unidade");
         }
 
@@ -52,6 +54,7 @@ public class UnidadeService {
         }
 
         unidadeRepository.delete(unidade);
+        indicePropriedade.invalidar(usuario.getIdUsuario());
     }
 
 }
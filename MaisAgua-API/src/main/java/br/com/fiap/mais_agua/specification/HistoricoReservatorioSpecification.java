@@ -15,8 +15,9 @@ public class HistoricoReservatorioSpecification {
 
             var predicates = new ArrayList<Predicate>();
 
+            // Dono desnormalizado no próprio histórico: filtro direto pelo índice, sem joins
             predicates.add(
-                    cb.equal(root.get("reservatorio").get("unidade").get("usuario"), usuario)
+                    cb.equal(root.get("idUsuario"), usuario.getIdUsuario())
             );
 
             if (filters.idReservatorio() != null) {
@@ -39,13 +40,20 @@ public class HistoricoReservatorioSpecification {
                 );
             }
 
-            var arrayPredicates = predicates.toArray(new Predicate[0]);
-            query.where(cb.and(arrayPredicates));
-
-            // Ordenação: do último id gerado até os primeiros
-            query.orderBy(cb.desc(root.get("reservatorio").get("idReservatorio"))); // Ordena pelo id do Reservatório
+            // Filtro por período (inclusivo nas duas pontas)
+            if (filters.dataInicio() != null) {
+                predicates.add(
+                        cb.greaterThanOrEqualTo(root.get("dataHora"), filters.dataInicio())
+                );
+            }
+            if (filters.dataFim() != null) {
+                predicates.add(
+                        cb.lessThanOrEqualTo(root.get("dataHora"), filters.dataFim())
+                );
+            }
 
-            return query.getRestriction();
+            // A ordenação vem do Pageable (ou do sort do stream), não da specification
+            return cb.and(predicates.toArray(new Predicate[0]));
         };
     }
 }
@@ -2,6 +2,7 @@ package br.com.fiap.mais_agua.specification;
 
 import br.com.fiap.mais_agua.controller.LeituraDispositivoController.LeituraDispositivoFilter;
 import br.com.fiap.mais_agua.model.*;
+import br.com.fiap.mais_agua.model.DTO.CursorLeituraDTO;
 import jakarta.persistence.criteria.*;
 import org.springframework.data.jpa.domain.Specification;
 
@@ -13,24 +14,31 @@ public class LeituraDispositivoSpecification {
         return (root, query, cb) -> {
             var predicates = new ArrayList<Predicate>();
 
-            // Subquery para verificar se o dispositivo da leitura está vinculado a um reservatório do usuário
-            Subquery<Integer> subquery = query.subquery(Integer.class);
-            Root<ReservatorioDispositivo> subRoot = subquery.from(ReservatorioDispositivo.class);
-            Join<ReservatorioDispositivo, Reservatorio> subReservatorio = subRoot.join("reservatorio");
+            // Dono e reservatório desnormalizados na leitura: filtro direto pelo índice, sem subquery de vínculos
+            predicates.add(cb.equal(root.get("idUsuario"), usuario.getIdUsuario()));
 
-            subquery.select(subRoot.get("dispositivo").get("idDispositivo"))
-                    .where(
-                            cb.equal(subReservatorio.get("unidade").get("usuario"), usuario),
-                            filters.idReservatorio() != null ?
-                                    cb.equal(subReservatorio.get("idReservatorio"), filters.idReservatorio()) :
-                                    cb.conjunction()
-                    );
-
-            // Filtra leituras que o dispositivo esteja na subquery
-            predicates.add(root.get("dispositivo").get("idDispositivo").in(subquery));
+            if (filters.idReservatorio() != null) {
+                predicates.add(cb.equal(root.get("idReservatorio"), filters.idReservatorio()));
+            }
 
             return cb.and(predicates.toArray(new Predicate[0]));
         };
     }
 
+    // Keyset: leituras posteriores ao cursor na ordem (dataHora DESC, id DESC)
+    public static Specification<LeituraDispositivo> apos(CursorLeituraDTO cursor) {
+        return (root, query, cb) -> {
+            if (cursor == null) {
+                return cb.conjunction();
+            }
+            return cb.or(
+                    cb.lessThan(root.get("dataHora"), cursor.dataHora()),
+                    cb.and(
+                            cb.equal(root.get("dataHora"), cursor.dataHora()),
+                            cb.lessThan(root.get("id"), cursor.id())
+                    )
+            );
+        };
+    }
+
 }
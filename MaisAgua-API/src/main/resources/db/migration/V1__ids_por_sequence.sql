@@ -0,0 +1,162 @@
+-- Migra os ids de tbl_dispositivo, tbl_reservatorio_dispositivo, tbl_historico_reservatorio e
+-- tbl_leitura_dispositivo de IDENTITY para SEQUENCE (INCREMENT BY 50, igual ao allocationSize das
+-- entidades), permitindo que o Hibernate agrupe os INSERTs em lote.
+--
+-- O SQL Server não permite remover a propriedade IDENTITY de uma coluna, então em cada tabela o id é
+-- copiado para uma coluna nova, que toma o lugar da antiga (mesmo nome, DEFAULT NEXT VALUE FOR da
+-- sequence). As demais colunas, com seus defaults, CHECKs e índices, não são tocadas. Os objetos que usam
+-- a coluna de id são guardados, removidos e recriados pelo próprio script: a chave primária (com o mesmo
+-- tipo, clusterizada ou não), os índices não clusterizados e as FKs. CHECKs, colunas computadas e views
+-- com SCHEMABINDING que dependam do id interrompem a migração antes de qualquer alteração.
+--
+-- Tudo roda em uma única transação: execute em janela de manutenção, com a API parada.
+
+SET XACT_ABORT ON;
+SET NOCOUNT ON;
+BEGIN TRANSACTION;
+
+DECLARE @sql NVARCHAR(MAX);
+DECLARE @tabela SYSNAME;
+DECLARE @coluna SYSNAME;
+DECLARE @sequencia SYSNAME;
+DECLARE @pk SYSNAME;
+DECLARE @tipo_pk NVARCHAR(60);
+DECLARE @inicio INT;
+
+CREATE TABLE #migradas (tabela SYSNAME NOT NULL, coluna SYSNAME NOT NULL, sequencia SYSNAME NOT NULL);
+INSERT INTO #migradas VALUES
+    ('tbl_dispositivo',              'id_dispositivo',              'seq_dispositivo'),
+    ('tbl_reservatorio_dispositivo', 'id_reservatorio_dispositivo', 'seq_reservatorio_dispositivo'),
+    ('tbl_historico_reservatorio',   'id_historico',                'seq_historico_reservatorio'),
+    ('tbl_leitura_dispositivo',      'id_leitura',                  'seq_leitura_dispositivo');
+
+-- 1. Dependências que o script não sabe recriar
+IF EXISTS (
+    SELECT 1
+    FROM #migradas m
+    JOIN sys.sql_expression_dependencies d
+      ON d.referenced_id = OBJECT_ID(m.tabela)
+     AND d.referenced_minor_id = COLUMNPROPERTY(OBJECT_ID(m.tabela), m.coluna, 'ColumnId')
+    WHERE d.is_schema_bound_reference = 1
+)
+BEGIN
+    THROW 50001, 'CHECK, coluna computada ou view com SCHEMABINDING depende de uma coluna de id migrada; ajuste a migração.', 1;
+END;
+
+-- 2. Guarda e remove as FKs que envolvem as tabelas migradas
+SELECT fk.name                              AS nome,
+       OBJECT_NAME(fk.parent_object_id)     AS tabela,
+       pc.name                              AS coluna,
+       OBJECT_NAME(fk.referenced_object_id) AS tabela_referenciada,
+       rc.name                              AS coluna_referenciada
+INTO #fks
+FROM sys.foreign_keys fk
+JOIN sys.foreign_key_columns fkc ON fkc.constraint_object_id = fk.object_id
+JOIN sys.columns pc ON pc.object_id = fkc.parent_object_id AND pc.column_id = fkc.parent_column_id
+JOIN sys.columns rc ON rc.object_id = fkc.referenced_object_id AND rc.column_id = fkc.referenced_column_id
+WHERE OBJECT_NAME(fk.parent_object_id) IN (SELECT tabela FROM #migradas)
+   OR OBJECT_NAME(fk.referenced_object_id) IN (SELECT tabela FROM #migradas);
+
+SET @sql = N'';
+SELECT @sql += N'ALTER TABLE ' + QUOTENAME(tabela) + N' DROP CONSTRAINT ' + QUOTENAME(nome) + N';'
+FROM (SELECT DISTINCT nome, tabela FROM #fks) f;
+EXEC sp_executesql @sql;
+
+-- 3. Guarda e remove os índices (fora a chave primária) que usam a coluna de id
+SELECT i.name AS nome,
+       m.tabela,
+       N'CREATE ' + CASE WHEN i.is_unique = 1 THEN N'UNIQUE ' ELSE N'' END + i.type_desc COLLATE DATABASE_DEFAULT
+           + N' INDEX ' + QUOTENAME(i.name) + N' ON ' + QUOTENAME(m.tabela) + N' ('
+           + (SELECT STRING_AGG(QUOTENAME(c.name) + CASE WHEN ic.is_descending_key = 1 THEN N' DESC' ELSE N'' END, N', ')
+                     WITHIN GROUP (ORDER BY ic.key_ordinal)
+              FROM sys.index_columns ic
+              JOIN sys.columns c ON c.object_id = ic.object_id AND c.column_id = ic.column_id
+              WHERE ic.object_id = i.object_id AND ic.index_id = i.index_id AND ic.is_included_column = 0)
+           + N')'
+           + ISNULL(N' INCLUDE (' + (SELECT STRING_AGG(QUOTENAME(c.name), N', ')
+              FROM sys.index_columns ic
+              JOIN sys.columns c ON c.object_id = ic.object_id AND c.column_id = ic.column_id
+              WHERE ic.object_id = i.object_id AND ic.index_id = i.index_id AND ic.is_included_column = 1) + N')', N'')
+           + ISNULL(N' WHERE ' + i.filter_definition, N'')
+           + N';' AS definicao
+INTO #indices
+FROM #migradas m
+JOIN sys.indexes i ON i.object_id = OBJECT_ID(m.tabela)
+WHERE i.is_primary_key = 0
+  AND i.type IN (1, 2)
+  AND EXISTS (SELECT 1
+              FROM sys.index_columns ic
+              WHERE ic.object_id = i.object_id AND ic.index_id = i.index_id
+                AND ic.column_id = COLUMNPROPERTY(i.object_id, m.coluna, 'ColumnId'));
+
+SET @sql = N'';
+SELECT @sql += N'DROP INDEX ' + QUOTENAME(nome) + N' ON ' + QUOTENAME(tabela) + N';' FROM #indices;
+EXEC sp_executesql @sql;
+
+-- 4. Troca a coluna de id de cada tabela
+DECLARE tabelas CURSOR LOCAL FAST_FORWARD FOR SELECT tabela, coluna, sequencia FROM #migradas;
+OPEN tabelas;
+FETCH NEXT FROM tabelas INTO @tabela, @coluna, @sequencia;
+WHILE @@FETCH_STATUS = 0
+BEGIN
+    SELECT @pk = kc.name, @tipo_pk = i.type_desc
+    FROM sys.key_constraints kc
+    JOIN sys.indexes i ON i.object_id = kc.parent_object_id AND i.index_id = kc.unique_index_id
+    WHERE kc.parent_object_id = OBJECT_ID(@tabela) AND kc.type = 'PK';
+
+    IF @pk IS NOT NULL
+    BEGIN
+        SET @sql = N'ALTER TABLE ' + QUOTENAME(@tabela) + N' DROP CONSTRAINT ' + QUOTENAME(@pk) + N';';
+        EXEC sp_executesql @sql;
+    END;
+
+    -- Cópia do id para a coluna nova, que assume o nome da antiga
+    SET @sql = N'ALTER TABLE ' + QUOTENAME(@tabela) + N' ADD id_migracao INT NULL;';
+    EXEC sp_executesql @sql;
+    SET @sql = N'UPDATE ' + QUOTENAME(@tabela) + N' SET id_migracao = ' + QUOTENAME(@coluna) + N';'
+             + N'ALTER TABLE ' + QUOTENAME(@tabela) + N' ALTER COLUMN id_migracao INT NOT NULL;'
+             + N'ALTER TABLE ' + QUOTENAME(@tabela) + N' DROP COLUMN ' + QUOTENAME(@coluna) + N';';
+    EXEC sp_executesql @sql;
+    SET @sql = @tabela + N'.id_migracao';
+    EXEC sp_rename @sql, @coluna, 'COLUMN';
+
+    SET @sql = N'ALTER TABLE ' + QUOTENAME(@tabela) + N' ADD CONSTRAINT ' + QUOTENAME(N'PK_' + @tabela)
+             + N' PRIMARY KEY ' + ISNULL(@tipo_pk, N'CLUSTERED') + N' (' + QUOTENAME(@coluna) + N');';
+    EXEC sp_executesql @sql;
+
+    -- A sequence começa depois do maior id; o DEFAULT atende INSERTs feitos fora da API
+    SET @sql = N'SELECT @inicio = ISNULL(MAX(' + QUOTENAME(@coluna) + N'), 0) + 50 FROM ' + QUOTENAME(@tabela) + N';';
+    EXEC sp_executesql @sql, N'@inicio INT OUTPUT', @inicio = @inicio OUTPUT;
+    SET @sql = N'CREATE SEQUENCE ' + QUOTENAME(@sequencia) + N' AS INT START WITH '
+             + CAST(@inicio AS NVARCHAR(20)) + N' INCREMENT BY 50;';
+    EXEC sp_executesql @sql;
+    SET @sql = N'ALTER TABLE ' + QUOTENAME(@tabela) + N' ADD CONSTRAINT ' + QUOTENAME(N'DF_' + @tabela + N'_' + @coluna)
+             + N' DEFAULT (NEXT VALUE FOR ' + QUOTENAME(@sequencia) + N') FOR ' + QUOTENAME(@coluna) + N';';
+    EXEC sp_executesql @sql;
+
+    SET @pk = NULL;
+    SET @tipo_pk = NULL;
+    FETCH NEXT FROM tabelas INTO @tabela, @coluna, @sequencia;
+END;
+CLOSE tabelas;
+DEALLOCATE tabelas;
+
+-- 5. Recria os índices guardados no passo 3
+SET @sql = N'';
+SELECT @sql += definicao FROM #indices;
+EXEC sp_executesql @sql;
+
+-- 6. Recria as FKs guardadas no passo 2
+SET @sql = N'';
+SELECT @sql += N'ALTER TABLE ' + QUOTENAME(tabela) + N' WITH CHECK ADD CONSTRAINT ' + QUOTENAME(nome)
+             + N' FOREIGN KEY (' + QUOTENAME(coluna) + N') REFERENCES ' + QUOTENAME(tabela_referenciada)
+             + N' (' + QUOTENAME(coluna_referenciada) + N');'
+FROM #fks;
+EXEC sp_executesql @sql;
+
+DROP TABLE #indices;
+DROP TABLE #fks;
+DROP TABLE #migradas;
+
+COMMIT TRANSACTION;
+GO
@@ -0,0 +1,7 @@
+-- Índice de suporte à paginação por cursor de /leitura-dispositivo/cursor: para cada dispositivo do
+-- usuário as leituras ficam ordenadas por (data_hora, id_leitura), então a busca a partir do cursor é
+-- um seek no índice, sem ordenação nem COUNT(*), independente da profundidade da página.
+
+CREATE NONCLUSTERED INDEX IX_tbl_leitura_dispositivo_dispositivo_data_hora
+    ON tbl_leitura_dispositivo (id_dispositivo, data_hora, id_leitura);
+GO
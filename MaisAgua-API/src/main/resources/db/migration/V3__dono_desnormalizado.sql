@@ -0,0 +1,86 @@
+-- Desnormaliza o dono (id_usuario) e o reservatório (id_reservatorio) nas leituras e o dono nos
+-- históricos, para que as consultas por usuário sejam um range scan em um único índice em vez do
+-- IN (subquery) sobre tbl_reservatorio_dispositivo -> tbl_reservatorio -> tbl_unidade.
+--
+-- A API grava esses valores na escrita de cada linha e não os reescreve quando um vínculo entre
+-- reservatório e dispositivo muda: cada leitura fica com quem era dono do dispositivo quando chegou. O
+-- backfill abaixo segue a mesma regra (vínculo vigente na data da leitura; leituras anteriores a qualquer
+-- vínculo ficam sem dono), preenche as linhas existentes em blocos de ids, cada bloco na sua própria
+-- transação, e pode ser reexecutado com a API no ar (só atualiza linhas ainda nulas).
+
+SET NOCOUNT ON;
+
+-- 1. Colunas
+IF COL_LENGTH('tbl_leitura_dispositivo', 'id_reservatorio') IS NULL
+    ALTER TABLE tbl_leitura_dispositivo ADD id_reservatorio INT NULL;
+IF COL_LENGTH('tbl_leitura_dispositivo', 'id_usuario') IS NULL
+    ALTER TABLE tbl_leitura_dispositivo ADD id_usuario INT NULL;
+IF COL_LENGTH('tbl_historico_reservatorio', 'id_usuario') IS NULL
+    ALTER TABLE tbl_historico_reservatorio ADD id_usuario INT NULL;
+GO
+
+SET NOCOUNT ON;
+
+DECLARE @tamanho_bloco INT = 50000;
+DECLARE @inicio INT;
+DECLARE @fim INT;
+
+-- 2. Vínculos de cada dispositivo, para achar o vigente na data de cada leitura (mesma ordem usada pela API)
+SELECT rd.id_dispositivo, rd.data_instalacao, rd.id_reservatorio_dispositivo, r.id_reservatorio, u.id_usuario
+INTO #vinculos
+FROM tbl_reservatorio_dispositivo rd
+JOIN tbl_reservatorio r ON r.id_reservatorio = rd.id_reservatorio
+JOIN tbl_unidade u ON u.id_unidade = r.id_unidade
+WHERE rd.id_dispositivo IS NOT NULL;
+
+CREATE UNIQUE CLUSTERED INDEX IX_vinculos ON #vinculos (id_dispositivo, data_instalacao, id_reservatorio_dispositivo);
+
+-- 3. Backfill das leituras
+SELECT @inicio = MIN(id_leitura), @fim = MAX(id_leitura) FROM tbl_leitura_dispositivo;
+WHILE @inicio <= @fim
+BEGIN
+    UPDATE l
+    SET l.id_reservatorio = v.id_reservatorio,
+        l.id_usuario = v.id_usuario
+    FROM tbl_leitura_dispositivo l
+    CROSS APPLY (
+        SELECT TOP 1 vd.id_reservatorio, vd.id_usuario
+        FROM #vinculos vd
+        WHERE vd.id_dispositivo = l.id_dispositivo
+          AND vd.data_instalacao <= l.data_hora
+        ORDER BY vd.data_instalacao DESC, vd.id_reservatorio_dispositivo DESC
+    ) v
+    WHERE l.id_leitura >= @inicio AND l.id_leitura < @inicio + @tamanho_bloco
+      AND l.id_usuario IS NULL;
+
+    SET @inicio += @tamanho_bloco;
+END;
+
+-- 4. Backfill dos históricos
+SELECT @inicio = MIN(id_historico), @fim = MAX(id_historico) FROM tbl_historico_reservatorio;
+WHILE @inicio <= @fim
+BEGIN
+    UPDATE h
+    SET h.id_usuario = u.id_usuario
+    FROM tbl_historico_reservatorio h
+    JOIN tbl_reservatorio r ON r.id_reservatorio = h.id_reservatorio
+    JOIN tbl_unidade u ON u.id_unidade = r.id_unidade
+    WHERE h.id_historico >= @inicio AND h.id_historico < @inicio + @tamanho_bloco
+      AND h.id_usuario IS NULL;
+
+    SET @inicio += @tamanho_bloco;
+END;
+
+DROP TABLE #vinculos;
+GO
+
+-- 5. Índices das consultas por usuário (listagem paginada, cursor e filtro por reservatório)
+CREATE NONCLUSTERED INDEX IX_tbl_leitura_dispositivo_usuario_data_hora
+    ON tbl_leitura_dispositivo (id_usuario, data_hora, id_leitura);
+
+CREATE NONCLUSTERED INDEX IX_tbl_leitura_dispositivo_reservatorio_data_hora
+    ON tbl_leitura_dispositivo (id_reservatorio, data_hora, id_leitura);
+
+CREATE NONCLUSTERED INDEX IX_tbl_historico_reservatorio_usuario_data_hora
+    ON tbl_historico_reservatorio (id_usuario, data_hora, id_historico);
+GO
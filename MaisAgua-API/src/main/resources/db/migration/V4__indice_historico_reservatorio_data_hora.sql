@@ -0,0 +1,7 @@
+-- Índice do último histórico por reservatório (perfil em consulta única e geração diária de leituras):
+-- o TOP 1 ... ORDER BY data_hora DESC vira um seek no fim do intervalo do reservatório, já com o nível.
+
+CREATE NONCLUSTERED INDEX IX_tbl_historico_reservatorio_reservatorio_data_hora
+    ON tbl_historico_reservatorio (id_reservatorio, data_hora, id_historico)
+    INCLUDE (nivel_litros);
+GO
@@ -0,0 +1,52 @@
+-- Tabela de estado atual: uma linha por reservatório com o último histórico (nível e status) e a última
+-- leitura dos seus dispositivos (nível %, pH e turbidez). A API mantém a tabela com MERGE na mesma
+-- transação de cada gravação de histórico ou leitura, então a consulta do estado atual é um seek pela
+-- chave primária, independente do tamanho do histórico.
+
+CREATE TABLE tbl_estado_atual_reservatorio (
+    id_reservatorio        INT           NOT NULL,
+    id_usuario             INT           NULL,
+    nivel_litros           INT           NULL,
+    id_status_reservatorio INT           NULL,
+    data_hora_historico    DATETIME2     NULL,
+    id_dispositivo         INT           NULL,
+    nivel_pct              INT           NULL,
+    ph_int                 DECIMAL(4, 2) NULL,
+    turbidez_ntu           INT           NULL,
+    data_hora_leitura      DATETIME2     NULL,
+    CONSTRAINT PK_tbl_estado_atual_reservatorio PRIMARY KEY (id_reservatorio)
+);
+GO
+
+-- Backfill: último histórico de cada reservatório
+INSERT INTO tbl_estado_atual_reservatorio (id_reservatorio, id_usuario, nivel_litros, id_status_reservatorio, data_hora_historico)
+SELECT id_reservatorio, id_usuario, nivel_litros, id_status_reservatorio, data_hora
+FROM (
+    SELECT h.id_reservatorio, h.id_usuario, h.nivel_litros, h.id_status_reservatorio, h.data_hora,
+           ROW_NUMBER() OVER (PARTITION BY h.id_reservatorio ORDER BY h.data_hora DESC, h.id_historico DESC) AS ordem
+    FROM tbl_historico_reservatorio h
+) ultimos
+WHERE ordem = 1;
+
+-- Backfill: última leitura de cada reservatório (depende do id_reservatorio preenchido pela V3)
+MERGE tbl_estado_atual_reservatorio AS alvo
+USING (
+    SELECT id_reservatorio, id_usuario, id_dispositivo, nivel_pct, ph_int, turbidez_ntu, data_hora
+    FROM (
+        SELECT l.id_reservatorio, l.id_usuario, l.id_dispositivo, l.nivel_pct, l.ph_int, l.turbidez_ntu, l.data_hora,
+               ROW_NUMBER() OVER (PARTITION BY l.id_reservatorio ORDER BY l.data_hora DESC, l.id_leitura DESC) AS ordem
+        FROM tbl_leitura_dispositivo l
+        WHERE l.id_reservatorio IS NOT NULL
+    ) ultimas
+    WHERE ordem = 1
+) AS origem
+ON alvo.id_reservatorio = origem.id_reservatorio
+WHEN MATCHED THEN
+    UPDATE SET id_dispositivo = origem.id_dispositivo, nivel_pct = origem.nivel_pct, ph_int = origem.ph_int,
+               turbidez_ntu = origem.turbidez_ntu, data_hora_leitura = origem.data_hora,
+               id_usuario = COALESCE(alvo.id_usuario, origem.id_usuario)
+WHEN NOT MATCHED THEN
+    INSERT (id_reservatorio, id_usuario, id_dispositivo, nivel_pct, ph_int, turbidez_ntu, data_hora_leitura)
+    VALUES (origem.id_reservatorio, origem.id_usuario, origem.id_dispositivo, origem.nivel_pct,
+            origem.ph_int, origem.turbidez_ntu, origem.data_hora);
+GO
@@ -0,0 +1,8 @@
+-- Agregações por intervalo das leituras (/agregacao/leituras): o índice por reservatório passa a cobrir
+-- os valores agregados, evitando o key lookup na tabela para cada leitura do período.
+
+CREATE NONCLUSTERED INDEX IX_tbl_leitura_dispositivo_reservatorio_data_hora
+    ON tbl_leitura_dispositivo (id_reservatorio, data_hora, id_leitura)
+    INCLUDE (nivel_pct, ph_int, turbidez_ntu)
+    WITH (DROP_EXISTING = ON);
+GO
@@ -0,0 +1,62 @@
+-- Rollups das leituras por hora (H) e por dia (D): uma linha por dispositivo, reservatório e bucket com
+-- quantidade, somas, mínimos, máximos e a última leitura. O reservatório faz parte da chave porque o dispositivo
+-- pode ser revinculado no meio de um bucket: as leituras de antes e de depois ficam em linhas separadas, cada
+-- uma com o seu reservatório e dono. Leituras sem reservatório não entram nos rollups. A API soma as leituras novas com MERGE na mesma transação da gravação
+-- e recalcula o bucket quando uma leitura é alterada ou excluída. As agregações por hora, dia e semana
+-- (/agregacao/leituras) leem só esta tabela, pelo índice por reservatório.
+
+CREATE TABLE tbl_rollup_leitura (
+    id_dispositivo      INT            NOT NULL,
+    granularidade       CHAR(1)        NOT NULL,
+    inicio              DATETIME2      NOT NULL,
+    id_reservatorio     INT            NOT NULL,
+    id_usuario          INT            NULL,
+    quantidade          INT            NOT NULL,
+    soma_nivel_pct      BIGINT         NOT NULL,
+    min_nivel_pct       INT            NOT NULL,
+    max_nivel_pct       INT            NOT NULL,
+    soma_ph             DECIMAL(18, 2) NOT NULL,
+    min_ph              DECIMAL(4, 2)  NOT NULL,
+    max_ph              DECIMAL(4, 2)  NOT NULL,
+    soma_turbidez_ntu   BIGINT         NOT NULL,
+    min_turbidez_ntu    INT            NOT NULL,
+    max_turbidez_ntu    INT            NOT NULL,
+    ultimo_nivel_pct    INT            NOT NULL,
+    ultimo_ph           DECIMAL(4, 2)  NOT NULL,
+    ultimo_turbidez_ntu INT            NOT NULL,
+    data_hora_ultima    DATETIME2      NOT NULL,
+    id_leitura_ultima   INT            NULL,
+    CONSTRAINT PK_tbl_rollup_leitura PRIMARY KEY (id_dispositivo, granularidade, inicio, id_reservatorio),
+    CONSTRAINT CK_tbl_rollup_leitura_granularidade CHECK (granularidade IN ('H', 'D'))
+);
+GO
+
+CREATE NONCLUSTERED INDEX IX_tbl_rollup_leitura_reservatorio
+    ON tbl_rollup_leitura (id_reservatorio, granularidade, inicio);
+GO
+
+-- Backfill (o mesmo cálculo da reconstrução feita pela API com --mais-agua.rollup.reconstruir=true)
+INSERT INTO tbl_rollup_leitura (id_dispositivo, granularidade, inicio, id_reservatorio, id_usuario, quantidade,
+                                soma_nivel_pct, min_nivel_pct, max_nivel_pct, soma_ph, min_ph, max_ph,
+                                soma_turbidez_ntu, min_turbidez_ntu, max_turbidez_ntu,
+                                ultimo_nivel_pct, ultimo_ph, ultimo_turbidez_ntu, data_hora_ultima, id_leitura_ultima)
+SELECT id_dispositivo, granularidade, bucket, id_reservatorio, MAX(id_usuario), COUNT(*),
+       SUM(CAST(nivel_pct AS BIGINT)), MIN(nivel_pct), MAX(nivel_pct), SUM(ph_int), MIN(ph_int), MAX(ph_int),
+       SUM(CAST(turbidez_ntu AS BIGINT)), MIN(turbidez_ntu), MAX(turbidez_ntu),
+       MAX(CASE WHEN ordem = 1 THEN nivel_pct END), MAX(CASE WHEN ordem = 1 THEN ph_int END),
+       MAX(CASE WHEN ordem = 1 THEN turbidez_ntu END), MAX(data_hora), MAX(CASE WHEN ordem = 1 THEN id_leitura END)
+FROM (
+    SELECT l.id_dispositivo, l.id_reservatorio, l.id_usuario, l.nivel_pct, l.ph_int, l.turbidez_ntu,
+           l.data_hora, l.id_leitura, g.granularidade, b.bucket,
+           ROW_NUMBER() OVER (PARTITION BY l.id_dispositivo, l.id_reservatorio, g.granularidade, b.bucket
+                              ORDER BY l.data_hora DESC, l.id_leitura DESC) AS ordem
+    FROM tbl_leitura_dispositivo l
+    CROSS JOIN (VALUES ('H'), ('D')) AS g (granularidade)
+    CROSS APPLY (SELECT CASE g.granularidade
+        WHEN 'H' THEN DATEADD(HOUR, DATEDIFF(HOUR, CAST('2000-01-01' AS DATETIME2), l.data_hora), CAST('2000-01-01' AS DATETIME2))
+        ELSE DATEADD(DAY, DATEDIFF(DAY, CAST('2000-01-01' AS DATETIME2), l.data_hora), CAST('2000-01-01' AS DATETIME2))
+    END AS bucket) b
+    WHERE l.id_dispositivo IS NOT NULL AND l.id_reservatorio IS NOT NULL
+) t
+GROUP BY id_dispositivo, id_reservatorio, granularidade, bucket;
+GO
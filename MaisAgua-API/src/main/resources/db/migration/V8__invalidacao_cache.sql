@@ -0,0 +1,19 @@
+-- Log de invalidações de cache entre réplicas (mais-agua.cache.invalidacao.transporte=jdbc). Cada réplica
+-- grava as remoções e recargas feitas nos seus caches e lê, a cada poucos segundos, as linhas das outras
+-- réplicas com id maior que o último lido (seek pela chave primária). As linhas antigas são apagadas pela
+-- própria API depois do tempo de retenção.
+
+CREATE TABLE tbl_invalidacao_cache (
+    id_invalidacao BIGINT       IDENTITY(1, 1) NOT NULL,
+    origem         VARCHAR(36)  NOT NULL,
+    nome_cache     VARCHAR(100) NOT NULL,
+    tipo           VARCHAR(20)  NOT NULL,
+    id_chave       INT          NULL,
+    data_hora      DATETIME2    NOT NULL CONSTRAINT DF_tbl_invalidacao_cache_data_hora DEFAULT SYSUTCDATETIME(),
+    CONSTRAINT PK_tbl_invalidacao_cache PRIMARY KEY (id_invalidacao)
+);
+GO
+
+-- Usado só na limpeza das linhas antigas
+CREATE INDEX IX_tbl_invalidacao_cache_data_hora ON tbl_invalidacao_cache (data_hora);
+GO
@@ -0,0 +1,127 @@
+package br.com.fiap.mais_agua.benchmark;
+
+import br.com.fiap.mais_agua.config.AuthFilter;
+import br.com.fiap.mais_agua.model.Usuario;
+import br.com.fiap.mais_agua.service.TokenService;
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Custo por requisição do {@link AuthFilter} com um Bearer válido, em JMH: "antes" monta o verificador e
+ * verifica a assinatura a cada requisição (como o TokenService fazia), "depois" usa o verificador único e o
+ * cache de tokens verificados. Os dois passam pelo filtro inteiro, com o mesmo token, até o
+ * SecurityContext. Sem banco e sem contexto Spring. Roda só com -Dmais-agua.benchmark=true.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AutenticacaoJwtBenchmarkTest {
+
+    private static final FilterChain CADEIA = (request, response) -> { };
+
+    private AuthFilter filtroAntes;
+    private AuthFilter filtroDepois;
+    private String token;
+
+    @Test
+    @EnabledIfSystemProperty(named = "mais-agua.benchmark", matches = "true")
+    void comparaFiltroSemEComCacheDeTokens() throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(AutenticacaoJwtBenchmarkTest.class.getName() + "\\.")
+                .build())
+                .run();
+    }
+
+    @Setup
+    public void preparar() {
+        TokenService tokenService = tokenService(new TokenService());
+        token = tokenService.createToken(Usuario.builder().idUsuario(1).email("maria@maisagua.com").build()).token();
+        filtroDepois = filtro(tokenService);
+        filtroAntes = filtro(tokenService(new TokenServiceSemCache()));
+
+        // Os dois caminhos precisam autenticar o mesmo usuário
+        assertThat(autenticar(filtroAntes).getIdUsuario()).isEqualTo(1);
+        assertThat(autenticar(filtroDepois).getIdUsuario()).isEqualTo(1);
+    }
+
+    @Benchmark
+    public Usuario antes() {
+        return autenticar(filtroAntes);
+    }
+
+    @Benchmark
+    public Usuario depois() {
+        return autenticar(filtroDepois);
+    }
+
+    private Usuario autenticar(AuthFilter filtro) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/reservatorio");
+        request.addHeader("Authorization", "Bearer " + token);
+        try {
+            filtro.doFilter(request, new MockHttpServletResponse(), CADEIA);
+            return (Usuario) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+
+    private static TokenService tokenService(TokenService tokenService) {
+        ReflectionTestUtils.setField(tokenService, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(tokenService, "maximoTokensVerificados", 10_000L);
+        ReflectionTestUtils.setField(tokenService, "expiraAposVerificacao", Duration.ofMinutes(10));
+        ReflectionTestUtils.invokeMethod(tokenService, "iniciar");
+        return tokenService;
+    }
+
+    private static AuthFilter filtro(TokenService tokenService) {
+        AuthFilter filtro = new AuthFilter();
+        ReflectionTestUtils.setField(filtro, "tokenService", tokenService);
+        return filtro;
+    }
+
+    // Verificação anterior ao cache: verificador novo e assinatura conferida a cada requisição
+    static class TokenServiceSemCache extends TokenService {
+
+        private final Algorithm algorithm = Algorithm.HMAC256("secret");
+
+        @Override
+        public Usuario getUserFromToken(String token) {
+            var verifiedToken = JWT.require(algorithm).build().verify(token);
+
+            return Usuario.builder()
+                    .idUsuario(Integer.valueOf(verifiedToken.getSubject()))
+                    .email(verifiedToken.getClaim("email").toString()).build();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package br.com.fiap.mais_agua.benchmark;
+
+import br.com.fiap.mais_agua.controller.LeituraDispositivoController.LeituraDispositivoFilter;
+import br.com.fiap.mais_agua.model.LeituraDispositivo;
+import br.com.fiap.mais_agua.model.Reservatorio;
+import br.com.fiap.mais_agua.model.ReservatorioDispositivo;
+import br.com.fiap.mais_agua.model.Usuario;
+import br.com.fiap.mais_agua.repository.LeituraDispositivoRepository;
+import br.com.fiap.mais_agua.specification.LeituraDispositivoSpecification;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+
+/**
+ * Compara, contra o banco configurado, a listagem paginada de leituras do usuário com mais leituras filtrando
+ * pelo IN (subquery) de vínculos (como era antes de V3) e pelo dono desnormalizado na própria leitura.
+ * Só leitura, nada é gravado. Roda só com -Dmais-agua.benchmark=true.
+ */
+@SpringBootTest(properties = "spring.jpa.show-sql=false")
+@EnabledIfSystemProperty(named = "mais-agua.benchmark", matches = "true")
+class ConsultaLeiturasPorDonoBenchmarkTest {
+
+    private static final int AQUECIMENTO = 20;
+    private static final int REPETICOES = 200;
+    private static final Pageable PAGINA = PageRequest.of(0, 10, Sort.by(Sort.Direction.DESC, "dataHora"));
+
+    @Autowired
+    private LeituraDispositivoRepository leituraRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void comparaSubqueryComDonoDesnormalizado() {
+        List<Integer> donos = transactionTemplate.execute(status -> entityManager.createQuery(
+                        "SELECT l.idUsuario FROM LeituraDispositivo l WHERE l.idUsuario IS NOT NULL " +
+                                "GROUP BY l.idUsuario ORDER BY COUNT(l) DESC", Integer.class)
+                .setMaxResults(1)
+                .getResultList());
+        assumeFalse(donos.isEmpty(), "O banco precisa ter leituras com dono preenchido (V3)");
+        Usuario usuario = Usuario.builder().idUsuario(donos.get(0)).build();
+
+        Specification<LeituraDispositivo> antes = porSubquery(usuario);
+        Specification<LeituraDispositivo> depois =
+                LeituraDispositivoSpecification.withFilters(new LeituraDispositivoFilter(null), usuario);
+
+        double msAntes = medir(() -> leituraRepository.findAll(antes, PAGINA));
+        double msDepois = medir(() -> leituraRepository.findAll(depois, PAGINA));
+
+        System.out.printf("Usuário %d: subquery de vínculos %.2f ms/consulta, dono desnormalizado %.2f ms/consulta%n",
+                usuario.getIdUsuario(), msAntes, msDepois);
+
+        // As duas formas precisam encontrar leituras do mesmo usuário
+        assertThat(leituraRepository.findAll(depois, PAGINA).getTotalElements()).isPositive();
+    }
+
+    private double medir(Supplier<Page<LeituraDispositivo>> consulta) {
+        for (int i = 0; i < AQUECIMENTO; i++) {
+            consulta.get();
+        }
+        long inicio = System.nanoTime();
+        for (int i = 0; i < REPETICOES; i++) {
+            consulta.get();
+        }
+        return (System.nanoTime() - inicio) / 1_000_000.0 / REPETICOES;
+    }
+
+    // Filtro anterior à desnormalização: dispositivos da leitura em um IN sobre vínculo -> reservatório -> unidade
+    private static Specification<LeituraDispositivo> porSubquery(Usuario usuario) {
+        return (root, query, cb) -> {
+            Subquery<Integer> subquery = query.subquery(Integer.class);
+            Root<ReservatorioDispositivo> subRoot = subquery.from(ReservatorioDispositivo.class);
+            Join<ReservatorioDispositivo, Reservatorio> subReservatorio = subRoot.join("reservatorio");
+
+            subquery.select(subRoot.get("dispositivo").get("idDispositivo"))
+                    .where(cb.equal(subReservatorio.get("unidade").get("usuario").get("idUsuario"), usuario.getIdUsuario()));
+
+            return root.get("dispositivo").get("idDispositivo").in(subquery);
+        };
+    }
+}
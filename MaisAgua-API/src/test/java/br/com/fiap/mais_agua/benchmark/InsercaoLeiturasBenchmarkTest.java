@@ -0,0 +1,88 @@
+package br.com.fiap.mais_agua.benchmark;
+
+import br.com.fiap.mais_agua.model.Dispositivo;
+import br.com.fiap.mais_agua.model.LeituraDispositivo;
+import br.com.fiap.mais_agua.repository.DispositivoRepository;
+import br.com.fiap.mais_agua.service.GravacaoLeituraService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+
+/**
+ * Insere 100 mil leituras pelo caminho de ingestão em lote (ids da sequence, INSERTs agrupados pelo
+ * Hibernate) contra o banco configurado e desfaz tudo no final. Roda só com -Dmais-agua.benchmark=true.
+ */
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.show-sql=false"
+})
+@EnabledIfSystemProperty(named = "mais-agua.benchmark", matches = "true")
+class InsercaoLeiturasBenchmarkTest {
+
+    private static final int TOTAL = 100_000;
+    private static final int BLOCO = 1_000;
+
+    @Autowired
+    private GravacaoLeituraService gravacaoLeituraService;
+
+    @Autowired
+    private DispositivoRepository dispositivoRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void insereCemMilLeiturasEmLote() {
+        List<Dispositivo> dispositivos = dispositivoRepository.findAll(PageRequest.of(0, 1)).getContent();
+        assumeFalse(dispositivos.isEmpty(), "O banco precisa ter ao menos um dispositivo");
+        Integer idDispositivo = dispositivos.get(0).getIdDispositivo();
+
+        Statistics estatisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        estatisticas.clear();
+
+        long inicio = System.nanoTime();
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int gravadas = 0; gravadas < TOTAL; gravadas += BLOCO) {
+                gravacaoLeituraService.inserir(bloco(idDispositivo));
+            }
+            status.setRollbackOnly();
+        });
+        double segundos = (System.nanoTime() - inicio) / 1_000_000_000.0;
+
+        System.out.printf("%d leituras em %.2f s (%.0f leituras/s), %d statements preparados, %d inserts de entidade%n",
+                TOTAL, segundos, TOTAL / segundos, estatisticas.getPrepareStatementCount(), estatisticas.getEntityInsertCount());
+
+        assertThat(estatisticas.getEntityInsertCount()).isEqualTo(TOTAL);
+        // Com IDENTITY seria ao menos um statement por linha; com sequence pooled e batch de 50, bem menos
+        assertThat(estatisticas.getPrepareStatementCount()).isLessThan(TOTAL / 10);
+    }
+
+    private static List<LeituraDispositivo> bloco(Integer idDispositivo) {
+        List<LeituraDispositivo> leituras = new ArrayList<>(BLOCO);
+        for (int i = 0; i < BLOCO; i++) {
+            LeituraDispositivo leitura = new LeituraDispositivo();
+            leitura.setDispositivo(Dispositivo.builder().idDispositivo(idDispositivo).build());
+            leitura.setNivelPct(50);
+            leitura.setTurbidezNtu(1);
+            leitura.setPhInt(new BigDecimal("7.00"));
+            leituras.add(leitura);
+        }
+        return leituras;
+    }
+}
@@ -0,0 +1,154 @@
+package br.com.fiap.mais_agua.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+/**
+ * Recarga antecipada dos caches por usuário: a entrada é recarregada pelo {@link CarregadorCache} do cache,
+ * a partir da chave, e o valor antigo continua sendo servido até a recarga terminar. A remoção do usuário
+ * também alcança a entrada que ainda está sendo carregada.
+ */
+class CacheUsuarioRecargaTest {
+
+    private static final String CACHE = "leituras";
+    private static final ChaveUsuario CHAVE = new ChaveUsuario(1, List.of("filtro", 0));
+
+    private final AtomicReference<String> fonte = new AtomicReference<>("v1");
+    private final CountDownLatch liberarRecarga = new CountDownLatch(1);
+    private final List<Object> chavesCarregadas = new CopyOnWriteArrayList<>();
+
+    private CacheConfig.CacheManagerUsuario cacheManager;
+
+    @AfterEach
+    void encerrar() {
+        liberarRecarga.countDown();
+        if (cacheManager != null) {
+            cacheManager.destroy();
+        }
+    }
+
+    @Test
+    void recarregaPeloCarregadorServindoValorAntigoAteTerminar() {
+        CacheUsuario cache = criarCache(new CarregadorCache() {
+            @Override
+            public String cache() {
+                return CACHE;
+            }
+
+            @Override
+            public Object carregar(Object chave) {
+                chavesCarregadas.add(chave);
+                aguardar(liberarRecarga);
+                return fonte.get();
+            }
+        });
+
+        // Carga pela requisição, com a função do @Cacheable(sync = true)
+        assertThat(cache.get(CHAVE, () -> "v1")).isEqualTo("v1");
+
+        fonte.set("v2");
+        assertThat(cache.recarregarUsuario(1)).isEqualTo(1);
+
+        // Recarga presa no carregador: a leitura continua recebendo o valor antigo, sem esperar nem ficar vazia
+        await().atMost(Duration.ofSeconds(5)).until(() -> !chavesCarregadas.isEmpty());
+        assertThat(cache.get(CHAVE).get()).isEqualTo("v1");
+        assertThat(chavesCarregadas).containsExactly(CHAVE);
+
+        liberarRecarga.countDown();
+        await().atMost(Duration.ofSeconds(5)).until(() -> "v2".equals(cache.get(CHAVE).get()));
+    }
+
+    @Test
+    void cacheSemCarregadorRemoveNoLugarDeRecarregar() {
+        CacheUsuario cache = criarCache(null);
+        cache.get(CHAVE, () -> "v1");
+
+        assertThat(cache.recarregarUsuario(1)).isZero();
+        assertThat(cache.get(CHAVE)).isNull();
+    }
+
+    @Test
+    void recargaDeChaveAusenteNaoCarrega() {
+        CacheUsuario cache = criarCache(new CarregadorCache() {
+            @Override
+            public String cache() {
+                return CACHE;
+            }
+
+            @Override
+            public Object carregar(Object chave) {
+                chavesCarregadas.add(chave);
+                return fonte.get();
+            }
+        });
+
+        assertThat(cache.recarregar(CHAVE)).isFalse();
+        // Consultado direto no Caffeine: o get do Spring carregaria a chave pelo próprio carregador
+        assertThat(((Cache<?, ?>) cache.getNativeCache()).asMap()).isEmpty();
+        assertThat(chavesCarregadas).isEmpty();
+    }
+
+    @Test
+    void remocaoDoUsuarioDuranteACargaDescartaOValorCarregado() throws Exception {
+        CacheUsuario cache = criarCache(null);
+        CountDownLatch cargaIniciada = new CountDownLatch(1);
+
+        // Carga pela requisição lendo o valor de antes da alteração, presa até a remoção começar
+        Thread requisicao = new Thread(() -> cache.get(CHAVE, () -> {
+            cargaIniciada.countDown();
+            aguardar(liberarRecarga);
+            return "v1";
+        }));
+        requisicao.start();
+        assertThat(cargaIniciada.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // Alteração confirmada: a remoção do usuário espera a carga e remove o valor antigo
+        Thread remocao = new Thread(() -> cache.evictarUsuario(1));
+        remocao.start();
+        await().atMost(Duration.ofSeconds(5)).until(() -> remocao.getState() != Thread.State.RUNNABLE);
+        liberarRecarga.countDown();
+        requisicao.join(5000);
+        remocao.join(5000);
+
+        assertThat(((Cache<?, ?>) cache.getNativeCache()).asMap()).isEmpty();
+    }
+
+    private CacheUsuario criarCache(CarregadorCache carregador) {
+        StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+        if (carregador != null) {
+            beanFactory.addBean("carregador", carregador);
+        }
+        CachePropriedades propriedades = new CachePropriedades(
+                new CachePropriedades.Especificacao(100L, null, null, null, null), Map.of());
+        cacheManager = new CacheConfig.CacheManagerUsuario(propriedades, new SimpleMeterRegistry(),
+                Executors.newSingleThreadExecutor(), new TransporteInvalidacaoLocal(),
+                beanFactory.getBeanProvider(CarregadorCache.class));
+        return (CacheUsuario) cacheManager.getCache(CACHE);
+    }
+
+    private static void aguardar(CountDownLatch latch) {
+        try {
+            if (!latch.await(5, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Recarga não liberada");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package br.com.fiap.mais_agua.controller;
+
+import br.com.fiap.mais_agua.App;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+/**
+ * Requisições que chegam pelo balanceador: todas vêm do mesmo IP de proxy (aqui, o loopback), e os limites por
+ * IP precisam usar o cliente informado no X-Forwarded-For, resolvido pelo Tomcat. Servidor real, sem banco.
+ */
+@SpringBootTest(classes = App.class, webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {
+                "mais-agua.login.tentativas-por-ip=1",
+                "mais-agua.limite-taxa.grupos.leitura.taxa-por-segundo=0.001",
+                "mais-agua.limite-taxa.grupos.leitura.capacidade=1"
+        })
+class ClienteAtrasDoBalanceadorTest {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @MockitoBean
+    private AuthenticationManager authenticationManager;
+
+    @Test
+    void tentativasDeLoginContamPorClienteENaoPeloProxy() {
+        when(authenticationManager.authenticate(any())).thenThrow(new BadCredentialsException("Senha incorreta"));
+
+        assertThat(login("198.51.100.40")).isEqualTo(HttpStatus.UNAUTHORIZED);
+        assertThat(login("198.51.100.40")).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+
+        // Outro cliente atrás do mesmo proxy não herda as tentativas do primeiro
+        assertThat(login("198.51.100.41")).isEqualTo(HttpStatus.UNAUTHORIZED);
+    }
+
+    @Test
+    void baldeDeTaxaSemAutenticacaoEPorClienteENaoPeloProxy() {
+        assertThat(leitura("198.51.100.50")).isEqualTo(HttpStatus.UNAUTHORIZED);
+        assertThat(leitura("198.51.100.50")).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+
+        assertThat(leitura("198.51.100.51")).isEqualTo(HttpStatus.UNAUTHORIZED);
+    }
+
+    private HttpStatus leitura(String cliente) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("X-Forwarded-For", cliente);
+        return HttpStatus.valueOf(restTemplate.exchange("/reservatorio", HttpMethod.GET, new HttpEntity<>(headers), String.class)
+                .getStatusCode().value());
+    }
+
+    private HttpStatus login(String cliente) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.set("X-Forwarded-For", cliente);
+        String corpo = """
+                {"email": "maria@maisagua.com", "senha": "errada"}
+                """;
+        return HttpStatus.valueOf(restTemplate.postForEntity("/login", new HttpEntity<>(corpo, headers), String.class)
+                .getStatusCode().value());
+    }
+}
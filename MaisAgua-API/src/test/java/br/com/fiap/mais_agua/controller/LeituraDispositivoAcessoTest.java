@@ -0,0 +1,74 @@
+package br.com.fiap.mais_agua.controller;
+
+import br.com.fiap.mais_agua.model.Dispositivo;
+import br.com.fiap.mais_agua.model.LeituraDispositivo;
+import br.com.fiap.mais_agua.model.Usuario;
+import br.com.fiap.mais_agua.repository.LeituraDispositivoRepository;
+import br.com.fiap.mais_agua.service.IndicePropriedade;
+import br.com.fiap.mais_agua.service.LeituraDispositivoService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Acesso a uma leitura por id depois que o dispositivo troca de dono: vale o dono carimbado na gravação,
+ * como nas listagens. O dono anterior continua vendo a leitura; o novo dono do dispositivo não a alcança.
+ */
+class LeituraDispositivoAcessoTest {
+
+    private static final int ID_LEITURA = 10;
+    private static final int DISPOSITIVO = 5;
+
+    private final Usuario donoAnterior = Usuario.builder().idUsuario(1).build();
+    private final Usuario donoAtual = Usuario.builder().idUsuario(2).build();
+    private final LeituraDispositivoRepository leituraRepository = mock(LeituraDispositivoRepository.class);
+    private final LeituraDispositivoService leituraService = mock(LeituraDispositivoService.class);
+    private final IndicePropriedade indicePropriedade = mock(IndicePropriedade.class);
+
+    private LeituraDispositivoController controller;
+
+    @BeforeEach
+    void iniciar() {
+        controller = new LeituraDispositivoController();
+        ReflectionTestUtils.setField(controller, "leituraRepository", leituraRepository);
+        ReflectionTestUtils.setField(controller, "leituraService", leituraService);
+        ReflectionTestUtils.setField(controller, "indicePropriedade", indicePropriedade);
+
+        // Leitura gravada quando o dispositivo era do dono anterior; hoje o vínculo é do dono atual
+        LeituraDispositivo leitura = new LeituraDispositivo();
+        leitura.setId(ID_LEITURA);
+        leitura.setDispositivo(Dispositivo.builder().idDispositivo(DISPOSITIVO).build());
+        leitura.setIdUsuario(donoAnterior.getIdUsuario());
+        when(leituraRepository.findById(ID_LEITURA)).thenReturn(Optional.of(leitura));
+        when(indicePropriedade.possuiDispositivo(eq(donoAtual), eq(DISPOSITIVO))).thenReturn(true);
+        when(indicePropriedade.possuiDispositivo(eq(donoAnterior), eq(DISPOSITIVO))).thenReturn(false);
+    }
+
+    @Test
+    void donoAnteriorAcessaALeitura() {
+        assertThat(controller.get(ID_LEITURA, donoAnterior).getBody().getId()).isEqualTo(ID_LEITURA);
+    }
+
+    @Test
+    void novoDonoDoDispositivoNaoLeNemExcluiALeitura() {
+        assertThatThrownBy(() -> controller.get(ID_LEITURA, donoAtual))
+                .isInstanceOfSatisfying(ResponseStatusException.class,
+                        e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.FORBIDDEN));
+        assertThatThrownBy(() -> controller.destroy(ID_LEITURA, donoAtual))
+                .isInstanceOf(ResponseStatusException.class);
+        verify(leituraService, never()).excluir(any());
+    }
+}
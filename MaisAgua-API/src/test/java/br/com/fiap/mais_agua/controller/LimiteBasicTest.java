@@ -0,0 +1,67 @@
+package br.com.fiap.mais_agua.controller;
+
+import br.com.fiap.mais_agua.App;
+import br.com.fiap.mais_agua.service.AuthService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * HTTP Basic com credenciais erradas: cada 401 conta nas tentativas do IP, como no /login, e a requisição
+ * seguinte ao limite recebe 429 com Retry-After antes de chegar à verificação das credenciais. Sem banco: o
+ * AuthService é substituído por um mock que não encontra o usuário.
+ */
+@SpringBootTest(classes = App.class, properties = "mais-agua.login.tentativas-por-ip=2")
+@AutoConfigureMockMvc
+class LimiteBasicTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockitoBean
+    private AuthService authService;
+
+    @Test
+    void recusaCom429DepoisDasFalhasDeBasicDoIp() throws Exception {
+        when(authService.loadUserByUsername(any())).thenThrow(new UsernameNotFoundException("Usuário não encontrado"));
+
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(basic("203.0.113.30")).andExpect(status().isUnauthorized());
+        }
+
+        mockMvc.perform(basic("203.0.113.30"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().exists(HttpHeaders.RETRY_AFTER));
+        verify(authService, times(2)).loadUserByUsername(any());
+
+        // Outro IP ainda tem as suas tentativas
+        mockMvc.perform(basic("203.0.113.31")).andExpect(status().isUnauthorized());
+    }
+
+    private static MockHttpServletRequestBuilder basic(String ip) {
+        return get("/reservatorio")
+                .header(HttpHeaders.AUTHORIZATION, "Basic " + Base64.getEncoder()
+                        .encodeToString("maria@maisagua.com:errada".getBytes(StandardCharsets.UTF_8)))
+                .with(request -> {
+                    request.setRemoteAddr(ip);
+                    return request;
+                });
+    }
+}
@@ -0,0 +1,173 @@
+package br.com.fiap.mais_agua.controller;
+
+import br.com.fiap.mais_agua.config.LimiteTaxaPropriedades;
+import br.com.fiap.mais_agua.exception.TooManyRequestsException;
+import br.com.fiap.mais_agua.model.DTO.LeituraLoteDTO;
+import br.com.fiap.mais_agua.model.DTO.LeituraLoteResponseDTO;
+import br.com.fiap.mais_agua.model.Dispositivo;
+import br.com.fiap.mais_agua.model.LeituraDispositivo;
+import br.com.fiap.mais_agua.model.Usuario;
+import br.com.fiap.mais_agua.repository.DispositivoRepository;
+import br.com.fiap.mais_agua.repository.ReservatorioDispositivoRepository;
+import br.com.fiap.mais_agua.service.GravacaoLeituraService;
+import br.com.fiap.mais_agua.service.IndicePropriedade;
+import br.com.fiap.mais_agua.service.LeituraDispositivoService;
+import br.com.fiap.mais_agua.service.LimitadorTaxa;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Balde por dispositivo na ingestão: só é consumido depois da checagem de posse. Leituras com o id do
+ * dispositivo de outro usuário recebem 403 e não esgotam o balde dele; no lote, cada leitura aceita custa um
+ * token do seu dispositivo, e um lote recusado não gasta nenhum balde. Balde de dois tokens por dispositivo,
+ * sem reposição durante o teste.
+ */
+class LimiteDispositivoTest {
+
+    private static final int PROPRIO = 5;
+    private static final int DE_OUTRO_USUARIO = 7;
+    private static final int OUTRO_PROPRIO = 9;
+
+    private final Usuario usuario = Usuario.builder().idUsuario(1).build();
+    private final DispositivoRepository dispositivoRepository = mock(DispositivoRepository.class);
+    private final ReservatorioDispositivoRepository reservatorioDispositivoRepository =
+            mock(ReservatorioDispositivoRepository.class);
+    private final IndicePropriedade indicePropriedade = mock(IndicePropriedade.class);
+    private final GravacaoLeituraService gravacaoLeituraService = mock(GravacaoLeituraService.class);
+
+    private LimitadorTaxa limitadorTaxa;
+    private LeituraDispositivoService leituraService;
+    private LeituraDispositivoController controller;
+
+    @BeforeEach
+    void iniciar() {
+        limitadorTaxa = new LimitadorTaxa();
+        ReflectionTestUtils.setField(limitadorTaxa, "propriedades", new LimiteTaxaPropriedades(100L, Duration.ofMinutes(10),
+                Map.of(LimitadorTaxa.DISPOSITIVO, new LimiteTaxaPropriedades.Balde(0.001, 2))));
+        ReflectionTestUtils.setField(limitadorTaxa, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.invokeMethod(limitadorTaxa, "iniciar");
+
+        leituraService = new LeituraDispositivoService();
+        ReflectionTestUtils.setField(leituraService, "dispositivoRepository", dispositivoRepository);
+        ReflectionTestUtils.setField(leituraService, "reservatorioDispositivoRepository", reservatorioDispositivoRepository);
+        ReflectionTestUtils.setField(leituraService, "gravacaoLeituraService", gravacaoLeituraService);
+        ReflectionTestUtils.setField(leituraService, "validator", Validation.buildDefaultValidatorFactory().getValidator());
+        ReflectionTestUtils.setField(leituraService, "limitadorTaxa", limitadorTaxa);
+
+        controller = new LeituraDispositivoController();
+        ReflectionTestUtils.setField(controller, "dispositivoRepository", dispositivoRepository);
+        ReflectionTestUtils.setField(controller, "leituraService", leituraService);
+        ReflectionTestUtils.setField(controller, "indicePropriedade", indicePropriedade);
+        ReflectionTestUtils.setField(controller, "limitadorTaxa", limitadorTaxa);
+
+        when(dispositivoRepository.findById(any())).thenAnswer(invocacao ->
+                Optional.of(Dispositivo.builder().idDispositivo(invocacao.getArgument(0)).build()));
+        when(indicePropriedade.possuiDispositivo(eq(usuario), eq(PROPRIO))).thenReturn(true);
+        when(indicePropriedade.possuiDispositivo(eq(usuario), eq(DE_OUTRO_USUARIO))).thenReturn(false);
+        when(dispositivoRepository.findIdsExistentes(any())).thenReturn(Set.of(PROPRIO, DE_OUTRO_USUARIO, OUTRO_PROPRIO));
+        when(reservatorioDispositivoRepository.findIdsDispositivoDoUsuario(any(), eq(usuario.getIdUsuario())))
+                .thenReturn(Set.of(PROPRIO, OUTRO_PROPRIO));
+    }
+
+    @Test
+    void leituraComDispositivoDeOutroUsuarioNaoConsomeOBalde() {
+        for (int i = 0; i < 3; i++) {
+            assertThatThrownBy(() -> controller.create(leitura(DE_OUTRO_USUARIO), usuario))
+                    .isInstanceOfSatisfying(ResponseStatusException.class,
+                            e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.FORBIDDEN));
+        }
+
+        // O balde do dono continua cheio
+        assertThat(limitadorTaxa.consumir(LimitadorTaxa.DISPOSITIVO, String.valueOf(DE_OUTRO_USUARIO))).isZero();
+    }
+
+    @Test
+    void leituraDoDonoConsomeOBalde() {
+        ReflectionTestUtils.setField(controller, "leituraService", mock(LeituraDispositivoService.class));
+
+        for (int i = 0; i < 2; i++) {
+            assertThat(controller.create(leitura(PROPRIO), usuario).getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        }
+        assertThatThrownBy(() -> controller.create(leitura(PROPRIO), usuario))
+                .isInstanceOf(TooManyRequestsException.class);
+    }
+
+    @Test
+    void loteCobraSoOsDispositivosDoUsuario() {
+        LeituraLoteResponseDTO resposta = controller.createLote(
+                new LeituraLoteDTO(List.of(leitura(PROPRIO), leitura(DE_OUTRO_USUARIO))), usuario);
+
+        assertThat(resposta.aceitas()).isEqualTo(1);
+        assertThat(resposta.itens()).extracting(LeituraLoteResponseDTO.Item::status).containsExactly(201, 403);
+        verify(gravacaoLeituraService).inserir(anyList());
+        assertThat(limitadorTaxa.consumir(LimitadorTaxa.DISPOSITIVO, String.valueOf(DE_OUTRO_USUARIO))).isZero();
+        // Um token gasto pela leitura do lote, um por esta consulta
+        assertThat(limitadorTaxa.consumir(LimitadorTaxa.DISPOSITIVO, String.valueOf(PROPRIO))).isZero();
+        assertThat(limitadorTaxa.consumir(LimitadorTaxa.DISPOSITIVO, String.valueOf(PROPRIO))).isPositive();
+    }
+
+    @Test
+    void loteCobraUmTokenPorLeitura() {
+        controller.createLote(new LeituraLoteDTO(List.of(leitura(PROPRIO), leitura(PROPRIO))), usuario);
+
+        assertThat(limitadorTaxa.consumir(LimitadorTaxa.DISPOSITIVO, String.valueOf(PROPRIO))).isPositive();
+    }
+
+    @Test
+    void loteRecusadoNaoGastaNenhumBalde() {
+        // O outro dispositivo só tem um token: o lote com duas leituras dele é recusado inteiro, devolvendo
+        // os tokens já reservados do primeiro dispositivo
+        assertThat(limitadorTaxa.consumir(LimitadorTaxa.DISPOSITIVO, String.valueOf(OUTRO_PROPRIO))).isZero();
+
+        assertThatThrownBy(() -> controller.createLote(new LeituraLoteDTO(List.of(
+                leitura(PROPRIO), leitura(OUTRO_PROPRIO), leitura(OUTRO_PROPRIO))), usuario))
+                .isInstanceOf(TooManyRequestsException.class);
+
+        verify(gravacaoLeituraService, never()).inserir(anyList());
+        for (int i = 0; i < 2; i++) {
+            assertThat(limitadorTaxa.consumir(LimitadorTaxa.DISPOSITIVO, String.valueOf(PROPRIO))).isZero();
+        }
+        assertThat(limitadorTaxa.consumir(LimitadorTaxa.DISPOSITIVO, String.valueOf(OUTRO_PROPRIO))).isZero();
+    }
+
+    @Test
+    void loteComMaisLeiturasQueACapacidadeDoDispositivoPedeDivisao() {
+        assertThatThrownBy(() -> controller.createLote(new LeituraLoteDTO(List.of(
+                leitura(PROPRIO), leitura(PROPRIO), leitura(PROPRIO))), usuario))
+                .isInstanceOfSatisfying(ResponseStatusException.class,
+                        e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST));
+
+        assertThat(limitadorTaxa.consumir(LimitadorTaxa.DISPOSITIVO, String.valueOf(PROPRIO))).isZero();
+    }
+
+    private static LeituraDispositivo leitura(int idDispositivo) {
+        LeituraDispositivo leitura = new LeituraDispositivo();
+        leitura.setNivelPct(50);
+        leitura.setTurbidezNtu(1);
+        leitura.setPhInt(new BigDecimal("7.00"));
+        leitura.setDispositivo(Dispositivo.builder().idDispositivo(idDispositivo).build());
+        return leitura;
+    }
+}
@@ -0,0 +1,50 @@
+package br.com.fiap.mais_agua.controller;
+
+import br.com.fiap.mais_agua.App;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Limite de taxa na cadeia de segurança: sem autenticação o balde é o do IP, e a requisição além da rajada
+ * do grupo "leitura" recebe 429 com Retry-After antes de chegar à autorização ou ao controller. Sem banco.
+ */
+@SpringBootTest(classes = App.class, properties = {
+        "mais-agua.limite-taxa.grupos.leitura.taxa-por-segundo=0.001",
+        "mais-agua.limite-taxa.grupos.leitura.capacidade=2"
+})
+@AutoConfigureMockMvc
+class LimiteTaxaFilterTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void recusaCom429DepoisDaRajadaDoIp() throws Exception {
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(leitura("198.51.100.20")).andExpect(status().isUnauthorized());
+        }
+
+        mockMvc.perform(leitura("198.51.100.20"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().exists(HttpHeaders.RETRY_AFTER));
+
+        // Outro IP tem o próprio balde
+        mockMvc.perform(leitura("198.51.100.21")).andExpect(status().isUnauthorized());
+    }
+
+    private static MockHttpServletRequestBuilder leitura(String ip) {
+        return get("/reservatorio").with(request -> {
+            request.setRemoteAddr(ip);
+            return request;
+        });
+    }
+}
@@ -0,0 +1,90 @@
+package br.com.fiap.mais_agua.controller;
+
+import br.com.fiap.mais_agua.App;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.InternalAuthenticationServiceException;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * POST /login com credenciais erradas: a verificação roda no pool de login (resposta assíncrona, 401) até
+ * o limite de tentativas do IP, e a tentativa seguinte é recusada na hora com 429 e Retry-After, sem chegar
+ * ao pool. Falhas do serviço de autenticação ou de infraestrutura não viram 401. Sem banco: o
+ * AuthenticationManager é substituído por um mock.
+ */
+@SpringBootTest(classes = App.class, properties = "mais-agua.login.tentativas-por-ip=2")
+@AutoConfigureMockMvc
+class LoginLimiteTentativasTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockitoBean
+    private AuthenticationManager authenticationManager;
+
+    @Test
+    void recusaCom429DepoisDoLimiteDeTentativasDoIp() throws Exception {
+        when(authenticationManager.authenticate(any())).thenThrow(new BadCredentialsException("Senha incorreta"));
+
+        for (int i = 0; i < 2; i++) {
+            MvcResult resultado = mockMvc.perform(login("203.0.113.10"))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+            mockMvc.perform(asyncDispatch(resultado))
+                    .andExpect(status().isUnauthorized());
+        }
+
+        mockMvc.perform(login("203.0.113.10"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().exists(HttpHeaders.RETRY_AFTER));
+    }
+
+    @Test
+    void falhaDoServicoNaoViraCredencialErrada() throws Exception {
+        when(authenticationManager.authenticate(any()))
+                .thenThrow(new InternalAuthenticationServiceException("Banco indisponível"))
+                .thenThrow(new DataAccessResourceFailureException("Banco indisponível"));
+
+        MvcResult servicoIndisponivel = mockMvc.perform(login("203.0.113.11"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(servicoIndisponivel))
+                .andExpect(status().isServiceUnavailable());
+
+        MvcResult falhaInesperada = mockMvc.perform(login("203.0.113.11"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(falhaInesperada))
+                .andExpect(status().is5xxServerError());
+    }
+
+    private static MockHttpServletRequestBuilder login(String ip) {
+        return post("/login")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("""
+                        {"email": "maria@maisagua.com", "senha": "errada"}
+                        """)
+                .with(request -> {
+                    request.setRemoteAddr(ip);
+                    return request;
+                });
+    }
+}
@@ -0,0 +1,135 @@
+package br.com.fiap.mais_agua.repository;
+
+import br.com.fiap.mais_agua.controller.HistoricoReservatorioController.HistoricoReservatorioFilters;
+import br.com.fiap.mais_agua.model.Cidade;
+import br.com.fiap.mais_agua.model.Dispositivo;
+import br.com.fiap.mais_agua.model.Estado;
+import br.com.fiap.mais_agua.model.HistoricoReservatorio;
+import br.com.fiap.mais_agua.model.Pais;
+import br.com.fiap.mais_agua.model.Reservatorio;
+import br.com.fiap.mais_agua.model.ReservatorioDispositivo;
+import br.com.fiap.mais_agua.model.StatusReservatorio;
+import br.com.fiap.mais_agua.model.Unidade;
+import br.com.fiap.mais_agua.model.Usuario;
+import br.com.fiap.mais_agua.specification.HistoricoReservatorioSpecification;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Conta os statements das listagens com entity graph: cada uma busca a página e as associações que o toDTO
+ * percorre em um único SELECT, qualquer que seja o número de registros (sem N+1). Roda em um H2 em memória
+ * com o schema gerado pelas entidades.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+class ListagemEntityGraphTest {
+
+    private static final int QUANTIDADE = 3;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private HistoricoReservatorioRepository historicoRepository;
+
+    @Autowired
+    private ReservatorioDispositivoRepository reservatorioDispositivoRepository;
+
+    @Autowired
+    private CidadeRepository cidadeRepository;
+
+    private Usuario usuario;
+    private Statistics estatisticas;
+
+    @BeforeEach
+    void popular() {
+        Pais pais = entityManager.persist(new Pais(null, "Brasil"));
+        Estado estado = entityManager.persist(new Estado(null, "São Paulo", pais));
+        usuario = entityManager.persist(Usuario.builder().nome("Maria").email("maria@maisagua.com").senha("123456").build());
+
+        for (int i = 0; i < QUANTIDADE; i++) {
+            entityManager.persist(new Cidade(null, "Cidade " + i, estado));
+
+            StatusReservatorio status = new StatusReservatorio();
+            status.setStatus("Status " + i);
+            entityManager.persist(status);
+
+            // Uma unidade, um reservatório e um dispositivo distintos por volta: sem o graph, cada um seria um SELECT
+            Unidade unidade = entityManager.persist(Unidade.builder().nome("Unidade " + i).capacidadeTotalLitros(5000)
+                    .dataCadastro(LocalDateTime.now()).usuario(usuario).build());
+            Reservatorio reservatorio = entityManager.persist(Reservatorio.builder().nome("Reservatório " + i)
+                    .capacidadeTotalLitros(1000).dataInstalacao(LocalDateTime.now()).unidade(unidade).build());
+            Dispositivo dispositivo = entityManager.persist(Dispositivo.builder().dataInstalacao(LocalDateTime.now()).build());
+            entityManager.persist(ReservatorioDispositivo.builder().dataInstalacao(LocalDateTime.now())
+                    .reservatorio(reservatorio).dispositivo(dispositivo).build());
+
+            HistoricoReservatorio historico = new HistoricoReservatorio();
+            historico.setNivelLitros(500);
+            historico.setReservatorio(reservatorio);
+            historico.setStatus(status);
+            historico.setIdUsuario(usuario.getIdUsuario());
+            entityManager.persist(historico);
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        estatisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        estatisticas.clear();
+    }
+
+    @Test
+    void listagemDeHistoricosEmUmStatement() {
+        var filtros = new HistoricoReservatorioFilters(null, null, null, null, null);
+        var pagina = historicoRepository.findAll(HistoricoReservatorioSpecification.withFilters(filtros, usuario),
+                PageRequest.of(0, 10, Sort.by(Sort.Direction.DESC, "dataHora")));
+
+        assertThat(pagina.getContent()).hasSize(QUANTIDADE);
+        pagina.forEach(historico -> {
+            assertThat(historico.getReservatorio().getUnidade().getUsuario().getNome()).isEqualTo("Maria");
+            assertThat(historico.getStatus().getStatus()).isNotBlank();
+        });
+        assertThat(estatisticas.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void listagemDeVinculosEmUmStatement() {
+        List<ReservatorioDispositivo> vinculos =
+                reservatorioDispositivoRepository.findByReservatorio_Unidade_Usuario_IdUsuario(usuario.getIdUsuario());
+
+        assertThat(vinculos).hasSize(QUANTIDADE);
+        vinculos.forEach(vinculo -> {
+            assertThat(vinculo.getReservatorio().getUnidade().getUsuario().getEmail()).isEqualTo("maria@maisagua.com");
+            assertThat(vinculo.getDispositivo().getIdDispositivo()).isNotNull();
+        });
+        assertThat(estatisticas.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void listagemDeCidadesEmUmStatement() {
+        List<Cidade> cidades = cidadeRepository.findAll();
+
+        assertThat(cidades).hasSize(QUANTIDADE);
+        cidades.forEach(cidade -> assertThat(cidade.getEstado().getPais().getNome()).isEqualTo("Brasil"));
+        assertThat(estatisticas.getPrepareStatementCount()).isEqualTo(1);
+    }
+}
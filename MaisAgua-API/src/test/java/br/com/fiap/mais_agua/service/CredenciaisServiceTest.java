@@ -0,0 +1,92 @@
+package br.com.fiap.mais_agua.service;
+
+import br.com.fiap.mais_agua.config.TransporteInvalidacaoLocal;
+import br.com.fiap.mais_agua.model.Usuario;
+import br.com.fiap.mais_agua.model.UsuarioAlterado;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Cache de credenciais verificadas: a segunda autenticação com as mesmas credenciais não consulta o banco,
+ * e uma alteração do usuário (inclusive durante uma verificação em andamento) descarta o resultado.
+ */
+class CredenciaisServiceTest {
+
+    private static final String EMAIL = "maria@maisagua.com";
+    private static final String SENHA = "123456";
+
+    private final PasswordEncoder passwordEncoder = new BCryptPasswordEncoder(4);
+    private final AuthService authService = mock(AuthService.class);
+    private CredenciaisService credenciaisService;
+
+    @BeforeEach
+    void iniciar() {
+        credenciaisService = new CredenciaisService();
+        ReflectionTestUtils.setField(credenciaisService, "authService", authService);
+        ReflectionTestUtils.setField(credenciaisService, "passwordEncoder", passwordEncoder);
+        ReflectionTestUtils.setField(credenciaisService, "transporteInvalidacao", new TransporteInvalidacaoLocal());
+        ReflectionTestUtils.setField(credenciaisService, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(credenciaisService, "maximoEntradas", 100L);
+        ReflectionTestUtils.setField(credenciaisService, "expiraApos", Duration.ofMinutes(5));
+        credenciaisService.iniciar();
+    }
+
+    @Test
+    void segundaAutenticacaoUsaOCache() {
+        when(authService.loadUserByUsername(EMAIL)).thenAnswer(invocacao -> usuario());
+
+        autenticar();
+        autenticar();
+
+        verify(authService, times(1)).loadUserByUsername(EMAIL);
+    }
+
+    @Test
+    void alteracaoDoUsuarioDescartaAsCredenciais() {
+        when(authService.loadUserByUsername(EMAIL)).thenAnswer(invocacao -> usuario());
+
+        autenticar();
+        credenciaisService.aoAlterarUsuario(new UsuarioAlterado(1));
+        autenticar();
+
+        verify(authService, times(2)).loadUserByUsername(EMAIL);
+    }
+
+    @Test
+    void verificacaoEmAndamentoDuranteATrocaDeSenhaNaoEGuardada() {
+        // A troca de senha é confirmada enquanto a verificação ainda usa o usuário lido antes dela
+        when(authService.loadUserByUsername(EMAIL)).thenAnswer(invocacao -> {
+            Usuario lidoAntes = usuario();
+            credenciaisService.invalidar(1);
+            return lidoAntes;
+        });
+
+        assertThat(autenticar().getIdUsuario()).isEqualTo(1);
+        autenticar();
+
+        verify(authService, times(2)).loadUserByUsername(EMAIL);
+    }
+
+    private Usuario autenticar() {
+        var autenticado = credenciaisService.authenticate(
+                UsernamePasswordAuthenticationToken.unauthenticated(EMAIL, SENHA));
+        return (Usuario) autenticado.getPrincipal();
+    }
+
+    private Usuario usuario() {
+        return Usuario.builder().idUsuario(1).nome("Maria").email(EMAIL).senha(passwordEncoder.encode(SENHA)).build();
+    }
+}
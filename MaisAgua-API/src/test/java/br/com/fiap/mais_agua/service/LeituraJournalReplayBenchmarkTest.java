@@ -0,0 +1,78 @@
+package br.com.fiap.mais_agua.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Vazão do replay do journal, sem o banco: o journal acumula 1 milhão de leituras com o banco fora do ar,
+ * é reaberto (recuperação do último segmento) e mede-se o tempo até o replay entregar tudo ao repositório.
+ * Roda só com -Dmais-agua.benchmark=true.
+ */
+@EnabledIfSystemProperty(named = "mais-agua.benchmark", matches = "true")
+class LeituraJournalReplayBenchmarkTest {
+
+    private static final int TOTAL = 1_000_000;
+    private static final int BLOCO = 1_000;
+
+    @TempDir
+    Path diretorio;
+
+    @Test
+    void replayDeUmMilhaoDeLeituras() throws Exception {
+        GravacaoLeituraService foraDoAr = mock(GravacaoLeituraService.class);
+        doThrow(new CannotGetJdbcConnectionException("banco fora do ar")).when(foraDoAr).inserir(anyList());
+        LeituraJournal acumulando = journal(foraDoAr);
+        acumulando.iniciar();
+        long inicioEscrita = System.nanoTime();
+        for (int i = 0; i < TOTAL; i += BLOCO) {
+            acumulando.anexar(LeituraJournalTest.leituras(BLOCO));
+        }
+        double segundosEscrita = (System.nanoTime() - inicioEscrita) / 1_000_000_000.0;
+        acumulando.parar();
+
+        AtomicLong entregues = new AtomicLong();
+        GravacaoLeituraService repository = mock(GravacaoLeituraService.class);
+        doAnswer(chamada -> entregues.addAndGet(((List<?>) chamada.getArgument(0)).size())).when(repository).inserir(anyList());
+        LeituraJournal replay = journal(repository);
+
+        long inicioReplay = System.nanoTime();
+        replay.iniciar();
+        LeituraJournalTest.aguardar(() -> entregues.get() == TOTAL);
+        double segundosReplay = (System.nanoTime() - inicioReplay) / 1_000_000_000.0;
+        replay.parar();
+
+        System.out.printf("Escrita: %d leituras em %.2f s (%.0f leituras/s)%n", TOTAL, segundosEscrita, TOTAL / segundosEscrita);
+        System.out.printf("Replay: %d leituras em %.2f s (%.0f leituras/s)%n", TOTAL, segundosReplay, TOTAL / segundosReplay);
+        assertThat(entregues.get()).isEqualTo(TOTAL);
+    }
+
+    private LeituraJournal journal(GravacaoLeituraService repository) {
+        LeituraJournal journal = new LeituraJournal();
+        ReflectionTestUtils.setField(journal, "gravacaoLeituraService", repository);
+        ReflectionTestUtils.setField(journal, "transactionTemplate", new TransactionTemplate(mock(PlatformTransactionManager.class)));
+        ReflectionTestUtils.setField(journal, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(journal, "diretorio", diretorio);
+        ReflectionTestUtils.setField(journal, "tamanhoSegmentoMb", 8);
+        ReflectionTestUtils.setField(journal, "maxSegmentos", 64);
+        ReflectionTestUtils.setField(journal, "tamanhoLote", 1000);
+        ReflectionTestUtils.setField(journal, "intervaloMs", 10L);
+        ReflectionTestUtils.setField(journal, "fsyncIntervaloMs", 200L);
+        return journal;
+    }
+}
@@ -0,0 +1,141 @@
+package br.com.fiap.mais_agua.service;
+
+import br.com.fiap.mais_agua.model.Dispositivo;
+import br.com.fiap.mais_agua.model.LeituraDispositivo;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class LeituraJournalTest {
+
+    @TempDir
+    Path diretorio;
+
+    private final GravacaoLeituraService repository = mock(GravacaoLeituraService.class);
+    private final List<LeituraDispositivo> gravadas = Collections.synchronizedList(new ArrayList<>());
+    private LeituraJournal journal;
+
+    @AfterEach
+    void parar() throws InterruptedException {
+        if (journal != null) {
+            journal.parar();
+        }
+    }
+
+    @Test
+    void mantemOLoteNoJournalEnquantoOBancoEstaIndisponivel() throws Exception {
+        AtomicInteger falhas = new AtomicInteger();
+        doAnswer(chamada -> {
+            // Indisponibilidade bem maior que as 5 tentativas que antes levavam ao descarte
+            if (falhas.incrementAndGet() <= 8) {
+                throw new CannotGetJdbcConnectionException("banco fora do ar");
+            }
+            gravadas.addAll(chamada.getArgument(0));
+            return null;
+        }).when(repository).inserir(anyList());
+
+        journal = iniciar();
+        journal.anexar(leituras(10));
+
+        aguardar(() -> gravadas.size() == 10);
+        assertThat(falhas.get()).isGreaterThan(8);
+        assertThat(diretorio.resolve("quarentena.csv")).doesNotExist();
+    }
+
+    @Test
+    void colocaEmQuarentenaSoALeituraRecusadaPeloBanco() throws Exception {
+        doAnswer(chamada -> {
+            List<LeituraDispositivo> lote = chamada.getArgument(0);
+            if (lote.stream().anyMatch(leitura -> leitura.getNivelPct() < 0)) {
+                throw new DataIntegrityViolationException("CK_nivel_pct");
+            }
+            gravadas.addAll(lote);
+            return null;
+        }).when(repository).inserir(anyList());
+
+        List<LeituraDispositivo> leituras = leituras(5);
+        leituras.get(2).setNivelPct(-1);
+        journal = iniciar();
+        journal.anexar(leituras);
+
+        aguardar(() -> gravadas.size() == 4 && Files.exists(diretorio.resolve("quarentena.csv")));
+        List<String> quarentena = Files.readAllLines(diretorio.resolve("quarentena.csv"));
+        assertThat(quarentena).hasSize(1);
+        assertThat(quarentena.get(0)).startsWith("2;-1;").contains("CK_nivel_pct");
+    }
+
+    @Test
+    void arredondaOPhParaDuasCasas() throws Exception {
+        doAnswer(chamada -> {
+            gravadas.addAll(chamada.getArgument(0));
+            return null;
+        }).when(repository).inserir(anyList());
+
+        LeituraDispositivo leitura = leituras(1).get(0);
+        leitura.setPhInt(new BigDecimal("7.006"));
+        journal = iniciar();
+        journal.anexar(List.of(leitura));
+
+        aguardar(() -> gravadas.size() == 1);
+        assertThat(gravadas.get(0).getPhInt()).isEqualByComparingTo("7.01");
+    }
+
+    private LeituraJournal iniciar() throws Exception {
+        LeituraJournal journal = new LeituraJournal();
+        ReflectionTestUtils.setField(journal, "gravacaoLeituraService", repository);
+        ReflectionTestUtils.setField(journal, "transactionTemplate", new TransactionTemplate(mock(PlatformTransactionManager.class)));
+        ReflectionTestUtils.setField(journal, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(journal, "diretorio", diretorio);
+        ReflectionTestUtils.setField(journal, "tamanhoSegmentoMb", 1);
+        ReflectionTestUtils.setField(journal, "maxSegmentos", 8);
+        ReflectionTestUtils.setField(journal, "tamanhoLote", 100);
+        ReflectionTestUtils.setField(journal, "intervaloMs", 5L);
+        ReflectionTestUtils.setField(journal, "fsyncIntervaloMs", 50L);
+        journal.iniciar();
+        return journal;
+    }
+
+    static List<LeituraDispositivo> leituras(int quantidade) {
+        List<LeituraDispositivo> leituras = new ArrayList<>(quantidade);
+        for (int i = 0; i < quantidade; i++) {
+            LeituraDispositivo leitura = new LeituraDispositivo();
+            leitura.setDispositivo(Dispositivo.builder().idDispositivo(i).build());
+            leitura.setNivelPct(50);
+            leitura.setTurbidezNtu(1);
+            leitura.setPhInt(new BigDecimal("7.00"));
+            leitura.setDataHora(LocalDateTime.of(2026, 1, 1, 0, 0).plusSeconds(i));
+            leituras.add(leitura);
+        }
+        return leituras;
+    }
+
+    static void aguardar(BooleanSupplier condicao) throws InterruptedException {
+        long limite = System.nanoTime() + Duration.ofSeconds(20).toNanos();
+        while (!condicao.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("tempo esgotado").isLessThan(limite);
+            Thread.sleep(10);
+        }
+    }
+}
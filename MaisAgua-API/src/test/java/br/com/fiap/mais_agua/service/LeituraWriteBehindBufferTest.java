@@ -0,0 +1,131 @@
+package br.com.fiap.mais_agua.service;
+
+import br.com.fiap.mais_agua.model.Dispositivo;
+import br.com.fiap.mais_agua.model.LeituraDispositivo;
+import br.com.fiap.mais_agua.repository.LeituraDispositivoBatchRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+/**
+ * Nova tentativa do write-behind depois de uma falha transitória: o primeiro lote chega ao banco (flush com
+ * ids da sequence) e a transação é desfeita; a segunda tentativa precisa gravar as mesmas leituras, em vez
+ * de recusá-las como entidades destacadas e descartar o lote já confirmado com 202. Roda em um H2 em
+ * memória, com as transações do próprio buffer.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false"
+})
+@Import(LeituraDispositivoBatchRepository.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class LeituraWriteBehindBufferTest {
+
+    private static final int QUANTIDADE = 5;
+
+    @Autowired
+    private LeituraDispositivoBatchRepository leituraBatchRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+    private Dispositivo dispositivo;
+    private LeituraWriteBehindBuffer buffer;
+
+    @BeforeEach
+    void popular() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        dispositivo = transactionTemplate.execute(status -> {
+            Dispositivo novo = Dispositivo.builder().dataInstalacao(LocalDateTime.now()).build();
+            entityManager.persist(novo);
+            return novo;
+        });
+    }
+
+    @AfterEach
+    void limpar() throws InterruptedException {
+        if (buffer != null) {
+            buffer.parar();
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            entityManager.createQuery("DELETE FROM LeituraDispositivo").executeUpdate();
+            entityManager.createQuery("DELETE FROM Dispositivo").executeUpdate();
+        });
+    }
+
+    @Test
+    void segundaTentativaGravaOLoteDepoisDeFalharNoPrimeiroFlush() {
+        AtomicInteger tentativas = new AtomicInteger();
+        GravacaoLeituraService gravacao = new GravacaoLeituraService() {
+            @Override
+            public void inserir(List<LeituraDispositivo> leituras) {
+                leituraBatchRepository.inserir(leituras);
+                // Falha transitória depois do flush: as leituras já receberam ids e o rollback os mantém
+                if (tentativas.incrementAndGet() == 1) {
+                    throw new CannotAcquireLockException("deadlock simulado");
+                }
+            }
+        };
+
+        buffer = new LeituraWriteBehindBuffer();
+        ReflectionTestUtils.setField(buffer, "gravacaoLeituraService", gravacao);
+        ReflectionTestUtils.setField(buffer, "transactionTemplate", transactionTemplate);
+        ReflectionTestUtils.setField(buffer, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(buffer, "capacidade", 100);
+        ReflectionTestUtils.setField(buffer, "tamanhoLote", 100);
+        ReflectionTestUtils.setField(buffer, "intervaloMs", 50L);
+        ReflectionTestUtils.invokeMethod(buffer, "iniciar");
+
+        buffer.enfileirar(leituras());
+
+        await().until(() -> tentativas.get() >= 2 && contarLeituras() == QUANTIDADE);
+        assertThat(tentativas.get()).isEqualTo(2);
+    }
+
+    private long contarLeituras() {
+        return transactionTemplate.execute(status ->
+                entityManager.createQuery("SELECT COUNT(l) FROM LeituraDispositivo l", Long.class).getSingleResult());
+    }
+
+    private List<LeituraDispositivo> leituras() {
+        List<LeituraDispositivo> leituras = new ArrayList<>();
+        for (int i = 0; i < QUANTIDADE; i++) {
+            LeituraDispositivo leitura = new LeituraDispositivo();
+            leitura.setNivelPct(50);
+            leitura.setTurbidezNtu(1);
+            leitura.setPhInt(new BigDecimal("7.00"));
+            leitura.setDataHora(LocalDateTime.now().plusSeconds(i));
+            leitura.setDispositivo(Dispositivo.builder().idDispositivo(dispositivo.getIdDispositivo()).build());
+            // Dono já carimbado: o preenchimento pelo vínculo usa SQL do SQL Server
+            leitura.setIdReservatorio(1);
+            leitura.setIdUsuario(1);
+            leituras.add(leitura);
+        }
+        return leituras;
+    }
+}
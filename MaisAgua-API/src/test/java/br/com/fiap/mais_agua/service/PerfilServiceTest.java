@@ -0,0 +1,54 @@
+package br.com.fiap.mais_agua.service;
+
+import br.com.fiap.mais_agua.model.Usuario;
+import br.com.fiap.mais_agua.repository.ReservatorioRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.ResponseStatusException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Perfil de reservatório que não é do usuário: id de outro usuário e id inexistente recebem a mesma
+ * resposta, decidida pelo índice de posse antes de qualquer consulta.
+ */
+class PerfilServiceTest {
+
+    private static final int DE_OUTRO_USUARIO = 3;
+    private static final int INEXISTENTE = 999;
+
+    private final Usuario usuario = Usuario.builder().idUsuario(1).build();
+    private final ReservatorioRepository reservatorioRepository = mock(ReservatorioRepository.class);
+    private final IndicePropriedade indicePropriedade = mock(IndicePropriedade.class);
+
+    private PerfilService perfilService;
+
+    @BeforeEach
+    void iniciar() {
+        perfilService = new PerfilService();
+        ReflectionTestUtils.setField(perfilService, "reservatorioRepository", reservatorioRepository);
+        ReflectionTestUtils.setField(perfilService, "indicePropriedade", indicePropriedade);
+        when(indicePropriedade.possuiReservatorio(eq(usuario), any())).thenReturn(false);
+    }
+
+    @Test
+    void idDeOutroUsuarioEIdInexistenteTemAMesmaResposta() {
+        for (int idReservatorio : new int[]{DE_OUTRO_USUARIO, INEXISTENTE}) {
+            assertThatThrownBy(() -> perfilService.getPerfil(idReservatorio, usuario))
+                    .isInstanceOfSatisfying(ResponseStatusException.class, e -> {
+                        assertThat(e.getStatusCode()).isEqualTo(HttpStatus.FORBIDDEN);
+                        assertThat(e.getReason()).isEqualTo("Você não tem permissão para acessar este reservatório");
+                    });
+        }
+        verify(reservatorioRepository, never()).findPerfil(any());
+    }
+}